@@ -4,9 +4,12 @@ import com.mattordre.summitstore.brand.dto.CreateBrandDTO;
 import com.mattordre.summitstore.brand.model.Brand;
 import com.mattordre.summitstore.brand.repository.BrandRepository;
 import com.mattordre.summitstore.exception.InvalidArgumentException;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.exception.ImageNotFoundException;
 import com.mattordre.summitstore.image.model.BrandLogo;
 import com.mattordre.summitstore.image.model.ImageType;
 import com.mattordre.summitstore.image.repository.BrandLogoRepository;
+import com.mattordre.summitstore.image.service.ImageProcessingStateService;
 import com.mattordre.summitstore.image.service.ImageService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -26,6 +29,8 @@ public class BrandService {
 
     private final BrandLogoRepository brandLogoRepository;
 
+    private final ImageProcessingStateService imageProcessingStateService;
+
 
     /**
      * Get all brands stored in the database
@@ -64,20 +69,29 @@ public class BrandService {
      */
     @Transactional
     public Brand createBrand(CreateBrandDTO createBrandDTO) throws InvalidArgumentException {
-        // Check if the image file is uploaded to the object storage
-        var isImageUploaded = imageService.isImageFileUploaded(createBrandDTO.getImageFileName(), ImageType.BRAND);
-
-        if (!isImageUploaded) {
+        // Check if the image file is uploaded to the object storage, its metadata is kept with the reference
+        ImageMetadata metadata;
+        try {
+            metadata = imageService.getImageMetadata(ImageType.BRAND, createBrandDTO.getImageFileName());
+        } catch (ImageNotFoundException e) {
             throw new InvalidArgumentException("Image file " + createBrandDTO.getImageFileName() + " is not uploaded");
         }
 
         // Reference the image in the database
-        BrandLogo image = brandLogoRepository.save(
+        BrandLogo image = brandLogoRepository.saveAndFlush(
                 BrandLogo.builder()
                         .fileName(createBrandDTO.getImageFileName())
                         .bucketName(ImageType.BRAND.getBucketName())
+                        .contentLength(metadata.getContentLength())
+                        .contentType(metadata.getContentType())
+                        .width(metadata.getWidth())
+                        .height(metadata.getHeight())
+                        .checksum(metadata.getChecksum())
+                        .uploadedAt(metadata.getUploadedAt())
                         .build()
         );
+        // Apply the processing completion received before the image was referenced
+        imageProcessingStateService.applyCompletions(List.of(image.getFileName()));
 
         // Create the brand in the database
         return brandRepository.save(
@@ -0,0 +1,83 @@
+package com.mattordre.summitstore.config;
+
+/**
+ * Concurrency limit adjusted with additive increase and multiplicative decrease from the observed latency.
+ * The limit grows slowly while calls complete below their latency target and the limit is in use, and is cut as soon
+ * as a call is slow or fails, so calls beyond the capacity of a slow backend are rejected instead of queuing.
+ * Each call brings its own latency target, as calls of different kinds are not equally fast
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private double limit;
+
+    private int inFlight;
+
+
+    /**
+     * @param initialLimit Limit before any call completes
+     * @param minLimit Lowest limit
+     * @param maxLimit Highest limit
+     * @param backoffRatio Ratio, between 0 and 1, applied to the limit when it decreases
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+
+    /**
+     * Request a slot for a call, which must then be released
+     * @return True if a slot is available, false if the call must be rejected
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+
+    /**
+     * Release the slot of a completed call and adjust the limit
+     * @param latencyNanos Latency of the call, in nanoseconds
+     * @param latencyTargetNanos Latency above which the call decreases the limit, in nanoseconds, or 0 if the latency
+     * of the call does not reflect the load of the backend
+     * @param failed True if the call failed because of the backend
+     */
+    public synchronized void release(long latencyNanos, long latencyTargetNanos, boolean failed) {
+        // Only a limit in use can prove it is too low
+        boolean limited = inFlight * 2 >= limit;
+        inFlight--;
+        if (failed || (latencyTargetNanos > 0 && latencyNanos > latencyTargetNanos)) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (limited) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+
+    /**
+     * @return Current limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+
+    /**
+     * @return Number of calls in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+}
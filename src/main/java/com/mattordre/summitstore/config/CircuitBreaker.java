@@ -0,0 +1,160 @@
+package com.mattordre.summitstore.config;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. Once the failure rate over the last calls reaches the threshold, calls are rejected
+ * for the open duration, then a few trial calls decide whether the circuit closes again or stays open
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final int minimumCalls;
+
+    private final double failureRateThreshold;
+
+    private final long openDurationNanos;
+
+    private final int halfOpenCalls;
+
+    private final LongSupplier nanoClock;
+
+    // Outcomes of the last calls while closed, true for a failure
+    private final boolean[] outcomes;
+
+    private int nextOutcome;
+
+    private int recordedCalls;
+
+    private int failedCalls;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private int halfOpenPermits;
+
+    private int halfOpenSuccesses;
+
+
+    /**
+     * @param windowSize Number of last calls the failure rate is computed on
+     * @param minimumCalls Number of calls needed before the circuit can open
+     * @param failureRateThreshold Failure rate, between 0 and 1, opening the circuit
+     * @param openDuration Time calls are rejected once the circuit opens
+     * @param halfOpenCalls Number of successful trial calls needed to close the circuit
+     * @param nanoClock Monotonic clock, in nanoseconds
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration,
+                          int halfOpenCalls, LongSupplier nanoClock) {
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoClock = nanoClock;
+    }
+
+
+    /**
+     * Request a permission to make a call, the outcome of a permitted call must then be reported
+     * @return True if the call is permitted, false if it must be rejected
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+
+    /**
+     * Report a permitted call that succeeded
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSuccesses >= halfOpenCalls) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+
+    /**
+     * Report a permitted call that failed
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recordedCalls >= minimumCalls && failedCalls >= failureRateThreshold * recordedCalls) {
+                open();
+            }
+        }
+    }
+
+
+    /**
+     * Report a permitted call that was not made, so its trial permission is given back
+     */
+    public synchronized void onCancel() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits++;
+        }
+    }
+
+
+    /**
+     * @return Current state of the circuit, an open circuit only turns half-open on the next call
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+
+    private void record(boolean failure) {
+        if (recordedCalls == outcomes.length) {
+            failedCalls -= outcomes[nextOutcome] ? 1 : 0;
+        } else {
+            recordedCalls++;
+        }
+        outcomes[nextOutcome] = failure;
+        failedCalls += failure ? 1 : 0;
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+    }
+
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+
+
+    private void close() {
+        state = State.CLOSED;
+        nextOutcome = 0;
+        recordedCalls = 0;
+        failedCalls = 0;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.mattordre.summitstore.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Executor running blocking object storage calls on virtual threads, so fanning out many calls does not tie
+     * platform threads. Callers bound their own concurrency
+     * @return Executor service
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService storageTaskExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("storage-", 0).factory());
+    }
+
+
+    /**
+     * Executor writing image processing requests to the outbox off the request thread. Its threads are bounded below
+     * the database connection pool, so processing requests never starve the other database users
+     * @param threads Number of threads
+     * @return Executor service
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService outboxTaskExecutor(@Value("${image.processing.outbox.writer-threads:4}") int threads) {
+        return Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("outbox-", 0).daemon().factory());
+    }
+
+}
@@ -1,22 +1,132 @@
 package com.mattordre.summitstore.config;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.net.URI;
+import java.time.Duration;
 
 @Component
+@RequiredArgsConstructor
 public class S3ClientFactory {
 
+    private final S3ClientMetricPublisher s3ClientMetricPublisher;
+
+
+    @Value("${image.store.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${image.store.http.connection-timeout:2s}")
+    private Duration connectionTimeout;
+
+    @Value("${image.store.http.socket-timeout:30s}")
+    private Duration socketTimeout;
+
+    @Value("${image.store.http.connection-acquisition-timeout:5s}")
+    private Duration connectionAcquisitionTimeout;
+
+    @Value("${image.store.http.connection-max-idle-time:60s}")
+    private Duration connectionMaxIdleTime;
+
+    @Value("${image.store.http.tcp-keep-alive:true}")
+    private boolean tcpKeepAlive;
+
+    @Value("${image.store.http.api-call-timeout:60s}")
+    private Duration apiCallTimeout;
+
+
+    /**
+     * Create a new S3 client backed by its own pooled HTTP client.
+     * The returned client owns a connection pool and must be closed by the caller, use {@link S3ClientRegistry}
+     * to share a single client per endpoint. Calls not given their own timeout are bounded by the default API call timeout
+     * @param endpoint Object storage endpoint URL
+     * @param accessKey Access key of the object storage
+     * @param secretKey Secret key of the object storage
+     * @param region Region of the object storage
+     * @return New S3 client instance
+     */
     public S3Client createS3Client(String endpoint, String accessKey, String secretKey, String region) {
         return S3Client.builder()
                 .endpointOverride(URI.create(endpoint))
                 .forcePathStyle(true)
                 .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
                 .region(Region.of(region))
+                .httpClientBuilder(
+                        ApacheHttpClient.builder()
+                                .maxConnections(maxConnections)
+                                .connectionTimeout(connectionTimeout)
+                                .socketTimeout(socketTimeout)
+                                .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                                .connectionMaxIdleTime(connectionMaxIdleTime)
+                                .useIdleConnectionReaper(true)
+                                .tcpKeepAlive(tcpKeepAlive)
+                )
+                .overrideConfiguration(config -> config
+                        .apiCallTimeout(apiCallTimeout)
+                        .addMetricPublisher(s3ClientMetricPublisher.forEndpoint(endpoint, "sync")))
+                .build();
+    }
+
+
+    /**
+     * Create a new non-blocking S3 client, backed by its own Netty event loop and connection pool.
+     * Requests do not hold a thread while waiting for the object storage, the pool settings are shared with the
+     * blocking clients. The returned client must be closed by the caller, use {@link S3ClientRegistry} to share it
+     * @param endpoint Object storage endpoint URL
+     * @param accessKey Access key of the object storage
+     * @param secretKey Secret key of the object storage
+     * @param region Region of the object storage
+     * @return New S3 async client instance
+     */
+    public S3AsyncClient createS3AsyncClient(String endpoint, String accessKey, String secretKey, String region) {
+        return S3AsyncClient.builder()
+                .endpointOverride(URI.create(endpoint))
+                .forcePathStyle(true)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+                .region(Region.of(region))
+                .httpClientBuilder(
+                        NettyNioAsyncHttpClient.builder()
+                                .maxConcurrency(maxConnections)
+                                .connectionTimeout(connectionTimeout)
+                                .readTimeout(socketTimeout)
+                                .writeTimeout(socketTimeout)
+                                .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                                .connectionMaxIdleTime(connectionMaxIdleTime)
+                                .useIdleConnectionReaper(true)
+                                .tcpKeepAlive(tcpKeepAlive)
+                )
+                .overrideConfiguration(config -> config
+                        .apiCallTimeout(apiCallTimeout)
+                        .addMetricPublisher(s3ClientMetricPublisher.forEndpoint(endpoint, "async")))
+                .build();
+    }
+
+
+    /**
+     * Create a new presigner signing object storage URLs used directly by clients
+     * Presigning is done locally, without any call to the object storage
+     * @param endpoint Object storage endpoint URL, as reachable by the clients
+     * @param accessKey Access key of the object storage
+     * @param secretKey Secret key of the object storage
+     * @param region Region of the object storage
+     * @return S3 presigner instance
+     */
+    public S3Presigner createS3Presigner(String endpoint, String accessKey, String secretKey, String region) {
+        return S3Presigner.builder()
+                .endpointOverride(URI.create(endpoint))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+                .region(Region.of(region))
                 .build();
     }
 
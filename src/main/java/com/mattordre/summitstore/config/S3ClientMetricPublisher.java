@@ -0,0 +1,112 @@
+package com.mattordre.summitstore.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bridge between the AWS SDK metrics and Micrometer, used to size the S3 HTTP connection pools
+ */
+@Component
+@RequiredArgsConstructor
+public class S3ClientMetricPublisher {
+
+    private final MeterRegistry meterRegistry;
+
+
+    /**
+     * Create a metric publisher recording the connection pool state of a client of the given endpoint
+     * The blocking and non-blocking clients of an endpoint have their own pool, so each one has its own meters
+     * @param endpoint Object storage endpoint URL, used as metric tag
+     * @param client Kind of client, sync or async, used as metric tag
+     * @return Metric publisher to register on the S3 client
+     */
+    public MetricPublisher forEndpoint(String endpoint, String client) {
+        return new EndpointMetricPublisher(endpoint, client);
+    }
+
+
+    private class EndpointMetricPublisher implements MetricPublisher {
+
+        private final Tags tags;
+
+        private final AtomicInteger maxConnections = new AtomicInteger();
+
+        private final AtomicInteger leasedConnections = new AtomicInteger();
+
+        private final AtomicInteger availableConnections = new AtomicInteger();
+
+        private final AtomicInteger pendingAcquires = new AtomicInteger();
+
+
+        EndpointMetricPublisher(String endpoint, String client) {
+            this.tags = Tags.of("endpoint", endpoint, "client", client);
+            Gauge.builder("s3.client.pool.max", maxConnections, AtomicInteger::get)
+                    .description("Maximum number of connections of the S3 HTTP connection pool")
+                    .tags(tags).register(meterRegistry);
+            Gauge.builder("s3.client.pool.leased", leasedConnections, AtomicInteger::get)
+                    .description("Connections currently leased from the S3 HTTP connection pool")
+                    .tags(tags).register(meterRegistry);
+            Gauge.builder("s3.client.pool.available", availableConnections, AtomicInteger::get)
+                    .description("Idle connections available in the S3 HTTP connection pool")
+                    .tags(tags).register(meterRegistry);
+            Gauge.builder("s3.client.pool.pending", pendingAcquires, AtomicInteger::get)
+                    .description("Requests waiting for a connection of the S3 HTTP connection pool")
+                    .tags(tags).register(meterRegistry);
+            Gauge.builder("s3.client.pool.saturation", this, EndpointMetricPublisher::saturation)
+                    .description("Ratio of leased connections over the pool size")
+                    .tags(tags).register(meterRegistry);
+        }
+
+
+        @Override
+        public void publish(MetricCollection metricCollection) {
+            String operation = metricCollection.metricValues(CoreMetric.OPERATION_NAME).stream().findFirst().orElse("unknown");
+            record(metricCollection, operation);
+        }
+
+
+        private void record(MetricCollection metricCollection, String operation) {
+            metricCollection.metricValues(HttpMetric.MAX_CONCURRENCY).forEach(maxConnections::set);
+            metricCollection.metricValues(HttpMetric.LEASED_CONCURRENCY).forEach(leasedConnections::set);
+            metricCollection.metricValues(HttpMetric.AVAILABLE_CONCURRENCY).forEach(availableConnections::set);
+            metricCollection.metricValues(HttpMetric.PENDING_CONCURRENCY_ACQUIRES).forEach(pendingAcquires::set);
+            metricCollection.metricValues(HttpMetric.CONCURRENCY_ACQUIRE_DURATION)
+                    .forEach(duration -> timer("s3.client.connection.acquire", operation).record(duration));
+            // Time spent on the wire, from the request being sent to the response being received
+            metricCollection.metricValues(CoreMetric.SERVICE_CALL_DURATION)
+                    .forEach(duration -> timer("s3.client.service.call", operation).record(duration));
+            metricCollection.children().forEach(child -> record(child, operation));
+        }
+
+
+        private Timer timer(String name, String operation) {
+            return Timer.builder(name)
+                    .tags(tags.and("operation", operation))
+                    .register(meterRegistry);
+        }
+
+
+        private double saturation() {
+            int max = maxConnections.get();
+            return max == 0 ? 0 : (double) leasedConnections.get() / max;
+        }
+
+
+        @Override
+        public void close() {
+            // Meters are owned by the registry and outlive the S3 client
+        }
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.mattordre.summitstore.config;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Access to the long-lived S3 clients of the configured object storage, built by {@link S3ClientFactory} once per
+ * endpoint with the configured credentials and region. Clients are thread-safe and keep their HTTP connection pool warm
+ * between calls, so they are shared by every caller instead of being created for each request. They are owned by the
+ * registry and closed on shutdown, callers must not close them
+ */
+@Component
+@RequiredArgsConstructor
+public class S3ClientRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(S3ClientRegistry.class);
+
+    private final S3ClientFactory s3ClientFactory;
+
+    private final Map<String, S3Client> clients = new ConcurrentHashMap<>();
+
+    private final Map<String, S3AsyncClient> asyncClients = new ConcurrentHashMap<>();
+
+    private S3Presigner presigner;
+
+
+    @Value("${image.store.url}")
+    private String endpoint;
+
+    // Endpoint reachable by the clients using presigned URLs, which may differ from the internal one
+    @Value("${image.store.public-url:${image.store.url}}")
+    private String publicEndpoint;
+
+    @Value("${image.store.access.key}")
+    private String accessKey;
+
+    @Value("${image.store.secret.key}")
+    private String secretKey;
+
+    @Value("${image.store.region}")
+    private String region;
+
+
+    /**
+     * Get the shared client of the primary object storage endpoint
+     * @return S3 client instance
+     */
+    public S3Client getClient() {
+        return getClient(endpoint);
+    }
+
+
+    /**
+     * Get the shared client of the given object storage endpoint, creating it on first use
+     * @param endpoint Object storage endpoint URL
+     * @return S3 client instance
+     */
+    public S3Client getClient(String endpoint) {
+        return clients.computeIfAbsent(endpoint, url -> {
+            log.info("Creating S3 client for endpoint {}", url);
+            return s3ClientFactory.createS3Client(url, accessKey, secretKey, region);
+        });
+    }
+
+
+    /**
+     * Get the shared non-blocking client of the primary object storage endpoint
+     * @return S3 async client instance
+     */
+    public S3AsyncClient getAsyncClient() {
+        return getAsyncClient(endpoint);
+    }
+
+
+    /**
+     * Get the shared non-blocking client of the given object storage endpoint, creating it on first use
+     * @param endpoint Object storage endpoint URL
+     * @return S3 async client instance
+     */
+    public S3AsyncClient getAsyncClient(String endpoint) {
+        return asyncClients.computeIfAbsent(endpoint, url -> {
+            log.info("Creating S3 async client for endpoint {}", url);
+            return s3ClientFactory.createS3AsyncClient(url, accessKey, secretKey, region);
+        });
+    }
+
+
+    /**
+     * Get the shared presigner of the public object storage endpoint
+     * @return S3 presigner instance
+     */
+    public synchronized S3Presigner getPresigner() {
+        if (presigner == null) {
+            log.info("Creating S3 presigner for endpoint {}", publicEndpoint);
+            presigner = s3ClientFactory.createS3Presigner(publicEndpoint, accessKey, secretKey, region);
+        }
+        return presigner;
+    }
+
+
+    @PreDestroy
+    public synchronized void close() {
+        clients.values().forEach(S3Client::close);
+        clients.clear();
+        asyncClients.values().forEach(S3AsyncClient::close);
+        asyncClients.clear();
+        if (presigner != null) {
+            presigner.close();
+            presigner = null;
+        }
+    }
+
+}
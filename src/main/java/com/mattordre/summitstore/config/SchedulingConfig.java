@@ -0,0 +1,12 @@
+package com.mattordre.summitstore.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enable the scheduled maintenance jobs, they run on the scheduler pool configured by spring.task.scheduling
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
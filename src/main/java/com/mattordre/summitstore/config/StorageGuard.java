@@ -0,0 +1,317 @@
+package com.mattordre.summitstore.config;
+
+import com.mattordre.summitstore.image.exception.StorageUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.http.AbortableInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Guard of the object storage calls made while serving requests, so a failing or slow object storage only
+ * degrades the image endpoints instead of holding every request thread.
+ * Each call gets a timeout depending on its operation, the number of concurrent calls is bounded by a limit adapted
+ * from the observed latency, and a circuit breaker rejects every call for a while once too many of them fail.
+ * The latency of a call is compared with the target of its operation, operations whose latency depends on the size of
+ * the object only lower the limit when they fail. A streamed read holds its slot until its stream is closed, so the
+ * transfers of the bodies are bounded too.
+ * Rejected calls fail fast with a {@link StorageUnavailableException}. Only object storage failures count, a missing
+ * object or a rejected request is a healthy answer
+ */
+@Component
+public class StorageGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageGuard.class);
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private final Map<StorageOperation, AwsRequestOverrideConfiguration> requestConfigurations = new EnumMap<>(StorageOperation.class);
+
+    private final Map<StorageOperation, Long> latencyTargets = new EnumMap<>(StorageOperation.class);
+
+    private final Counter circuitOpenRejections;
+
+    private final Counter concurrencyLimitRejections;
+
+    private final Counter successfulCalls;
+
+    private final Counter failedCalls;
+
+    private CircuitBreaker.State lastState = CircuitBreaker.State.CLOSED;
+
+
+    public StorageGuard(MeterRegistry meterRegistry,
+                        @Value("${image.store.timeout.head:2s}") Duration headTimeout,
+                        @Value("${image.store.timeout.get:10s}") Duration getTimeout,
+                        @Value("${image.store.timeout.download:10s}") Duration downloadTimeout,
+                        @Value("${image.store.timeout.put:30s}") Duration putTimeout,
+                        @Value("${image.store.timeout.delete:5s}") Duration deleteTimeout,
+                        @Value("${image.store.circuit-breaker.window-size:50}") int windowSize,
+                        @Value("${image.store.circuit-breaker.minimum-calls:20}") int minimumCalls,
+                        @Value("${image.store.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                        @Value("${image.store.circuit-breaker.open-duration:10s}") Duration openDuration,
+                        @Value("${image.store.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+                        @Value("${image.store.concurrency.initial-limit:20}") int initialLimit,
+                        @Value("${image.store.concurrency.min-limit:4}") int minLimit,
+                        @Value("${image.store.concurrency.max-limit:50}") int maxLimit,
+                        @Value("${image.store.concurrency.latency-target.head:500ms}") Duration headLatencyTarget,
+                        @Value("${image.store.concurrency.latency-target.get:1s}") Duration getLatencyTarget,
+                        @Value("${image.store.concurrency.latency-target.download:0s}") Duration downloadLatencyTarget,
+                        @Value("${image.store.concurrency.latency-target.put:0s}") Duration putLatencyTarget,
+                        @Value("${image.store.concurrency.latency-target.delete:1s}") Duration deleteLatencyTarget) {
+        requestConfigurations.put(StorageOperation.HEAD, timeout(headTimeout));
+        requestConfigurations.put(StorageOperation.GET, timeout(getTimeout));
+        requestConfigurations.put(StorageOperation.DOWNLOAD, timeout(downloadTimeout));
+        requestConfigurations.put(StorageOperation.PUT, timeout(putTimeout));
+        requestConfigurations.put(StorageOperation.DELETE, timeout(deleteTimeout));
+        latencyTargets.put(StorageOperation.HEAD, headLatencyTarget.toNanos());
+        latencyTargets.put(StorageOperation.GET, getLatencyTarget.toNanos());
+        latencyTargets.put(StorageOperation.DOWNLOAD, downloadLatencyTarget.toNanos());
+        latencyTargets.put(StorageOperation.PUT, putLatencyTarget.toNanos());
+        latencyTargets.put(StorageOperation.DELETE, deleteLatencyTarget.toNanos());
+        this.circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls, System::nanoTime);
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, 0.9);
+
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("image.store.circuit.state", circuitBreaker, breaker -> breaker.getState() == state ? 1 : 0)
+                    .tag("state", state.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("image.store.concurrency.limit", concurrencyLimiter, AdaptiveConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("image.store.concurrency.in.flight", concurrencyLimiter, AdaptiveConcurrencyLimiter::getInFlight).register(meterRegistry);
+        circuitOpenRejections = Counter.builder("image.store.rejected").tag("reason", "circuit-open").register(meterRegistry);
+        concurrencyLimitRejections = Counter.builder("image.store.rejected").tag("reason", "concurrency-limit").register(meterRegistry);
+        successfulCalls = Counter.builder("image.store.calls").tag("outcome", "success").register(meterRegistry);
+        failedCalls = Counter.builder("image.store.calls").tag("outcome", "failure").register(meterRegistry);
+    }
+
+
+    /**
+     * Make an object storage call through the circuit breaker and the concurrency limit
+     * @param operation Operation of the call
+     * @param call Object storage call, whose request must be configured with {@link #requestConfiguration}
+     * @return Result of the call
+     * @throws StorageUnavailableException If the call is rejected without being made
+     */
+    public <T> T execute(StorageOperation operation, Supplier<T> call) throws StorageUnavailableException {
+        acquire(operation);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.get();
+            failed = false;
+            return result;
+        } catch (RuntimeException e) {
+            failed = isStorageFailure(e);
+            throw e;
+        } finally {
+            recordOutcome(failed);
+            concurrencyLimiter.release(System.nanoTime() - start, latencyTargets.get(operation), failed);
+        }
+    }
+
+
+    /**
+     * Open an object storage stream through the circuit breaker and the concurrency limit
+     * The latency of the call is the time until the response is received, while its slot is held until the stream is
+     * closed or aborted, so only a bounded number of bodies are transferred at once
+     * @param operation Operation of the call
+     * @param call Object storage call, whose request must be configured with {@link #requestConfiguration}
+     * @return Stream of the response, releasing the slot of the call once closed or aborted
+     * @throws StorageUnavailableException If the call is rejected without being made
+     */
+    public <R> ResponseInputStream<R> openStream(StorageOperation operation, Supplier<ResponseInputStream<R>> call) throws StorageUnavailableException {
+        acquire(operation);
+        long start = System.nanoTime();
+        ResponseInputStream<R> stream;
+        try {
+            stream = call.get();
+        } catch (RuntimeException e) {
+            boolean failed = isStorageFailure(e);
+            recordOutcome(failed);
+            concurrencyLimiter.release(System.nanoTime() - start, latencyTargets.get(operation), failed);
+            throw e;
+        }
+        recordOutcome(false);
+        long latencyNanos = System.nanoTime() - start;
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                concurrencyLimiter.release(latencyNanos, latencyTargets.get(operation), false);
+            }
+        };
+        InputStream content = new FilterInputStream(stream) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    release.run();
+                }
+            }
+        };
+        return new ResponseInputStream<>(stream.response(), AbortableInputStream.create(content, () -> {
+            try {
+                stream.abort();
+            } finally {
+                release.run();
+            }
+        }));
+    }
+
+
+    /**
+     * Make a non-blocking object storage call through the circuit breaker and the concurrency limit
+     * The slot of the call is held until its future completes, a cancelled call is neither a success nor a failure
+     * @param operation Operation of the call
+     * @param call Object storage call, whose request must be configured with a timeout
+     * @return Future of the call result
+     * @throws StorageUnavailableException If the call is rejected without being made
+     */
+    public <T> CompletableFuture<T> executeAsync(StorageOperation operation, Supplier<CompletableFuture<T>> call) throws StorageUnavailableException {
+        acquire(operation);
+        long start = System.nanoTime();
+        CompletableFuture<T> response;
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            boolean failed = isStorageFailure(e);
+            recordOutcome(failed);
+            concurrencyLimiter.release(System.nanoTime() - start, latencyTargets.get(operation), failed);
+            throw e;
+        }
+        response.whenComplete((result, e) -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof CancellationException) {
+                // The latency of an abandoned call says nothing about the object storage
+                circuitBreaker.onCancel();
+                concurrencyLimiter.release(System.nanoTime() - start, 0, false);
+                return;
+            }
+            boolean failed = cause instanceof RuntimeException runtimeException && isStorageFailure(runtimeException);
+            recordOutcome(failed);
+            concurrencyLimiter.release(System.nanoTime() - start, latencyTargets.get(operation), failed);
+        });
+        return response;
+    }
+
+
+    /**
+     * Make an object storage call without result through the circuit breaker and the concurrency limit
+     * @param operation Operation of the call
+     * @param call Object storage call, whose request must be configured with {@link #requestConfiguration}
+     * @throws StorageUnavailableException If the call is rejected without being made
+     */
+    public void run(StorageOperation operation, Runnable call) throws StorageUnavailableException {
+        execute(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+
+    /**
+     * @param operation Operation of a call
+     * @return Request configuration applying the timeout of the operation
+     */
+    public AwsRequestOverrideConfiguration requestConfiguration(StorageOperation operation) {
+        return requestConfigurations.get(operation);
+    }
+
+
+    /**
+     * @return Current limit of concurrent calls
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimiter.getLimit();
+    }
+
+
+    /**
+     * @return Current state of the circuit breaker
+     */
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+
+    private void acquire(StorageOperation operation) throws StorageUnavailableException {
+        if (!circuitBreaker.tryAcquire()) {
+            circuitOpenRejections.increment();
+            throw new StorageUnavailableException("Object storage circuit is open, " + operation + " call rejected");
+        }
+        if (!concurrencyLimiter.tryAcquire()) {
+            circuitBreaker.onCancel();
+            concurrencyLimitRejections.increment();
+            throw new StorageUnavailableException("Object storage concurrency limit reached, " + operation + " call rejected");
+        }
+    }
+
+
+    private void recordOutcome(boolean failed) {
+        if (failed) {
+            failedCalls.increment();
+            circuitBreaker.onFailure();
+        } else {
+            successfulCalls.increment();
+            circuitBreaker.onSuccess();
+        }
+        logTransition();
+    }
+
+
+    private boolean isStorageFailure(RuntimeException e) {
+        // Connection errors and timeouts are client exceptions
+        if (e instanceof SdkClientException) {
+            return true;
+        }
+        return e instanceof AwsServiceException serviceException
+                && (serviceException.statusCode() >= 500 || serviceException.isThrottlingException());
+    }
+
+
+    private void logTransition() {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        synchronized (this) {
+            if (state == lastState) {
+                return;
+            }
+            lastState = state;
+        }
+        if (state == CircuitBreaker.State.OPEN) {
+            log.error("Object storage circuit opened, calls are rejected for a while");
+        } else {
+            log.info("Object storage circuit is now {}", state.name().toLowerCase().replace('_', '-'));
+        }
+    }
+
+
+    private AwsRequestOverrideConfiguration timeout(Duration timeout) {
+        return AwsRequestOverrideConfiguration.builder()
+                .apiCallTimeout(timeout)
+                .build();
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.mattordre.summitstore.config;
+
+/**
+ * Kinds of object storage calls, each with its own timeout and latency target
+ */
+public enum StorageOperation {
+    HEAD,
+    GET,
+    // Full download, whose latency includes the transfer of the whole object
+    DOWNLOAD,
+    PUT,
+    DELETE
+}
@@ -11,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -30,6 +31,8 @@ public class DevBrandData {
 
     private final ImageProcessingService imageProcessingService;
 
+    private final TransactionTemplate transactionTemplate;
+
 
     /**
      * Populate brand data from JSON and image files in the given directory
@@ -56,7 +59,6 @@ public class DevBrandData {
 
                 // Upload image and set the filename in the DTO
                 String uploadedFileName = imageService.uploadImage(imageFile, ImageType.BRAND);
-                imageProcessingService.processImageBackground(uploadedFileName, ImageType.BRAND);
 
                 CreateBrandDTO brandDTO = CreateBrandDTO.builder()
                         .name(values.get("name").asText())
@@ -64,8 +66,11 @@ public class DevBrandData {
                         .imageFileName(uploadedFileName)
                         .build();
 
-                // Create brand using the service
-                brandService.createBrand(brandDTO);
+                // Create brand using the service, its logo processing is requested in the same transaction
+                transactionTemplate.executeWithoutResult(status -> {
+                    brandService.createBrand(brandDTO);
+                    imageProcessingService.processImageBackground(uploadedFileName, ImageType.BRAND);
+                });
 
                 log.info("Successfully added brand: {}", brandDTO.getName());
             } else {
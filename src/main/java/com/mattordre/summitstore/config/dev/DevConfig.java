@@ -4,7 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mattordre.summitstore.brand.model.Brand;
 import com.mattordre.summitstore.brand.service.BrandService;
-import com.mattordre.summitstore.config.S3ClientFactory;
+import com.mattordre.summitstore.config.S3ClientRegistry;
 import com.mattordre.summitstore.image.model.ImageType;
 import com.mattordre.summitstore.image.service.ImageService;
 import com.mattordre.summitstore.product.dto.CreateProductVariantImageDTO;
@@ -19,7 +19,6 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -44,19 +43,7 @@ public class DevConfig {
 
     private static final Logger log = LoggerFactory.getLogger(DevConfig.class);
 
-    @Value("${image.store.url}")
-    private String endpoint;
-
-    @Value("${image.store.access.key}")
-    private String accessKey;
-
-    @Value("${image.store.secret.key}")
-    private String secretKey;
-
-    @Value("${image.store.region}")
-    private String region;
-
-    private final S3ClientFactory s3ClientFactory;
+    private final S3ClientRegistry s3ClientRegistry;
 
     private final DevBrandData devBrandData;
 
@@ -72,17 +59,16 @@ public class DevConfig {
     @PostConstruct
     @Transactional
     public void setup() {
-        try (S3Client s3Client = s3ClientFactory.createS3Client(endpoint, accessKey, secretKey, region)) {
-            try {
-                // Ensure the bucket exists
-                ensureBucketExists(s3Client, ImageType.BRAND.getBucketName());
-                ensureBucketExists(s3Client, ImageType.PRODUCT.getBucketName());
-                // Populate dev data
-                populateBrandData();
-                populateProductData();
-            } catch (S3Exception e) {
-                log.error("Error creating buckets & populate dev data", e);
-            }
+        S3Client s3Client = s3ClientRegistry.getClient();
+        try {
+            // Ensure the bucket exists
+            ensureBucketExists(s3Client, ImageType.BRAND.getBucketName());
+            ensureBucketExists(s3Client, ImageType.PRODUCT.getBucketName());
+            // Populate dev data
+            populateBrandData();
+            populateProductData();
+        } catch (S3Exception e) {
+            log.error("Error creating buckets & populate dev data", e);
         }
     }
 
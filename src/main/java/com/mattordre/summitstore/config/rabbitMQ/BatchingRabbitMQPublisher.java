@@ -0,0 +1,200 @@
+package com.mattordre.summitstore.config.rabbitMQ;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publisher buffering image processing messages and sending them in batches, so bulk uploads do not pay one broker
+ * round-trip per image on the request thread.
+ * Messages wait in a lock-free queue until a full batch is available or the flush interval elapses, a single flusher
+ * thread then publishes the batch, the messages of a queue being sent on one channel. The future of each message
+ * completes once the broker confirms it, without holding the flusher. A batch failing for any reason only fails the
+ * futures of its messages, the flusher keeps publishing the next ones. Cancelling the future of a message drops it if
+ * it is still waiting, or stops its retries once sent
+ */
+@Component
+public class BatchingRabbitMQPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingRabbitMQPublisher.class);
+
+    private final RabbitMQSender rabbitMQSender;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final int maxPendingMessages;
+
+    private final Queue<PendingMessage> pendingMessages = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final DistributionSummary batchSizeSummary;
+
+    private final Timer flushTimer;
+
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+
+    public BatchingRabbitMQPublisher(RabbitMQSender rabbitMQSender,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${image.processing.publisher.batch-size:100}") int batchSize,
+                                     @Value("${image.processing.publisher.flush-interval:20ms}") Duration flushInterval,
+                                     @Value("${image.processing.publisher.max-pending:10000}") int maxPendingMessages) {
+        this.rabbitMQSender = rabbitMQSender;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxPendingMessages = maxPendingMessages;
+        this.batchSizeSummary = DistributionSummary.builder("rabbitmq.publisher.batch.size").register(meterRegistry);
+        this.flushTimer = Timer.builder("rabbitmq.publisher.flush").register(meterRegistry);
+        Gauge.builder("rabbitmq.publisher.queue.depth", pendingCount, AtomicInteger::get).register(meterRegistry);
+        this.flusher = Thread.ofPlatform().name("rabbitmq-publisher").daemon().start(this::flushContinuously);
+    }
+
+
+    /**
+     * Queue a message to be published with the next batch
+     * @param queueName Name of the queue
+     * @param message Message to send
+     * @return Future completed once the message is published, failed with an {@link AmqpException} if it could not be,
+     * which can be cancelled to give up on the message
+     */
+    public CompletableFuture<Void> publish(String queueName, ImageProcessingMessage message) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new AmqpException("Publisher is closed"));
+        }
+        if (pendingCount.get() >= maxPendingMessages) {
+            return CompletableFuture.failedFuture(new AmqpException("Too many messages waiting to be published"));
+        }
+        PendingMessage pendingMessage = new PendingMessage(queueName, message, new CompletableFuture<>());
+        pendingMessages.add(pendingMessage);
+        if (pendingCount.incrementAndGet() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+        return pendingMessage.published();
+    }
+
+
+    /**
+     * Stop the flusher once the pending messages are published
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join();
+    }
+
+
+    private void flushContinuously() {
+        while (running) {
+            if (pendingCount.get() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            flush();
+        }
+        flush();
+    }
+
+
+    private void flush() {
+        while (!pendingMessages.isEmpty()) {
+            List<PendingMessage> batch = new ArrayList<>(batchSize);
+            PendingMessage pendingMessage;
+            int polled = 0;
+            while (polled < batchSize && (pendingMessage = pendingMessages.poll()) != null) {
+                polled++;
+                // Cancelled messages are not sent
+                if (!pendingMessage.published().isDone()) {
+                    batch.add(pendingMessage);
+                }
+            }
+            pendingCount.addAndGet(-polled);
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                publishBatch(batch);
+            } catch (Throwable e) {
+                log.error("Error publishing a batch of {} messages", batch.size(), e);
+                AmqpException failure = toAmqpException(e);
+                batch.forEach(message -> message.published().completeExceptionally(failure));
+            }
+        }
+    }
+
+
+    private void publishBatch(List<PendingMessage> batch) {
+        Map<String, List<PendingMessage>> batchByQueue = new LinkedHashMap<>();
+        batch.forEach(pendingMessage -> batchByQueue.computeIfAbsent(pendingMessage.queueName(), queueName -> new ArrayList<>())
+                .add(pendingMessage));
+
+        long start = System.nanoTime();
+        batchSizeSummary.record(batch.size());
+        List<CompletableFuture<Void>> confirmed = new ArrayList<>(batch.size());
+        batchByQueue.forEach((queueName, queueMessages) -> {
+            try {
+                List<CompletableFuture<Void>> queueConfirmed = rabbitMQSender.sendAll(queueName,
+                        queueMessages.stream().map(PendingMessage::message).toList());
+                // Confirms are awaited asynchronously, so the next batch is published meanwhile
+                for (int i = 0; i < queueMessages.size(); i++) {
+                    CompletableFuture<Void> published = queueMessages.get(i).published();
+                    CompletableFuture<Void> messageConfirmed = queueConfirmed.get(i);
+                    messageConfirmed.whenComplete((result, e) -> complete(published, e));
+                    published.whenComplete((result, e) -> {
+                        if (published.isCancelled()) {
+                            messageConfirmed.cancel(false);
+                        }
+                    });
+                }
+                confirmed.addAll(queueConfirmed);
+            } catch (RuntimeException e) {
+                log.error("Error publishing a batch of {} messages", queueMessages.size(), e);
+                AmqpException failure = toAmqpException(e);
+                queueMessages.forEach(pendingMessage -> pendingMessage.published().completeExceptionally(failure));
+            }
+        });
+        CompletableFuture.allOf(confirmed.toArray(CompletableFuture[]::new))
+                .whenComplete((result, e) -> flushTimer.record(Duration.ofNanos(System.nanoTime() - start)));
+    }
+
+
+    private void complete(CompletableFuture<Void> published, Throwable e) {
+        if (e != null) {
+            published.completeExceptionally(e);
+        } else {
+            published.complete(null);
+        }
+    }
+
+
+    private AmqpException toAmqpException(Throwable e) {
+        return e instanceof AmqpException amqpException ? amqpException : new AmqpException("Error publishing a batch of messages", e);
+    }
+
+
+    private record PendingMessage(String queueName, ImageProcessingMessage message, CompletableFuture<Void> published) {
+    }
+
+}
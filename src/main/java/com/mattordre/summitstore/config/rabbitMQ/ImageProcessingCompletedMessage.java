@@ -0,0 +1,39 @@
+package com.mattordre.summitstore.config.rabbitMQ;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mattordre.summitstore.image.model.ImageProcessingState;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Completion of an image processing, sent by the processing service and broadcast to every instance once recorded
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class ImageProcessingCompletedMessage implements Serializable {
+
+    @JsonProperty("fileName")
+    private String fileName;
+
+    @JsonProperty("bucketName")
+    private String bucketName;
+
+    @JsonProperty("state")
+    private ImageProcessingState state;
+
+    // Request time echoed from the processing message, missing if the processing service does not send it
+    @JsonProperty("requestedAt")
+    private Instant requestedAt;
+
+}
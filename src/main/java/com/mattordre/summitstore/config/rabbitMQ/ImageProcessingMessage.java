@@ -7,6 +7,7 @@ import lombok.Setter;
 import lombok.ToString;
 
 import java.io.Serializable;
+import java.time.Instant;
 
 @Getter
 @Setter
@@ -20,4 +21,8 @@ public class ImageProcessingMessage implements Serializable {
     @JsonProperty("bucketName")
     private String bucketName;
 
+    // Echoed back in the completion message, to measure the processing latency
+    @JsonProperty("requestedAt")
+    private Instant requestedAt;
+
 }
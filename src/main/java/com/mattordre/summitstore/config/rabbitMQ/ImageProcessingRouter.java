@@ -0,0 +1,109 @@
+package com.mattordre.summitstore.config.rabbitMQ;
+
+import com.mattordre.summitstore.image.model.ImageType;
+import lombok.Getter;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routing of the image processing messages to the queues consumed by the processing service.
+ * By default messages go to the queue declared by the processing service. Priorities and sharding are opt-in, as they
+ * move messages to queues of their own, which the processing service must be configured to consume first:
+ * every queue messages are routed to must be listed as a consumer queue, or the application refuses to start.
+ * With priorities, messages carry the priority of their image type, so urgent brand images overtake bulk product
+ * imports. When sharded, messages are routed by image file name through a consistent-hash exchange, so the requests of
+ * an image always reach the same queue and are processed in order. Messages of other queues go through the default
+ * exchange
+ */
+@Component
+public class ImageProcessingRouter {
+
+    private final Map<String, Integer> prioritiesByBucket;
+
+    @Getter
+    private final int shards;
+
+    @Getter
+    private final boolean priorityEnabled;
+
+    @Getter
+    private final int maxPriority;
+
+    /**
+     * Queues the processing messages are routed to
+     */
+    @Getter
+    private final List<String> queueNames = new ArrayList<>();
+
+
+    public ImageProcessingRouter(@Value("${image.processing.shards:1}") int shards,
+                                 @Value("${image.processing.priority.enabled:false}") boolean priorityEnabled,
+                                 @Value("${image.processing.max-priority:5}") int maxPriority,
+                                 @Value("${image.processing.priority.brand:0}") int brandPriority,
+                                 @Value("${image.processing.priority.product:0}") int productPriority,
+                                 @Value("${image.processing.consumer-queues:" + RabbitMQConfig.PROCESSING_QUEUE + "}") List<String> consumerQueues) {
+        this.shards = Math.max(1, shards);
+        this.priorityEnabled = priorityEnabled;
+        this.maxPriority = maxPriority;
+        this.prioritiesByBucket = Map.of(
+                ImageType.BRAND.getBucketName(), Math.clamp(brandPriority, 0, maxPriority),
+                ImageType.PRODUCT.getBucketName(), Math.clamp(productPriority, 0, maxPriority)
+        );
+
+        if (this.shards > 1) {
+            for (int shard = 0; shard < this.shards; shard++) {
+                queueNames.add((priorityEnabled ? RabbitMQConfig.PROCESSING_PRIORITY_SHARD_QUEUE_PREFIX : RabbitMQConfig.PROCESSING_SHARD_QUEUE_PREFIX) + shard);
+            }
+        } else {
+            queueNames.add(priorityEnabled ? RabbitMQConfig.PROCESSING_PRIORITY_QUEUE : RabbitMQConfig.PROCESSING_QUEUE);
+        }
+        // Messages routed to a queue without consumer would pile up unprocessed
+        for (String queueName : queueNames) {
+            if (!consumerQueues.contains(queueName)) {
+                throw new IllegalStateException("Image processing queue " + queueName
+                        + " is not consumed by the processing service, it must be listed in image.processing.consumer-queues");
+            }
+        }
+    }
+
+
+    /**
+     * Resolve the route of a message
+     * @param queueName Name of the queue the message is intended for
+     * @param message Message to send
+     * @return Exchange, routing key and priority of the message
+     */
+    public Route route(String queueName, ImageProcessingMessage message) {
+        if (!RabbitMQConfig.PROCESSING_QUEUE.equals(queueName)) {
+            return new Route("", queueName, null);
+        }
+        Integer priority = priorityEnabled ? prioritiesByBucket.get(message.getBucketName()) : null;
+        if (shards > 1) {
+            return new Route(RabbitMQConfig.PROCESSING_SHARDED_EXCHANGE, message.getFileName(), priority);
+        }
+        return new Route("", queueNames.getFirst(), priority);
+    }
+
+
+    public record Route(String exchange, String routingKey, Integer priority) {
+
+        /**
+         * Post processor setting the priority of the message, if any
+         */
+        public MessagePostProcessor postProcessor() {
+            return message -> {
+                if (priority != null) {
+                    message.getMessageProperties().setPriority(priority);
+                }
+                return message;
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.mattordre.summitstore.config.rabbitMQ;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mattordre.summitstore.image.model.ImageType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.io.Serializable;
+
+/**
+ * Image file stored in object storage by an instance, broadcast to every instance to update its local indexes
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class ImageUploadedMessage implements Serializable {
+
+    @JsonProperty("fileName")
+    private String fileName;
+
+    @JsonProperty("imageType")
+    private ImageType imageType;
+
+}
@@ -1,15 +1,56 @@
 package com.mattordre.summitstore.config.rabbitMQ;
 
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.CustomExchange;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
+    // Image processing requests, consumed and declared by the processing service
+    public static final String PROCESSING_QUEUE = "image.processing.background";
+
+    // Image processing requests with the priority of their image type, when priorities are enabled
+    public static final String PROCESSING_PRIORITY_QUEUE = "image.processing.background.priority";
+
+    // Shard queues of the processing requests, suffixed by the shard number
+    public static final String PROCESSING_SHARD_QUEUE_PREFIX = "image.processing.shard.";
+
+    // Shard queues of the processing requests when priorities are enabled, suffixed by the shard number
+    public static final String PROCESSING_PRIORITY_SHARD_QUEUE_PREFIX = "image.processing.shard.priority.";
+
+    // Exchange spreading the processing requests over the shard queues by image file name
+    public static final String PROCESSING_SHARDED_EXCHANGE = "image.processing.sharded";
+
+    // Completions sent by the processing service, consumed once across the instances
+    public static final String PROCESSING_COMPLETED_QUEUE = "image.processing.completed";
+
+    // Recorded processing states, broadcast to every instance
+    public static final String PROCESSING_STATE_EXCHANGE = "image.processing.state";
+
+    // Uploaded images, broadcast to every instance
+    public static final String IMAGE_UPLOADED_EXCHANGE = "image.uploaded";
+
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -20,7 +61,109 @@ public class RabbitMQConfig {
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, MessageConverter jsonMessageConverter) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
         rabbitTemplate.setMessageConverter(jsonMessageConverter);
+        // Unroutable messages are returned instead of being dropped, so they can be retried
+        rabbitTemplate.setMandatory(true);
         return rabbitTemplate;
     }
 
+
+    /**
+     * Processing queues opted in by {@link ImageProcessingRouter}, the default queue is declared by the processing
+     * service itself. Priority queues get the maximum priority, and shard queues have a single active consumer so the
+     * requests of an image are processed in order however many workers consume the shards.
+     * Sharding requires the consistent-hash exchange plugin of the broker
+     */
+    @Bean
+    public Declarables imageProcessingDeclarables(ImageProcessingRouter imageProcessingRouter) {
+        List<Declarable> declarables = new ArrayList<>();
+        if (imageProcessingRouter.getShards() <= 1) {
+            if (imageProcessingRouter.isPriorityEnabled()) {
+                declarables.add(QueueBuilder.durable(PROCESSING_PRIORITY_QUEUE).maxPriority(imageProcessingRouter.getMaxPriority()).build());
+            }
+            return new Declarables(declarables);
+        }
+
+        CustomExchange exchange = new CustomExchange(PROCESSING_SHARDED_EXCHANGE, "x-consistent-hash", true, false);
+        declarables.add(exchange);
+        for (String queueName : imageProcessingRouter.getQueueNames()) {
+            QueueBuilder queueBuilder = QueueBuilder.durable(queueName).singleActiveConsumer();
+            if (imageProcessingRouter.isPriorityEnabled()) {
+                queueBuilder.maxPriority(imageProcessingRouter.getMaxPriority());
+            }
+            Queue queue = queueBuilder.build();
+            declarables.add(queue);
+            // With a consistent-hash exchange, the binding key is the weight of the queue
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with("1").noargs());
+        }
+        return new Declarables(declarables);
+    }
+
+
+    @Bean
+    public Queue imageProcessingCompletedQueue() {
+        return new Queue(PROCESSING_COMPLETED_QUEUE, true);
+    }
+
+
+    @Bean
+    public FanoutExchange imageProcessingStateExchange() {
+        return new FanoutExchange(PROCESSING_STATE_EXCHANGE);
+    }
+
+
+    /**
+     * Queue of this instance on the state exchange, deleted once the instance disconnects
+     */
+    @Bean
+    public Queue imageProcessingStateQueue() {
+        return new AnonymousQueue();
+    }
+
+
+    @Bean
+    public Binding imageProcessingStateBinding(Queue imageProcessingStateQueue, FanoutExchange imageProcessingStateExchange) {
+        return BindingBuilder.bind(imageProcessingStateQueue).to(imageProcessingStateExchange);
+    }
+
+
+    @Bean
+    public FanoutExchange imageUploadedExchange() {
+        return new FanoutExchange(IMAGE_UPLOADED_EXCHANGE);
+    }
+
+
+    /**
+     * Queue of this instance on the upload exchange, deleted once the instance disconnects
+     */
+    @Bean
+    public Queue imageUploadedQueue() {
+        return new AnonymousQueue();
+    }
+
+
+    @Bean
+    public Binding imageUploadedBinding(Queue imageUploadedQueue, FanoutExchange imageUploadedExchange) {
+        return BindingBuilder.bind(imageUploadedQueue).to(imageUploadedExchange);
+    }
+
+
+    /**
+     * Listener container factory delivering messages in batches, a batch is handed over once full or once no message
+     * is received within the receive timeout
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                              ConnectionFactory connectionFactory,
+                                                                              @Value("${image.processing.state.batch-size:50}") int batchSize,
+                                                                              @Value("${image.processing.state.receive-timeout:200ms}") Duration receiveTimeout) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(Math.max(batchSize, 250));
+        factory.setReceiveTimeout(receiveTimeout.toMillis());
+        return factory;
+    }
+
 }
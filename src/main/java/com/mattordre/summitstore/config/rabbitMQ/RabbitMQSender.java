@@ -1,13 +1,37 @@
 package com.mattordre.summitstore.config.rabbitMQ;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-@RequiredArgsConstructor
+/**
+ * Sender of image processing messages, routed by {@link ImageProcessingRouter} and confirmed asynchronously by the broker.
+ * Each message is published with its own correlation data, its future completes once the broker acknowledges it.
+ * Nacked and returned messages are published again with an exponential backoff, until the maximum number of attempts.
+ * Cancelling the future of a message stops its retries, its slot is freed once its current attempt is settled.
+ * Unconfirmed messages are bounded by a window, senders wait for room in the window and fail once it stays full
+ */
 @Service
 public class RabbitMQSender {
 
@@ -15,10 +39,185 @@ public class RabbitMQSender {
 
     private final RabbitTemplate rabbitTemplate;
 
+    private final ImageProcessingRouter imageProcessingRouter;
 
-    public void send(String queueName, ImageProcessingMessage message) {
-        rabbitTemplate.convertAndSend(queueName, message);
-        log.info("Send msg: {}", message);
+    private final int maxUnconfirmedMessages;
+
+    private final Duration windowTimeout;
+
+    private final Duration confirmTimeout;
+
+    private final int maxAttempts;
+
+    private final Duration initialBackoff;
+
+    private final Duration maxBackoff;
+
+    private final Semaphore confirmWindow;
+
+    private final ScheduledExecutorService retryScheduler;
+
+    private final Timer confirmTimer;
+
+    private final Counter nackedMessages;
+
+    private final Counter returnedMessages;
+
+    private final Counter retriedMessages;
+
+
+    public RabbitMQSender(RabbitTemplate rabbitTemplate,
+                          ImageProcessingRouter imageProcessingRouter,
+                          MeterRegistry meterRegistry,
+                          @Value("${rabbitmq.publisher.max-unconfirmed:1000}") int maxUnconfirmedMessages,
+                          @Value("${rabbitmq.publisher.window-timeout:5s}") Duration windowTimeout,
+                          @Value("${rabbitmq.publisher.confirm-timeout:10s}") Duration confirmTimeout,
+                          @Value("${rabbitmq.publisher.max-attempts:4}") int maxAttempts,
+                          @Value("${rabbitmq.publisher.initial-backoff:100ms}") Duration initialBackoff,
+                          @Value("${rabbitmq.publisher.max-backoff:2s}") Duration maxBackoff) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.imageProcessingRouter = imageProcessingRouter;
+        this.maxUnconfirmedMessages = maxUnconfirmedMessages;
+        this.windowTimeout = windowTimeout;
+        this.confirmTimeout = confirmTimeout;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.confirmWindow = new Semaphore(maxUnconfirmedMessages);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("rabbitmq-retry").daemon().factory());
+        this.confirmTimer = Timer.builder("rabbitmq.publisher.confirm").register(meterRegistry);
+        this.nackedMessages = Counter.builder("rabbitmq.publisher.nacked").register(meterRegistry);
+        this.returnedMessages = Counter.builder("rabbitmq.publisher.returned").register(meterRegistry);
+        this.retriedMessages = Counter.builder("rabbitmq.publisher.retried").register(meterRegistry);
+        Gauge.builder("rabbitmq.publisher.in.flight", confirmWindow, window -> maxUnconfirmedMessages - window.availablePermits())
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Send a message, confirmed asynchronously by the broker
+     * @param queueName Name of the queue
+     * @param message Message to send
+     * @return Future completed once the broker confirms the message, failed with an {@link AmqpException} if it is
+     * still not confirmed after the last attempt
+     * @throws AmqpException If the unconfirmed message window stays full
+     */
+    public CompletableFuture<Void> send(String queueName, ImageProcessingMessage message) throws AmqpException {
+        return sendAll(queueName, List.of(message)).getFirst();
+    }
+
+
+    /**
+     * Send several messages at once, all of them are published on the same channel and confirmed asynchronously
+     * @param queueName Name of the queue
+     * @param messages Messages to send
+     * @return Futures completed once the broker confirms each message, in the order of the messages, which can be
+     * cancelled to give up on their message
+     * @throws AmqpException If the unconfirmed message window stays full
+     */
+    public List<CompletableFuture<Void>> sendAll(String queueName, List<ImageProcessingMessage> messages) throws AmqpException {
+        acquireWindow(messages.size());
+        List<PendingConfirm> pendingConfirms = messages.stream()
+                .map(message -> new PendingConfirm(queueName, message, new CompletableFuture<>()))
+                .toList();
+
+        AtomicInteger publishedMessages = new AtomicInteger();
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (PendingConfirm pendingConfirm : pendingConfirms) {
+                    publishedMessages.incrementAndGet();
+                    publish(operations, pendingConfirm, 1);
+                }
+                return null;
+            });
+        } catch (AmqpException e) {
+            // No channel could be used, the messages not attempted yet are retried
+            pendingConfirms.subList(publishedMessages.get(), pendingConfirms.size())
+                    .forEach(pendingConfirm -> retryOrFail(pendingConfirm, 1, e));
+        }
+        log.debug("Send {} msgs", messages.size());
+        return pendingConfirms.stream().map(PendingConfirm::confirmed).toList();
+    }
+
+
+    @PreDestroy
+    public void close() {
+        retryScheduler.shutdownNow();
+    }
+
+
+    private void acquireWindow(int permits) throws AmqpException {
+        try {
+            if (!confirmWindow.tryAcquire(permits, windowTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new AmqpException("Too many messages waiting for a broker confirm");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted while waiting for room in the confirm window", e);
+        }
+    }
+
+
+    private void publish(RabbitOperations operations, PendingConfirm pendingConfirm, int attempt) {
+        if (pendingConfirm.confirmed().isCancelled()) {
+            // Given up while waiting for its retry
+            confirmWindow.release();
+            return;
+        }
+        CorrelationData correlationData = new CorrelationData();
+        long start = System.nanoTime();
+        // A confirm lost with its connection is handled as a failure
+        correlationData.getFuture().orTimeout(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((confirm, e) -> {
+            if (e != null) {
+                retryOrFail(pendingConfirm, attempt, new AmqpException("Error waiting for the broker confirm", e));
+            } else if (!confirm.isAck()) {
+                nackedMessages.increment();
+                retryOrFail(pendingConfirm, attempt, new AmqpException("Message nacked by the broker: " + confirm.getReason()));
+            } else if (correlationData.getReturned() != null) {
+                // Returns are delivered before the confirm of the message
+                ReturnedMessage returned = correlationData.getReturned();
+                returnedMessages.increment();
+                retryOrFail(pendingConfirm, attempt, new AmqpException("Message returned by the broker: " + returned.getReplyText()));
+            } else {
+                confirmTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                confirmWindow.release();
+                pendingConfirm.confirmed().complete(null);
+                log.debug("Msg confirmed: {}", pendingConfirm.message());
+            }
+        });
+        try {
+            ImageProcessingRouter.Route route = imageProcessingRouter.route(pendingConfirm.queueName(), pendingConfirm.message());
+            operations.convertAndSend(route.exchange(), route.routingKey(), pendingConfirm.message(), route.postProcessor(), correlationData);
+        } catch (AmqpException e) {
+            correlationData.getFuture().completeExceptionally(e);
+        }
+    }
+
+
+    private void retryOrFail(PendingConfirm pendingConfirm, int attempt, AmqpException cause) {
+        if (pendingConfirm.confirmed().isCancelled()) {
+            log.debug("Msg given up after {} attempts: {}", attempt, pendingConfirm.message());
+            confirmWindow.release();
+            return;
+        }
+        if (attempt >= maxAttempts) {
+            log.error("Msg not confirmed after {} attempts: {}", attempt, pendingConfirm.message(), cause);
+            confirmWindow.release();
+            pendingConfirm.confirmed().completeExceptionally(cause);
+            return;
+        }
+        retriedMessages.increment();
+        long backoffMillis = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 30));
+        try {
+            retryScheduler.schedule(() -> publish(rabbitTemplate, pendingConfirm, attempt + 1), backoffMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            confirmWindow.release();
+            pendingConfirm.confirmed().completeExceptionally(cause);
+        }
+    }
+
+
+    private record PendingConfirm(String queueName, ImageProcessingMessage message, CompletableFuture<Void> confirmed) {
     }
 
 }
@@ -2,10 +2,17 @@ package com.mattordre.summitstore.exception.handler;
 
 import com.mattordre.summitstore.exception.InvalidArgumentException;
 import com.mattordre.summitstore.exception.dto.ErrorResponse;
+import com.mattordre.summitstore.image.exception.ImageNotFoundException;
+import com.mattordre.summitstore.image.exception.ImageTooLargeException;
+import com.mattordre.summitstore.image.exception.ProcessingBacklogException;
+import com.mattordre.summitstore.image.exception.RenditionUnavailableException;
 import com.mattordre.summitstore.image.exception.StorageAccessException;
+import com.mattordre.summitstore.image.exception.StorageUnavailableException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -16,6 +23,7 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeoutException;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -33,6 +41,17 @@ public class GlobalExceptionHandler {
     }
 
 
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler(ImageNotFoundException.class)
+    public ErrorResponse handleImageNotFoundException() {
+        return ErrorResponse.builder()
+                .message("The requested image was not found.")
+                .errorCode("IMAGE_NOT_FOUND")
+                .timestamp(LocalDateTime.now().toString())
+                .build();
+    }
+
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public Map<String, String> handleValidationExceptions(MethodArgumentNotValidException ex) {
@@ -57,6 +76,17 @@ public class GlobalExceptionHandler {
     }
 
 
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    @ExceptionHandler(ImageTooLargeException.class)
+    public ErrorResponse handleImageTooLargeExceptions(ImageTooLargeException e) {
+        return ErrorResponse.builder()
+                .message(e.getMessage())
+                .errorCode("IMAGE_TOO_LARGE")
+                .timestamp(LocalDateTime.now().toString())
+                .build();
+    }
+
+
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     @ExceptionHandler(StorageAccessException.class)
     public ErrorResponse handleStorageAccessExceptions(StorageAccessException e) {
@@ -68,4 +98,54 @@ public class GlobalExceptionHandler {
                 .build();
     }
 
+
+    @ExceptionHandler(StorageUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleStorageUnavailableExceptions(StorageUnavailableException e) {
+        log.warn("StorageUnavailableException occurred: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(ErrorResponse.builder()
+                        .message("The storage is temporarily unavailable. Please try again later.")
+                        .errorCode("STORAGE_UNAVAILABLE")
+                        .timestamp(LocalDateTime.now().toString())
+                        .build());
+    }
+
+
+    @ExceptionHandler(ProcessingBacklogException.class)
+    public ResponseEntity<ErrorResponse> handleProcessingBacklogExceptions(ProcessingBacklogException e) {
+        log.warn("ProcessingBacklogException occurred: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                .body(ErrorResponse.builder()
+                        .message("Too many images are waiting to be processed. Please try again later.")
+                        .errorCode("PROCESSING_BACKLOG")
+                        .timestamp(LocalDateTime.now().toString())
+                        .build());
+    }
+
+
+    @ExceptionHandler(RenditionUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleRenditionUnavailableExceptions(RenditionUnavailableException e) {
+        log.warn("RenditionUnavailableException occurred: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ErrorResponse.builder()
+                        .message("The image rendition is not available yet. Please try again later.")
+                        .errorCode("RENDITION_UNAVAILABLE")
+                        .timestamp(LocalDateTime.now().toString())
+                        .build());
+    }
+
+
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    @ExceptionHandler(TimeoutException.class)
+    public ErrorResponse handleTimeoutExceptions() {
+        return ErrorResponse.builder()
+                .message("The request took too long to complete. Please try again later.")
+                .errorCode("TIMEOUT")
+                .timestamp(LocalDateTime.now().toString())
+                .build();
+    }
+
 }
@@ -1,22 +1,66 @@
 package com.mattordre.summitstore.image.controller;
 
+import com.mattordre.summitstore.image.dto.CommitImageDTO;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.dto.ImageRendition;
+import com.mattordre.summitstore.image.dto.ImageUploadResultDTO;
+import com.mattordre.summitstore.image.dto.ImageUploadStatus;
+import com.mattordre.summitstore.image.dto.PresignUploadDTO;
+import com.mattordre.summitstore.image.dto.PresignedUrlDTO;
+import com.mattordre.summitstore.image.dto.StoredImage;
 import com.mattordre.summitstore.image.dto.UploadImageDTO;
+import com.mattordre.summitstore.image.dto.UploadImagesDTO;
 import com.mattordre.summitstore.image.exception.ImageNotFoundException;
 import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.service.ImageBatchUploadService;
+import com.mattordre.summitstore.image.service.ImageContentCache;
+import com.mattordre.summitstore.image.service.ImageContentCache.CachedImage;
+import com.mattordre.summitstore.image.service.ImageExistenceIndex;
+import com.mattordre.summitstore.image.service.ImagePresignService;
 import com.mattordre.summitstore.image.service.ImageProcessingService;
+import com.mattordre.summitstore.image.service.ImageProcessingStateNotifier;
+import com.mattordre.summitstore.image.service.ImageProcessingStateService;
+import com.mattordre.summitstore.image.service.ImageRenditionService;
 import com.mattordre.summitstore.image.service.ImageService;
+import com.mattordre.summitstore.image.service.ImageStreamWriter;
+import com.mattordre.summitstore.image.service.StreamingImageUploadService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @RequiredArgsConstructor
 @RestController
@@ -27,29 +71,375 @@ public class ImageController {
 
     private final ImageProcessingService imageProcessingService;
 
+    private final ImageStreamWriter imageStreamWriter;
+
+    private final ImageContentCache imageContentCache;
+
+    private final StreamingImageUploadService streamingImageUploadService;
+
+    private final ImagePresignService imagePresignService;
+
+    private final ImageBatchUploadService imageBatchUploadService;
+
+    private final ImageRenditionService imageRenditionService;
+
+    private final ImageExistenceIndex imageExistenceIndex;
+
+    private final ImageProcessingStateService imageProcessingStateService;
+
+    private final ImageProcessingStateNotifier imageProcessingStateNotifier;
+
+
+    @Value("${image.cache-control.immutable-max-age:365d}")
+    private Duration immutableMaxAge;
+
+    @Value("${image.upload.async.timeout:30s}")
+    private Duration asyncUploadTimeout;
+
+    @Value("${image.coalesce.max-object-size:10MB}")
+    private DataSize coalesceMaxObjectSize;
+
 
     @GetMapping(value = "{filename}", produces = {MediaType.IMAGE_PNG_VALUE})
-    public ResponseEntity<byte[]> getImages(@PathVariable String filename, @RequestParam("type") ImageType imageType) {
+    public void getImages(@PathVariable String filename,
+                          @RequestParam("type") ImageType imageType,
+                          @RequestParam(value = "width", required = false) Integer width,
+                          @RequestParam(value = "height", required = false) Integer height,
+                          @RequestParam(value = "quality", required = false) Integer quality,
+                          @RequestParam(value = "format", required = false) String format,
+                          @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+                          @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRangeHeader,
+                          ServletWebRequest webRequest,
+                          HttpServletResponse response) throws IOException {
+        ImageRendition rendition = imageRenditionService.resolveRendition(filename, width, height, quality, format);
+        // Images that were never uploaded are answered without reaching the object storage
+        if (!imageExistenceIndex.mightExist(imageType, filename)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
         try {
-            ResponseBytes<GetObjectResponse> responseBytes = imageService.getImageFileByName(imageType, filename);
-            // Dynamically determine content type
-            String contentType = Files.probeContentType(Paths.get(filename));
-            // Return the image content as a stream
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(responseBytes.asByteArray());
-        } catch (IOException | ImageNotFoundException e) {
-            return ResponseEntity.notFound().build();
+            // Renditions are stored images too, once resolved they are served like the original ones
+            String objectName = rendition != null ? imageRenditionService.getRenditionFileName(imageType, filename, rendition) : filename;
+            ImageMetadata metadata = imageService.getImageMetadata(imageType, objectName);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, resolveCacheControl(filename).getHeaderValue());
+
+            // Answer conditional requests from the metadata only, without fetching the image content
+            long lastModified = metadata.getLastModified() != null ? metadata.getLastModified().toEpochMilli() : -1;
+            if (webRequest.checkNotModified(metadata.getETag(), lastModified)) {
+                return;
+            }
+            if (HttpMethod.HEAD.matches(webRequest.getRequest().getMethod())) {
+                response.setContentType(resolveContentType(metadata.getContentType(), objectName));
+                response.setContentLengthLong(metadata.getContentLength());
+                return;
+            }
+
+            List<long[]> ranges = rangeHeader != null ? resolveRanges(rangeHeader, metadata.getContentLength()) : null;
+            if (ranges == null || !isIfRangeSatisfied(ifRangeHeader, metadata)) {
+                // Missing, invalid or outdated ranges are ignored and the whole image is returned
+                writeImage(imageType, objectName, metadata, response);
+            } else if (ranges.isEmpty()) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + metadata.getContentLength());
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            } else if (ranges.size() == 1) {
+                writeImageRange(imageType, objectName, metadata, ranges.getFirst(), response);
+            } else {
+                writeImageRanges(imageType, objectName, metadata, ranges, response);
+            }
+        } catch (ImageNotFoundException e) {
+            imageExistenceIndex.recordFalsePositive(imageType);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
     }
 
 
     @PostMapping(consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
     public ResponseEntity<String> uploadImage(@Valid @ModelAttribute UploadImageDTO uploadImageDTO) {
-        String fileName = imageService.uploadImage(uploadImageDTO.getImage(), uploadImageDTO.getType());
-        imageProcessingService.processImageBackground(fileName, uploadImageDTO.getType());
+        StoredImage storedImage = imageService.storeImage(uploadImageDTO.getImage(), uploadImageDTO.getType());
+        if (!storedImage.duplicate()) {
+            imageProcessingService.processImageBackground(storedImage.fileName(), uploadImageDTO.getType());
+        }
         // Return the image fileName which can be used to access the image
+        return ResponseEntity.ok(storedImage.fileName());
+    }
+
+
+    /**
+     * Upload several images in a single request, the result of each file is returned in the order of the request
+     * A 207 Multi-Status is returned when some of the files failed
+     */
+    @PostMapping(value = "batch", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
+    public ResponseEntity<List<ImageUploadResultDTO>> uploadImages(@Valid @ModelAttribute UploadImagesDTO uploadImagesDTO) {
+        List<ImageUploadResultDTO> results = imageBatchUploadService.uploadImages(uploadImagesDTO.getImages(), uploadImagesDTO.getType());
+        boolean allUploaded = results.stream().allMatch(result -> result.getStatus() == ImageUploadStatus.UPLOADED);
+        return ResponseEntity.status(allUploaded ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(results);
+    }
+
+
+    /**
+     * Upload an image without holding a request thread during the object storage and database round-trips
+     * The upload and the processing request are composed into a single pipeline, failed if it exceeds the timeout
+     */
+    @PostMapping(value = "async", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
+    public CompletableFuture<ResponseEntity<String>> uploadImageAsync(@Valid @ModelAttribute UploadImageDTO uploadImageDTO) {
+        ImageType imageType = uploadImageDTO.getType();
+        return imageService.uploadImageAsync(uploadImageDTO.getImage(), imageType)
+                .thenCompose(storedImage -> {
+                    if (storedImage.duplicate()) {
+                        return CompletableFuture.completedFuture(ResponseEntity.ok(storedImage.fileName()));
+                    }
+                    return imageProcessingService.processImageBackgroundAsync(storedImage.fileName(), imageType)
+                            // Return the image fileName which can be used to access the image
+                            .thenApply(processing -> ResponseEntity.ok(storedImage.fileName()));
+                })
+                .orTimeout(asyncUploadTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Upload an image sent as the raw request body, streamed to object storage as it is received
+     * Suited to large images, as the body is neither buffered in memory nor spooled to disk
+     */
+    @PostMapping(value = "stream", consumes = {MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_JPEG_VALUE, "image/jpg"})
+    public ResponseEntity<String> uploadImageStream(@RequestParam("type") ImageType imageType,
+                                                    @RequestParam("filename") String filename,
+                                                    HttpServletRequest request) throws IOException {
+        String fileName = streamingImageUploadService.uploadImage(request.getInputStream(), request.getContentLengthLong(), filename, imageType);
+        imageProcessingService.processImageBackground(fileName, imageType);
+        // Return the image fileName which can be used to access the image
+        return ResponseEntity.ok(fileName);
+    }
+
+
+    /**
+     * Issue a presigned URL to upload an image directly to object storage, the upload must then be committed
+     */
+    @PostMapping("presigned-upload")
+    public ResponseEntity<PresignedUrlDTO> presignUpload(@Valid @RequestBody PresignUploadDTO presignUploadDTO) {
+        return ResponseEntity.ok(imagePresignService.presignUpload(presignUploadDTO));
+    }
+
+
+    /**
+     * Verify an image uploaded with a presigned URL and request its processing
+     */
+    @PostMapping("commit")
+    public ResponseEntity<String> commitImage(@Valid @RequestBody CommitImageDTO commitImageDTO) {
+        String fileName = imagePresignService.commitImage(commitImageDTO.getType(), commitImageDTO.getFileName());
         return ResponseEntity.ok(fileName);
     }
 
+
+    /**
+     * Issue a presigned URL to download an image directly from object storage
+     */
+    @GetMapping("{filename}/presigned-url")
+    public ResponseEntity<PresignedUrlDTO> presignDownload(@PathVariable String filename, @RequestParam("type") ImageType imageType) {
+        return ResponseEntity.ok(imagePresignService.presignDownload(imageType, filename));
+    }
+
+
+    /**
+     * Stream the processing state of an image as Server-Sent Events, completed once the image is processed or failed
+     */
+    @GetMapping(value = "{filename}/processing-state", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getProcessingState(@PathVariable String filename) {
+        return imageProcessingStateNotifier.subscribe(filename, () -> imageProcessingStateService.getProcessingState(filename));
+    }
+
+
+    /**
+     * Write the whole image content, small images are served from the local cache and loaded into it on a miss.
+     * The other ones up to the coalescing size share a single download with the concurrent requests of the same image,
+     * larger ones are streamed straight from object storage
+     */
+    private void writeImage(ImageType imageType, String filename, ImageMetadata metadata, HttpServletResponse response) throws IOException {
+        if (imageContentCache.isCacheable(metadata)) {
+            try (CachedImage cachedImage = imageContentCache.getOrLoad(imageType, filename, () -> imageService.getImageStreamByName(imageType, filename))) {
+                response.setContentType(resolveContentType(cachedImage.getContentType(), filename));
+                response.setContentLengthLong(cachedImage.getContentLength());
+                cachedImage.writeTo(response.getOutputStream(), 0, cachedImage.getContentLength());
+            }
+            return;
+        }
+        if (metadata.getContentLength() <= coalesceMaxObjectSize.toBytes()) {
+            ResponseBytes<GetObjectResponse> image = imageService.getImageFileByName(imageType, filename);
+            response.setContentType(resolveContentType(image.response().contentType(), filename));
+            response.setContentLengthLong(image.asByteArrayUnsafe().length);
+            response.getOutputStream().write(image.asByteArrayUnsafe());
+            return;
+        }
+
+        try (ResponseInputStream<GetObjectResponse> imageStream = imageService.getImageStreamByName(imageType, filename)) {
+            GetObjectResponse object = imageStream.response();
+            // Forward the object metadata before streaming the content
+            response.setContentType(resolveContentType(object.contentType(), filename));
+            response.setContentLengthLong(object.contentLength());
+            imageStreamWriter.transfer(imageStream, response.getOutputStream());
+        }
+    }
+
+
+    /**
+     * Write a single byte range of the image as a 206 Partial Content response
+     * The partial content headers are only set once the range is available, so an error response never carries them
+     */
+    private void writeImageRange(ImageType imageType, String filename, ImageMetadata metadata, long[] range, HttpServletResponse response) throws IOException {
+        Optional<CachedImage> cachedImage = imageContentCache.getIfPresent(imageType, filename);
+        if (cachedImage.isPresent()) {
+            try (CachedImage image = cachedImage.get()) {
+                setPartialContentHeaders(filename, metadata, range, response);
+                image.writeTo(response.getOutputStream(), range[0], range[1] - range[0] + 1);
+            }
+            return;
+        }
+        try (ResponseInputStream<GetObjectResponse> imageStream = imageService.getImageStreamByName(imageType, filename, range[0], range[1])) {
+            setPartialContentHeaders(filename, metadata, range, response);
+            imageStreamWriter.transfer(imageStream, response.getOutputStream());
+        }
+    }
+
+
+    private void setPartialContentHeaders(String filename, ImageMetadata metadata, long[] range, HttpServletResponse response) {
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType(resolveContentType(metadata.getContentType(), filename));
+        response.setContentLengthLong(range[1] - range[0] + 1);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, metadata.getContentLength()));
+    }
+
+
+    /**
+     * Write several byte ranges of the image as a 206 Partial Content multipart/byteranges response,
+     * each part being read from the local cache or fetched with its own ranged request to object storage
+     */
+    private void writeImageRanges(ImageType imageType, String filename, ImageMetadata metadata, List<long[]> ranges, HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        String contentType = resolveContentType(metadata.getContentType(), filename);
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        OutputStream output = response.getOutputStream();
+        Optional<CachedImage> cachedImage = imageContentCache.getIfPresent(imageType, filename);
+        try {
+            for (long[] range : ranges) {
+                String partHeaders = "\r\n--" + boundary + "\r\n"
+                        + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                        + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, metadata.getContentLength()) + "\r\n\r\n";
+                output.write(partHeaders.getBytes(StandardCharsets.US_ASCII));
+                if (cachedImage.isPresent()) {
+                    cachedImage.get().writeTo(output, range[0], range[1] - range[0] + 1);
+                    continue;
+                }
+                try (ResponseInputStream<GetObjectResponse> imageStream = imageService.getImageStreamByName(imageType, filename, range[0], range[1])) {
+                    imageStreamWriter.transfer(imageStream, output);
+                }
+            }
+        } finally {
+            if (cachedImage.isPresent()) {
+                cachedImage.get().close();
+            }
+        }
+        output.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+    }
+
+
+    /**
+     * Resolve the byte ranges requested by a Range header against the image length.
+     * Overlapping and adjacent ranges are merged, as allowed by RFC 9110
+     * @param rangeHeader Value of the Range header
+     * @param contentLength Length of the image
+     * @return Sorted list of inclusive [start, end] ranges, empty if none is satisfiable, or null if the header is invalid
+     */
+    private List<long[]> resolveRanges(String rangeHeader, long contentLength) {
+        List<HttpRange> httpRanges;
+        try {
+            httpRanges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<>();
+        for (HttpRange httpRange : httpRanges) {
+            if (contentLength == 0) {
+                break;
+            }
+            long start = httpRange.getRangeStart(contentLength);
+            long end = httpRange.getRangeEnd(contentLength);
+            if (start < contentLength && start <= end) {
+                ranges.add(new long[]{start, end});
+            }
+        }
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.getLast();
+            if (last != null && range[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+
+    /**
+     * Check the If-Range precondition, ranges must only be served if the image did not change since the client
+     * retrieved the validator, which can be either a strong ETag or a Last-Modified date
+     */
+    private boolean isIfRangeSatisfied(String ifRangeHeader, ImageMetadata metadata) {
+        if (ifRangeHeader == null) {
+            return true;
+        }
+        if (ifRangeHeader.startsWith("\"")) {
+            return ifRangeHeader.equals(metadata.getETag());
+        }
+        if (ifRangeHeader.startsWith("W/")) {
+            // Weak validators cannot be used for ranges
+            return false;
+        }
+        try {
+            Instant date = ZonedDateTime.parse(ifRangeHeader, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return metadata.getLastModified() != null && date.equals(metadata.getLastModified().truncatedTo(ChronoUnit.SECONDS));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Resolve the caching policy of an image, file names generated on upload are unique so their content never changes
+     * and can be cached by clients for a long time, other files must be revalidated with their ETag
+     */
+    private CacheControl resolveCacheControl(String filename) {
+        if (imageService.isImmutableFileName(filename)) {
+            return CacheControl.maxAge(immutableMaxAge).cachePublic().immutable();
+        }
+        return CacheControl.noCache();
+    }
+
+
+    private String contentRange(long[] range, long contentLength) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + contentLength;
+    }
+
+
+
+    /**
+     * Resolve the content type of an image, using the one stored with the object when available
+     * @param storedContentType Content type stored in object storage
+     * @param filename Image file name
+     * @return Content type of the image
+     */
+    private String resolveContentType(String storedContentType, String filename) {
+        if (storedContentType != null && !storedContentType.equals(MediaType.APPLICATION_OCTET_STREAM_VALUE)) {
+            return storedContentType;
+        }
+        // Fall back to the in-memory extension mapping, without probing the file system
+        return MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+
 }
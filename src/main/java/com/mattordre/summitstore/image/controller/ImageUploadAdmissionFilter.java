@@ -0,0 +1,71 @@
+package com.mattordre.summitstore.image.controller;
+
+import com.mattordre.summitstore.image.exception.ProcessingBacklogException;
+import com.mattordre.summitstore.image.service.ImageUploadAdmission;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Admission of the image uploads before their body is received.
+ * Running as a servlet filter, uploads are admitted before the dispatcher servlet parses the multipart body, so
+ * rejected uploads are answered right away without reading or spooling their images. Rejections are resolved by the
+ * exception handlers like the errors of the controllers
+ */
+@Component
+public class ImageUploadAdmissionFilter extends OncePerRequestFilter {
+
+    private static final String BATCH_UPLOAD_PATH = "/api/image/batch";
+
+    private static final Set<String> UPLOAD_PATHS = Set.of(
+            "/api/image",
+            "/api/image/async",
+            "/api/image/stream",
+            "/api/image/presigned-upload",
+            BATCH_UPLOAD_PATH
+    );
+
+    private final ImageUploadAdmission imageUploadAdmission;
+
+    private final HandlerExceptionResolver handlerExceptionResolver;
+
+
+    public ImageUploadAdmissionFilter(ImageUploadAdmission imageUploadAdmission,
+                                      @Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver) {
+        this.imageUploadAdmission = imageUploadAdmission;
+        this.handlerExceptionResolver = handlerExceptionResolver;
+    }
+
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod()) || !UPLOAD_PATHS.contains(path(request));
+    }
+
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        try {
+            imageUploadAdmission.admit(BATCH_UPLOAD_PATH.equals(path(request)));
+        } catch (ProcessingBacklogException e) {
+            handlerExceptionResolver.resolveException(request, response, null, e);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+
+    private String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+}
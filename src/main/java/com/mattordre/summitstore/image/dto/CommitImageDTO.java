@@ -0,0 +1,21 @@
+package com.mattordre.summitstore.image.dto;
+
+import com.mattordre.summitstore.image.model.ImageType;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommitImageDTO {
+
+    @NotEmpty(message = "Image file name is required")
+    private String fileName;
+
+    @NotNull(message = "Image type is required")
+    private ImageType type;
+
+}
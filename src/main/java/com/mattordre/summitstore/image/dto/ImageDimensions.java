@@ -0,0 +1,8 @@
+package com.mattordre.summitstore.image.dto;
+
+/**
+ * Pixel dimensions of an image
+ * @param width Width in pixels
+ * @param height Height in pixels
+ */
+public record ImageDimensions(int width, int height) {}
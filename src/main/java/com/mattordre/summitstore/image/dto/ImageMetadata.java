@@ -0,0 +1,29 @@
+package com.mattordre.summitstore.image.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@Builder
+public class ImageMetadata {
+
+    private final long contentLength;
+
+    private final String contentType;
+
+    private final String eTag;
+
+    private final Instant lastModified;
+
+    // Captured on upload, null if the image was not uploaded through the API
+    private final Integer width;
+
+    private final Integer height;
+
+    private final String checksum;
+
+    private final Instant uploadedAt;
+
+}
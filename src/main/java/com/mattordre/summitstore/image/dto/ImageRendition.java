@@ -0,0 +1,10 @@
+package com.mattordre.summitstore.image.dto;
+
+/**
+ * Resized and re-encoded variant of an image, requested along with the original image
+ * @param width Maximum width in pixels, or null to only bound the height
+ * @param height Maximum height in pixels, or null to only bound the width
+ * @param quality Encoding quality from 1 to 100, only used by lossy formats
+ * @param format Output format name, png or jpeg
+ */
+public record ImageRendition(Integer width, Integer height, int quality, String format) {}
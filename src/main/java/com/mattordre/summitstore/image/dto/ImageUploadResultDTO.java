@@ -0,0 +1,19 @@
+package com.mattordre.summitstore.image.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class ImageUploadResultDTO {
+
+    private final String originalFileName;
+
+    // Image fileName stored in object storage, null if the upload failed
+    private final String fileName;
+
+    private final ImageUploadStatus status;
+
+    private final String error;
+
+}
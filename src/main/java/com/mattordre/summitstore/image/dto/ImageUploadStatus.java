@@ -0,0 +1,13 @@
+package com.mattordre.summitstore.image.dto;
+
+public enum ImageUploadStatus {
+
+    // Image uploaded and its processing requested
+    UPLOADED,
+
+    // Image uploaded but its processing could not be requested
+    PROCESSING_NOT_REQUESTED,
+
+    FAILED
+
+}
@@ -0,0 +1,29 @@
+package com.mattordre.summitstore.image.dto;
+
+import com.mattordre.summitstore.image.model.ImageType;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.*;
+import org.hibernate.validator.constraints.Length;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresignUploadDTO {
+
+    // The stored file name is prefixed with a UUID and a dash, and must fit the 100 characters of the image columns
+    @NotEmpty(message = "Image file name is required")
+    @Length(max = 63, message = "Image file name cannot be longer than 63 characters")
+    private String fileName;
+
+    @NotNull(message = "Image content type is required")
+    @Pattern(regexp = "image/(png|jpeg|jpg)", message = "Image file must be a valid image type (PNG, JPEG, or JPG)")
+    private String contentType;
+
+    @NotNull(message = "Image type is required")
+    private ImageType type;
+
+}
@@ -0,0 +1,25 @@
+package com.mattordre.summitstore.image.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Builder
+public class PresignedUrlDTO {
+
+    private final String fileName;
+
+    private final String method;
+
+    private final String url;
+
+    // Headers the client must send along with the request, as they are part of the signature
+    private final Map<String, List<String>> headers;
+
+    private final Instant expiresAt;
+
+}
@@ -0,0 +1,18 @@
+package com.mattordre.summitstore.image.dto;
+
+/**
+ * Image file stored in object storage by an upload
+ * @param fileName Image fileName stored in object storage
+ * @param sourceFileName File name of the stored image whose content was copied to this fileName, or null if the
+ * content was uploaded
+ */
+public record StoredImage(String fileName, String sourceFileName) {
+
+    /**
+     * @return True if the content was copied from an already stored image, so it has already been processed
+     */
+    public boolean duplicate() {
+        return sourceFileName != null;
+    }
+
+}
@@ -7,10 +7,15 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Set;
+
 @Getter
 @Setter
 public class UploadImageDTO {
 
+    // Content types accepted for uploaded image files
+    public static final Set<String> ALLOWED_CONTENT_TYPES = Set.of("image/png", "image/jpeg", "image/jpg");
+
     @NotNull(message = "Image file is required")
     private MultipartFile image;
 
@@ -23,8 +28,17 @@ public class UploadImageDTO {
             return false; // Validation will catch null/empty cases with a more specific error
         }
 
-        String contentType = image.getContentType();
-        return contentType.equals("image/png") || contentType.equals("image/jpeg") || contentType.equals("image/jpg");
+        return isAllowedContentType(image.getContentType());
+    }
+
+
+    /**
+     * Check if an uploaded file content type is one of the accepted image types
+     * @param contentType Content type of the uploaded file
+     * @return True if the content type is accepted, false otherwise
+     */
+    public static boolean isAllowedContentType(String contentType) {
+        return contentType != null && ALLOWED_CONTENT_TYPES.contains(contentType);
     }
 
 }
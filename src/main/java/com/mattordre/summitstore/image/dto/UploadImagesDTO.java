@@ -0,0 +1,23 @@
+package com.mattordre.summitstore.image.dto;
+
+import com.mattordre.summitstore.image.model.ImageType;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class UploadImagesDTO {
+
+    // Each file is validated on its own, so an invalid file only fails its own upload
+    @NotEmpty(message = "At least one image file is required")
+    private List<MultipartFile> images;
+
+    @NotNull(message = "Image type is required")
+    private ImageType type;
+
+}
@@ -0,0 +1,11 @@
+package com.mattordre.summitstore.image.event;
+
+import com.mattordre.summitstore.image.model.ImageType;
+
+/**
+ * Application event published once an image file has been deleted from object storage,
+ * so local copies of the image can be invalidated
+ * @param imageType Type of the deleted image
+ * @param fileName Deleted image file name
+ */
+public record ImageDeletedEvent(ImageType imageType, String fileName) {}
@@ -0,0 +1,11 @@
+package com.mattordre.summitstore.image.event;
+
+import com.mattordre.summitstore.image.model.ImageType;
+
+/**
+ * Application event published once an image file has been stored in object storage,
+ * so local indexes of the stored images can be updated
+ * @param imageType Type of the uploaded image
+ * @param fileName Uploaded image file name
+ */
+public record ImageUploadedEvent(ImageType imageType, String fileName) {}
@@ -0,0 +1,20 @@
+package com.mattordre.summitstore.image.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Upload rejected as the image processing backlog is too large
+ */
+@Getter
+public class ProcessingBacklogException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ProcessingBacklogException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.mattordre.summitstore.image.exception;
+
+public class RenditionUnavailableException extends RuntimeException {
+
+    public RenditionUnavailableException(String message) {
+        super(message);
+    }
+
+    public RenditionUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.mattordre.summitstore.image.exception;
+
+/**
+ * Object storage call rejected without being made, as the object storage is failing or saturated
+ */
+public class StorageUnavailableException extends StorageAccessException {
+
+    public StorageUnavailableException(String message) {
+        super(message);
+    }
+
+}
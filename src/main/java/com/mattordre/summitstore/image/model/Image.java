@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 
+import java.time.Instant;
+
 @Getter
 @Setter
 @SuperBuilder
@@ -26,4 +28,32 @@ public abstract class Image {
     @Column(name = "bucket_name", nullable = false, length = 50)
     private String bucketName;
 
+    // Metadata captured on upload, missing for images uploaded without going through the API
+    @Column(name = "content_length")
+    private Long contentLength;
+
+    @Column(name = "content_type", length = 50)
+    private String contentType;
+
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
+    @Column(name = "checksum", length = 64)
+    private String checksum;
+
+    @Column(name = "uploaded_at")
+    private Instant uploadedAt;
+
+    // Background processing requested on upload, updated once the processing service reports its completion
+    @Builder.Default
+    @Enumerated(EnumType.STRING)
+    @Column(name = "processing_state", nullable = false, length = 20)
+    private ImageProcessingState processingState = ImageProcessingState.PENDING;
+
+    @Column(name = "processed_at")
+    private Instant processedAt;
+
 }
@@ -0,0 +1,53 @@
+package com.mattordre.summitstore.image.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Index of the stored image files by SHA-256 digest of their content, used to deduplicate uploads
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "image_digest")
+@Table(name = "image_digest")
+@IdClass(ImageDigest.ImageDigestId.class)
+public class ImageDigest {
+
+    @Id
+    @Column(name = "bucket_name", nullable = false, length = 50)
+    private String bucketName;
+
+    @Id
+    @Column(name = "digest", nullable = false, length = 64)
+    private String digest;
+
+    @Column(name = "file_name", nullable = false, length = 100)
+    private String fileName;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "last_used_at")
+    private Instant lastUsedAt;
+
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class ImageDigestId implements Serializable {
+
+        private String bucketName;
+
+        private String digest;
+
+    }
+
+}
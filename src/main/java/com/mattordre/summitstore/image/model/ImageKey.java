@@ -0,0 +1,8 @@
+package com.mattordre.summitstore.image.model;
+
+/**
+ * Identity of an image file in object storage
+ * @param type Type of the image, which determines its bucket
+ * @param fileName Image file name
+ */
+public record ImageKey(ImageType type, String fileName) {}
@@ -0,0 +1,34 @@
+package com.mattordre.summitstore.image.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Processing completion of an image file not referenced yet, applied to the image once it is referenced
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "image_processing_completion")
+@Table(name = "image_processing_completion")
+public class ImageProcessingCompletion {
+
+    @Id
+    @Column(name = "file_name", nullable = false, length = 100)
+    private String fileName;
+
+    @Column(name = "bucket_name", nullable = false, length = 50)
+    private String bucketName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", nullable = false, length = 20)
+    private ImageProcessingState state;
+
+    @Column(name = "completed_at", nullable = false)
+    private Instant completedAt;
+
+}
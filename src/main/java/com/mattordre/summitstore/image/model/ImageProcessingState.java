@@ -0,0 +1,20 @@
+package com.mattordre.summitstore.image.model;
+
+public enum ImageProcessingState {
+
+    // Processing requested, not completed yet
+    PENDING,
+
+    PROCESSED,
+
+    FAILED;
+
+
+    /**
+     * @return True if the processing is over, false otherwise
+     */
+    public boolean isTerminal() {
+        return this != PENDING;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.mattordre.summitstore.image.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Image processing message waiting to be published, written in the same transaction as the rows it relates to
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "image_processing_outbox")
+@Table(name = "image_processing_outbox")
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false, updatable = false)
+    private Long id;
+
+    @Column(name = "queue_name", nullable = false, length = 100)
+    private String queueName;
+
+    @Column(name = "bucket_name", nullable = false, length = 50)
+    private String bucketName;
+
+    @Column(name = "file_name", nullable = false, length = 100)
+    private String fileName;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+}
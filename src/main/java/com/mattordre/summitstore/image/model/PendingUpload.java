@@ -0,0 +1,53 @@
+package com.mattordre.summitstore.image.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Image upload issued with a presigned URL, which can be committed once until it expires
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "image_pending_upload")
+@Table(name = "image_pending_upload")
+@IdClass(PendingUpload.PendingUploadId.class)
+public class PendingUpload {
+
+    @Id
+    @Column(name = "bucket_name", nullable = false, length = 50)
+    private String bucketName;
+
+    @Id
+    @Column(name = "file_name", nullable = false, length = 100)
+    private String fileName;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "committed_at")
+    private Instant committedAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class PendingUploadId implements Serializable {
+
+        private String bucketName;
+
+        private String fileName;
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.mattordre.summitstore.image.repository;
+
+import com.mattordre.summitstore.image.model.ImageDigest;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface ImageDigestRepository extends JpaRepository<ImageDigest, ImageDigest.ImageDigestId> {
+
+    /**
+     * Index a digest, or point an indexed digest to the given file, concurrent uploads of the same content do not fail
+     * @return Number of inserted or updated rows
+     */
+    @Modifying
+    @Query(value = "INSERT INTO image_digest (bucket_name, digest, file_name, created_at) VALUES (:bucketName, :digest, :fileName, :createdAt) ON CONFLICT (bucket_name, digest) DO UPDATE SET file_name = EXCLUDED.file_name, created_at = EXCLUDED.created_at", nativeQuery = true)
+    int upsert(@Param("bucketName") String bucketName, @Param("digest") String digest, @Param("fileName") String fileName, @Param("createdAt") Instant createdAt);
+
+
+    /**
+     * Find which of the given image files have been reused for deduplication since the given instant
+     * @param bucketName Bucket of the image files
+     * @param fileNames Image file names to look up
+     * @param since Oldest reuse instant
+     * @return Recently reused image file names among the given ones
+     */
+    @Query("SELECT d.fileName FROM image_digest d WHERE d.bucketName = :bucketName AND d.fileName IN :fileNames AND d.lastUsedAt >= :since")
+    List<String> findFileNamesUsedSince(@Param("bucketName") String bucketName, @Param("fileNames") Collection<String> fileNames, @Param("since") Instant since);
+
+
+    /**
+     * Remove the digests of deleted image files, so their content is not reused
+     * @return Number of deleted rows
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM image_digest d WHERE d.bucketName = :bucketName AND d.fileName IN :fileNames")
+    int deleteByFileNames(@Param("bucketName") String bucketName, @Param("fileNames") Collection<String> fileNames);
+
+}
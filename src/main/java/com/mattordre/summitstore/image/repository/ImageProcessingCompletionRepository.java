@@ -0,0 +1,58 @@
+package com.mattordre.summitstore.image.repository;
+
+import com.mattordre.summitstore.image.model.ImageProcessingCompletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+
+public interface ImageProcessingCompletionRepository extends JpaRepository<ImageProcessingCompletion, String> {
+
+    /**
+     * Record the completion of an image file, replacing any previous one
+     * @return Number of inserted or updated rows
+     */
+    @Modifying
+    @Query(value = "INSERT INTO image_processing_completion (file_name, bucket_name, state, completed_at) VALUES (:fileName, :bucketName, :state, :completedAt) ON CONFLICT (file_name) DO UPDATE SET bucket_name = EXCLUDED.bucket_name, state = EXCLUDED.state, completed_at = EXCLUDED.completed_at", nativeQuery = true)
+    int upsert(@Param("fileName") String fileName, @Param("bucketName") String bucketName, @Param("state") String state, @Param("completedAt") Instant completedAt);
+
+
+    /**
+     * Apply the recorded completions of the given image files to their images
+     * @return Number of updated images
+     */
+    @Modifying
+    @Query(value = "UPDATE image i SET processing_state = c.state, processed_at = c.completed_at FROM image_processing_completion c WHERE c.file_name = i.file_name AND c.bucket_name = i.bucket_name AND i.file_name IN :fileNames", nativeQuery = true)
+    int applyToImages(@Param("fileNames") Collection<String> fileNames);
+
+
+    /**
+     * Apply every recorded completion whose image is referenced
+     * @return Number of updated images
+     */
+    @Modifying
+    @Query(value = "UPDATE image i SET processing_state = c.state, processed_at = c.completed_at FROM image_processing_completion c WHERE c.file_name = i.file_name AND c.bucket_name = i.bucket_name", nativeQuery = true)
+    int applyAllToImages();
+
+
+    /**
+     * Remove the completions applied to their image
+     * @return Number of deleted rows
+     */
+    @Modifying
+    @Query(value = "DELETE FROM image_processing_completion c USING image i WHERE c.file_name = i.file_name AND c.bucket_name = i.bucket_name", nativeQuery = true)
+    int deleteApplied();
+
+
+    /**
+     * Remove the completions of images still not referenced after the given instant
+     * @return Number of deleted rows
+     */
+    @Modifying
+    @Query("DELETE FROM image_processing_completion c WHERE c.completedAt < :before")
+    int deleteCompletedBefore(@Param("before") Instant before);
+
+}
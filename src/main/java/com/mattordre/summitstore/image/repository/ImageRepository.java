@@ -1,8 +1,72 @@
 package com.mattordre.summitstore.image.repository;
 
 import com.mattordre.summitstore.image.model.Image;
+import com.mattordre.summitstore.image.model.ImageProcessingState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
-public interface ImageRepository extends JpaRepository<Image, String> {}
\ No newline at end of file
+public interface ImageRepository extends JpaRepository<Image, String> {
+
+    /**
+     * Find the metadata columns of an image, without loading the entity and its associations
+     * @param fileName Image file name
+     * @return Optional containing the image metadata, or empty if the image is not referenced
+     */
+    Optional<StoredImageMetadata> findMetadataByFileName(String fileName);
+
+
+    /**
+     * Find which of the given image files are referenced
+     * @param bucketName Bucket of the image files
+     * @param fileNames Image file names to look up
+     * @return Referenced image file names among the given ones
+     */
+    @Query("SELECT i.fileName FROM image i WHERE i.bucketName = :bucketName AND i.fileName IN :fileNames")
+    List<String> findReferencedFileNames(@Param("bucketName") String bucketName, @Param("fileNames") Collection<String> fileNames);
+
+
+    /**
+     * Find the processing state of an image
+     * @param fileName Image file name
+     * @return Optional containing the processing state, or empty if the image is not referenced
+     */
+    @Query("SELECT i.processingState FROM image i WHERE i.fileName = :fileName")
+    Optional<ImageProcessingState> findProcessingStateByFileName(@Param("fileName") String fileName);
+
+
+    /**
+     * Record the processing state of several images at once
+     * @return Number of updated rows
+     */
+    @Modifying
+    @Query("UPDATE image i SET i.processingState = :state, i.processedAt = :processedAt WHERE i.fileName IN :fileNames")
+    int updateProcessingState(@Param("fileNames") Collection<String> fileNames, @Param("state") ImageProcessingState state, @Param("processedAt") Instant processedAt);
+
+
+    interface StoredImageMetadata {
+
+        String getBucketName();
+
+        Long getContentLength();
+
+        String getContentType();
+
+        Integer getWidth();
+
+        Integer getHeight();
+
+        String getChecksum();
+
+        Instant getUploadedAt();
+
+    }
+
+}
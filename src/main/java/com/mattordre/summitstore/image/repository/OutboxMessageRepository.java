@@ -0,0 +1,32 @@
+package com.mattordre.summitstore.image.repository;
+
+import com.mattordre.summitstore.image.model.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /**
+     * Lock the oldest messages, skipping the ones locked by another relay so several instances drain the outbox
+     * in parallel. The locks are held until the end of the current transaction
+     * @param limit Maximum number of messages
+     * @return Locked messages, in insertion order
+     */
+    @Query(value = "SELECT * FROM image_processing_outbox ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxMessage> lockOldest(@Param("limit") int limit);
+
+
+    /**
+     * Remove published messages
+     * @return Number of deleted rows
+     */
+    @Modifying
+    @Query("DELETE FROM image_processing_outbox m WHERE m.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+}
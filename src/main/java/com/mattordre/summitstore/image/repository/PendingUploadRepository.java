@@ -0,0 +1,44 @@
+package com.mattordre.summitstore.image.repository;
+
+import com.mattordre.summitstore.image.model.PendingUpload;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface PendingUploadRepository extends JpaRepository<PendingUpload, PendingUpload.PendingUploadId> {
+
+    /**
+     * Mark a pending upload as committed, unless it has expired or has already been committed. Concurrent commits of
+     * the same upload are serialized by the row lock, so only one of them succeeds
+     * @return Number of updated rows, 0 if the upload cannot be committed
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE image_pending_upload u SET u.committedAt = :now WHERE u.bucketName = :bucketName AND u.fileName = :fileName AND u.committedAt IS NULL AND u.expiresAt > :now")
+    int markCommitted(@Param("bucketName") String bucketName, @Param("fileName") String fileName, @Param("now") Instant now);
+
+
+    /**
+     * Make a committed upload pending again, when its commit could not be completed
+     * @return Number of updated rows
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE image_pending_upload u SET u.committedAt = NULL WHERE u.bucketName = :bucketName AND u.fileName = :fileName")
+    int markPending(@Param("bucketName") String bucketName, @Param("fileName") String fileName);
+
+
+    /**
+     * Remove the uploads whose presigned URL has expired before the given instant
+     * @return Number of deleted rows
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM image_pending_upload u WHERE u.expiresAt < :before")
+    int deleteExpiredBefore(@Param("before") Instant before);
+
+}
@@ -0,0 +1,115 @@
+package com.mattordre.summitstore.image.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter of strings, which may report a key that was never added but never misses an added one.
+ * Keys can be added and checked concurrently, they cannot be removed
+ */
+public final class BloomFilter {
+
+    // Bits are stored in a Java array, indexed by an int
+    private static final long MAX_BIT_COUNT = (long) Integer.MAX_VALUE * Long.SIZE;
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private final AtomicLong setBitCount = new AtomicLong();
+
+
+    /**
+     * Create a filter sized for the given number of keys
+     * @param expectedInsertions Number of keys expected to be added
+     * @param falsePositiveProbability Probability of reporting an absent key once the expected keys are added
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        long insertions = Math.max(1, expectedInsertions);
+        double optimalBitCount = -insertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        long words = (long) Math.ceil(Math.min(Math.max(optimalBitCount, Long.SIZE), MAX_BIT_COUNT) / Long.SIZE);
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / insertions * Math.log(2)));
+    }
+
+
+    /**
+     * Add a key to the filter
+     * @param key Key to add
+     */
+    public void put(String key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            setBit(Math.floorMod(hash1 + i * hash2, bitCount));
+        }
+    }
+
+
+    /**
+     * @param key Key to check
+     * @return False if the key was never added, true if it may have been added
+     */
+    public boolean mightContain(String key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * @return Probability of reporting an absent key, estimated from the bits currently set
+     */
+    public double expectedFalsePositiveProbability() {
+        return Math.pow((double) setBitCount.get() / bitCount, hashCount);
+    }
+
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+        setBitCount.incrementAndGet();
+    }
+
+
+    /**
+     * 64-bit FNV-1a hash of the UTF-8 encoded key, finalized so all its bits are well distributed
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+
+    /**
+     * SplitMix64 finalizer, also used to derive the second hash of the double hashing, made odd so the probes
+     * do not cycle early on the power-of-two multiple bit count
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+}
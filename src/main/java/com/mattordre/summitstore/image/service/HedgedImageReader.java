@@ -0,0 +1,280 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.config.StorageGuard;
+import com.mattordre.summitstore.config.StorageOperation;
+import com.mattordre.summitstore.image.exception.StorageUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read image files from the primary object storage endpoint, hedged with a replica endpoint.
+ * Reads are hedged on their response headers: when the primary has not answered within the configured percentile of
+ * its recent latencies to first byte, the same read is sent to the replica and the first successful response wins,
+ * the other request is cancelled or its stream aborted. The content is then streamed from the winner. Hedged requests
+ * are limited to a share of the reads, so a slow primary cannot double the load on the object storage. A hedged request
+ * also takes its own slot of the storage guard, it is not sent when the object storage is saturated
+ */
+@Component
+public class HedgedImageReader {
+
+    private static final String PRIMARY = "primary";
+
+    private static final String REPLICA = "replica";
+
+    private final S3ClientRegistry s3ClientRegistry;
+
+    private final StorageGuard storageGuard;
+
+    private final String primaryEndpoint;
+
+    private final String replicaEndpoint;
+
+    private final Duration minDelay;
+
+    private final Duration maxDelay;
+
+    private final double maxHedgeRate;
+
+    private final double budgetBurst;
+
+    private final LatencyTracker primaryLatencies;
+
+    private final LatencyTracker replicaLatencies;
+
+    private final Timer primaryTimer;
+
+    private final Timer replicaTimer;
+
+    private final Counter hedgedReads;
+
+    private final Counter budgetExhaustedReads;
+
+    private final Counter rejectedHedges;
+
+    private final Counter primaryWins;
+
+    private final Counter replicaWins;
+
+    // Hedged requests that can still be sent, refilled by every read
+    private double hedgeBudget;
+
+
+    public HedgedImageReader(S3ClientRegistry s3ClientRegistry,
+                             StorageGuard storageGuard,
+                             MeterRegistry meterRegistry,
+                             @Value("${image.store.url}") String primaryEndpoint,
+                             @Value("${image.store.replica.url:}") String replicaEndpoint,
+                             @Value("${image.hedge.percentile:0.95}") double percentile,
+                             @Value("${image.hedge.min-delay:10ms}") Duration minDelay,
+                             @Value("${image.hedge.max-delay:500ms}") Duration maxDelay,
+                             @Value("${image.hedge.max-rate:0.05}") double maxHedgeRate,
+                             @Value("${image.hedge.budget-burst:10}") double budgetBurst) {
+        this.s3ClientRegistry = s3ClientRegistry;
+        this.storageGuard = storageGuard;
+        this.primaryEndpoint = primaryEndpoint;
+        this.replicaEndpoint = replicaEndpoint;
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.maxHedgeRate = maxHedgeRate;
+        this.budgetBurst = budgetBurst;
+        this.hedgeBudget = budgetBurst;
+        this.primaryLatencies = new LatencyTracker(1024, percentile);
+        this.replicaLatencies = new LatencyTracker(1024, percentile);
+        this.primaryTimer = Timer.builder("image.store.read").tag("endpoint", PRIMARY).register(meterRegistry);
+        this.replicaTimer = Timer.builder("image.store.read").tag("endpoint", REPLICA).register(meterRegistry);
+        this.hedgedReads = Counter.builder("image.hedge.requests").register(meterRegistry);
+        this.budgetExhaustedReads = Counter.builder("image.hedge.budget.exhausted").register(meterRegistry);
+        this.rejectedHedges = Counter.builder("image.hedge.rejected").register(meterRegistry);
+        this.primaryWins = Counter.builder("image.hedge.wins").tag("endpoint", PRIMARY).register(meterRegistry);
+        this.replicaWins = Counter.builder("image.hedge.wins").tag("endpoint", REPLICA).register(meterRegistry);
+        Gauge.builder("image.hedge.delay", this, reader -> reader.hedgeDelay().toNanos() / 1e6)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("image.store.read.percentile", primaryLatencies, latencies -> latencies.percentileNanos() / 1e6)
+                .tag("endpoint", PRIMARY)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("image.store.read.percentile", replicaLatencies, latencies -> latencies.percentileNanos() / 1e6)
+                .tag("endpoint", REPLICA)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * @return True if a replica endpoint is configured, false if reads must go to the primary client only
+     */
+    public boolean isEnabled() {
+        return !replicaEndpoint.isBlank();
+    }
+
+
+    /**
+     * Open a stream on an image file, hedged with the replica endpoint if the primary is slow to answer
+     * The caller must close the stream once consumed, or abort it to release the connection if it is not fully read
+     * @param request Object storage request
+     * @return Image file content stream of the first endpoint that answered, along with the object metadata
+     * @throws RuntimeException Exception of the object storage call, from the primary unless the replica was also tried
+     */
+    public ResponseInputStream<GetObjectResponse> openStream(GetObjectRequest request) {
+        refillBudget();
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> primary = fetch(primaryEndpoint, primaryTimer, primaryLatencies, request);
+        try {
+            return primary.get(hedgeDelay().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // The primary is slower than usual, hedge the read
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            discard(primary, null);
+            Thread.currentThread().interrupt();
+            throw AbortedException.create("Interrupted while reading image " + request.key(), e);
+        }
+
+        if (!tryConsumeBudget()) {
+            budgetExhaustedReads.increment();
+            return await(primary, request);
+        }
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> replica;
+        try {
+            replica = storageGuard.executeAsync(StorageOperation.GET, () -> fetch(replicaEndpoint, replicaTimer, replicaLatencies, request));
+        } catch (StorageUnavailableException e) {
+            rejectedHedges.increment();
+            return await(primary, request);
+        }
+        hedgedReads.increment();
+
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> winner = firstSuccessful(primary, replica);
+        winner.whenComplete((result, e) -> {
+            // Release the connection of the losing request
+            discard(primary, result);
+            discard(replica, result);
+        });
+        return await(winner, request);
+    }
+
+
+    /**
+     * @return Delay after which a read is hedged, the primary latency percentile bounded by the configured delays
+     */
+    public Duration hedgeDelay() {
+        long percentileNanos = primaryLatencies.percentileNanos();
+        if (percentileNanos < 0) {
+            return maxDelay;
+        }
+        return Duration.ofNanos(Math.clamp(percentileNanos, minDelay.toNanos(), maxDelay.toNanos()));
+    }
+
+
+    /**
+     * Send a read to an endpoint, completed once the response headers are received
+     */
+    private CompletableFuture<ResponseInputStream<GetObjectResponse>> fetch(String endpoint, Timer timer, LatencyTracker latencies, GetObjectRequest request) {
+        long start = System.nanoTime();
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> response = s3ClientRegistry.getAsyncClient(endpoint)
+                .getObject(request, AsyncResponseTransformer.toBlockingInputStream());
+        // Cancelled losers are not recorded, their latency is unknown
+        response.whenComplete((result, e) -> {
+            if (e == null) {
+                long latency = System.nanoTime() - start;
+                timer.record(latency, TimeUnit.NANOSECONDS);
+                latencies.record(latency);
+            }
+        });
+        return response;
+    }
+
+
+    private CompletableFuture<ResponseInputStream<GetObjectResponse>> firstSuccessful(CompletableFuture<ResponseInputStream<GetObjectResponse>> primary,
+                                                                                     CompletableFuture<ResponseInputStream<GetObjectResponse>> replica) {
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> winner = new CompletableFuture<>();
+        AtomicInteger pendingRequests = new AtomicInteger(2);
+        primary.whenComplete((result, e) -> {
+            if (e == null && winner.complete(result)) {
+                primaryWins.increment();
+            } else if (e != null && pendingRequests.decrementAndGet() == 0) {
+                winner.completeExceptionally(e);
+            }
+        });
+        replica.whenComplete((result, e) -> {
+            if (e == null && winner.complete(result)) {
+                replicaWins.increment();
+            } else if (e != null && pendingRequests.decrementAndGet() == 0) {
+                // The primary answer is the authoritative one
+                winner.completeExceptionally(primary.handle((ignored, primaryException) -> primaryException).join());
+            }
+        });
+        return winner;
+    }
+
+
+    /**
+     * Cancel a read, or abort its stream if it already answered and is not the one returned to the caller
+     */
+    private void discard(CompletableFuture<ResponseInputStream<GetObjectResponse>> response, ResponseInputStream<GetObjectResponse> returned) {
+        response.cancel(true);
+        response.thenAccept(stream -> {
+            if (stream != returned) {
+                stream.abort();
+            }
+        });
+    }
+
+
+    private ResponseInputStream<GetObjectResponse> await(CompletableFuture<ResponseInputStream<GetObjectResponse>> response, GetObjectRequest request) {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            discard(response, null);
+            Thread.currentThread().interrupt();
+            throw AbortedException.create("Interrupted while reading image " + request.key(), e);
+        }
+    }
+
+
+    private RuntimeException unwrap(Throwable cause) {
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException runtimeException && !(cause instanceof CancellationException)) {
+            return runtimeException;
+        }
+        return new CompletionException(cause);
+    }
+
+
+    private synchronized void refillBudget() {
+        hedgeBudget = Math.min(budgetBurst, hedgeBudget + maxHedgeRate);
+    }
+
+
+    private synchronized boolean tryConsumeBudget() {
+        if (hedgeBudget < 1) {
+            return false;
+        }
+        hedgeBudget--;
+        return true;
+    }
+
+}
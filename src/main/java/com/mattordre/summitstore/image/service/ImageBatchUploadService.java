@@ -0,0 +1,150 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.exception.InvalidArgumentException;
+import com.mattordre.summitstore.image.dto.ImageUploadResultDTO;
+import com.mattordre.summitstore.image.dto.ImageUploadStatus;
+import com.mattordre.summitstore.image.dto.StoredImage;
+import com.mattordre.summitstore.image.dto.UploadImageDTO;
+import com.mattordre.summitstore.image.exception.StorageAccessException;
+import com.mattordre.summitstore.image.model.ImageType;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+@RequiredArgsConstructor
+@Service
+public class ImageBatchUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageBatchUploadService.class);
+
+    private final ImageService imageService;
+
+    private final ImageProcessingService imageProcessingService;
+
+    private final ExecutorService storageTaskExecutor;
+
+
+    @Value("${image.upload.batch.max-files:50}")
+    private int maxFiles;
+
+    @Value("${image.upload.batch.max-concurrency:8}")
+    private int maxConcurrency;
+
+
+    /**
+     * Upload several images to object storage in parallel, up to the configured concurrency, and request their
+     * processing with a single batch of messages.
+     * A failing file does not fail the batch, its error is reported in its own result
+     * @param files Image files
+     * @param imageType Type of the images
+     * @return Upload result of each file, in the order of the given files
+     * @throws InvalidArgumentException If the batch contains too many files
+     */
+    public List<ImageUploadResultDTO> uploadImages(List<MultipartFile> files, ImageType imageType) throws InvalidArgumentException {
+        if (files.size() > maxFiles) {
+            throw new InvalidArgumentException("A batch cannot contain more than " + maxFiles + " images");
+        }
+
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<Future<StoredImage>> uploads = new ArrayList<>();
+        for (MultipartFile file : files) {
+            uploads.add(storageTaskExecutor.submit(() -> {
+                validateImage(file);
+                permits.acquire();
+                try {
+                    return imageService.storeImage(file, imageType);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        List<ImageUploadResultDTO> results = new ArrayList<>();
+        List<String> uploadedFileNames = new ArrayList<>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                StoredImage storedImage = awaitUpload(files.get(i), uploads.get(i), results);
+                // Duplicates have already been processed
+                if (storedImage != null && !storedImage.duplicate()) {
+                    uploadedFileNames.add(storedImage.fileName());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            uploads.forEach(upload -> upload.cancel(true));
+            throw new StorageAccessException("Interrupted while uploading images to object storage", e);
+        }
+
+        if (!uploadedFileNames.isEmpty() && !requestProcessing(uploadedFileNames, imageType)) {
+            // The images are stored, only their processing is missing
+            results = results.stream()
+                    .map(result -> !uploadedFileNames.contains(result.getFileName()) ? result : ImageUploadResultDTO.builder()
+                            .originalFileName(result.getOriginalFileName())
+                            .fileName(result.getFileName())
+                            .status(ImageUploadStatus.PROCESSING_NOT_REQUESTED)
+                            .error("The image processing could not be requested")
+                            .build())
+                    .toList();
+        }
+        return results;
+    }
+
+
+    /**
+     * Wait for the upload of a file and add its result
+     * @return Stored image file, or null if the upload failed
+     */
+    private StoredImage awaitUpload(MultipartFile file, Future<StoredImage> upload, List<ImageUploadResultDTO> results) throws InterruptedException {
+        try {
+            StoredImage storedImage = upload.get();
+            results.add(ImageUploadResultDTO.builder()
+                    .originalFileName(file.getOriginalFilename())
+                    .fileName(storedImage.fileName())
+                    .status(ImageUploadStatus.UPLOADED)
+                    .build());
+            return storedImage;
+        } catch (ExecutionException e) {
+            // Do not leak storage errors to clients
+            String error = e.getCause() instanceof InvalidArgumentException ? e.getCause().getMessage() : "The image could not be uploaded";
+            results.add(ImageUploadResultDTO.builder()
+                    .originalFileName(file.getOriginalFilename())
+                    .status(ImageUploadStatus.FAILED)
+                    .error(error)
+                    .build());
+            return null;
+        }
+    }
+
+
+    private boolean requestProcessing(List<String> fileNames, ImageType imageType) {
+        try {
+            imageProcessingService.processImagesBackground(fileNames, imageType);
+            return true;
+        } catch (DataAccessException e) {
+            log.error("Error requesting the processing of {} uploaded images", fileNames.size(), e);
+            return false;
+        }
+    }
+
+
+    private void validateImage(MultipartFile file) throws InvalidArgumentException {
+        if (file.isEmpty()) {
+            throw new InvalidArgumentException("Image file is required");
+        }
+        if (!UploadImageDTO.isAllowedContentType(file.getContentType())) {
+            throw new InvalidArgumentException("Image file must be a valid image type (PNG, JPEG, or JPG)");
+        }
+    }
+
+}
@@ -0,0 +1,453 @@
+package com.mattordre.summitstore.image.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.event.ImageDeletedEvent;
+import com.mattordre.summitstore.image.exception.StorageAccessException;
+import com.mattordre.summitstore.image.model.ImageKey;
+import com.mattordre.summitstore.image.model.ImageType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Read-through local cache of image contents, in front of the object storage.
+ * The first tier keeps images off-heap in memory segments, streamed into them from object storage without being
+ * buffered on the heap. Each segment is freed as soon as it is evicted and no longer written, instead of waiting for
+ * the garbage collector. Images evicted from it are demoted to a second tier of local files served with
+ * {@link FileChannel#transferTo}. Both tiers are bounded in bytes per {@link ImageType} and use the W-TinyLFU eviction policy
+ */
+@Component
+public class ImageContentCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageContentCache.class);
+
+    private final boolean enabled;
+
+    private final long maxObjectSize;
+
+    private final Path diskDirectory;
+
+    private final Map<ImageType, Cache<String, MemoryEntry>> memoryTiers = new EnumMap<>(ImageType.class);
+
+    private final Map<ImageType, Cache<String, DiskEntry>> diskTiers = new EnumMap<>(ImageType.class);
+
+    private final SingleFlight<ImageKey, MemoryEntry> loads = new SingleFlight<>();
+
+
+    public ImageContentCache(MeterRegistry meterRegistry,
+                             @Value("${image.cache.enabled:true}") boolean enabled,
+                             @Value("${image.cache.max-object-size:2MB}") DataSize maxObjectSize,
+                             @Value("${image.cache.memory.max-size.product:64MB}") DataSize productMemoryQuota,
+                             @Value("${image.cache.memory.max-size.brand:64MB}") DataSize brandMemoryQuota,
+                             @Value("${image.cache.disk.enabled:true}") boolean diskEnabled,
+                             @Value("${image.cache.disk.directory:${java.io.tmpdir}/summit-store/image-cache}") String diskDirectoryPath,
+                             @Value("${image.cache.disk.max-size.product:512MB}") DataSize productDiskQuota,
+                             @Value("${image.cache.disk.max-size.brand:512MB}") DataSize brandDiskQuota) throws IOException {
+        this.enabled = enabled;
+        this.maxObjectSize = maxObjectSize.toBytes();
+        this.diskDirectory = diskEnabled ? createDiskDirectory(Path.of(diskDirectoryPath)) : null;
+        Map<ImageType, DataSize> memoryQuotas = Map.of(ImageType.PRODUCT, productMemoryQuota, ImageType.BRAND, brandMemoryQuota);
+        Map<ImageType, DataSize> diskQuotas = Map.of(ImageType.PRODUCT, productDiskQuota, ImageType.BRAND, brandDiskQuota);
+
+        for (ImageType imageType : ImageType.values()) {
+            String type = imageType.getType();
+            Cache<String, MemoryEntry> memoryTier = Caffeine.newBuilder()
+                    .maximumWeight(memoryQuotas.get(imageType).toBytes())
+                    .weigher((String fileName, MemoryEntry entry) -> (int) entry.content().byteSize())
+                    .removalListener((String fileName, MemoryEntry entry, RemovalCause cause) -> {
+                        if (entry == null) {
+                            return;
+                        }
+                        if (cause.wasEvicted() && fileName != null) {
+                            demote(imageType, fileName, entry);
+                        }
+                        // Drop the reference of the tier, the segment is freed once no image is being written from it
+                        entry.release();
+                    })
+                    .recordStats()
+                    .build();
+            memoryTiers.put(imageType, memoryTier);
+            monitor(meterRegistry, memoryTier, "memory", type);
+
+            if (diskDirectory != null) {
+                Cache<String, DiskEntry> diskTier = Caffeine.newBuilder()
+                        .maximumWeight(diskQuotas.get(imageType).toBytes())
+                        .weigher((String fileName, DiskEntry entry) -> (int) Math.min(entry.contentLength(), Integer.MAX_VALUE))
+                        .removalListener((String fileName, DiskEntry entry, RemovalCause cause) -> {
+                            if (entry != null) {
+                                deleteFile(entry.path());
+                            }
+                        })
+                        .recordStats()
+                        .build();
+                diskTiers.put(imageType, diskTier);
+                monitor(meterRegistry, diskTier, "disk", type);
+            }
+        }
+    }
+
+
+    /**
+     * Check if an image can be stored in the cache
+     * @param metadata Metadata of the image
+     * @return True if the cache is enabled and the image is small enough, false otherwise
+     */
+    public boolean isCacheable(ImageMetadata metadata) {
+        return enabled && metadata.getContentLength() <= maxObjectSize;
+    }
+
+
+    /**
+     * Get an image from the cache tiers
+     * The returned image must be closed once written
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     * @return Optional containing the cached image, or empty if it is not cached
+     */
+    public Optional<CachedImage> getIfPresent(ImageType imageType, String fileName) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        MemoryEntry memoryEntry = memoryTiers.get(imageType).getIfPresent(fileName);
+        // The entry may have been evicted and freed in the meantime
+        if (memoryEntry != null && memoryEntry.retain()) {
+            return Optional.of(new MemoryCachedImage(memoryEntry));
+        }
+
+        Cache<String, DiskEntry> diskTier = diskTiers.get(imageType);
+        DiskEntry diskEntry = diskTier != null ? diskTier.getIfPresent(fileName) : null;
+        if (diskEntry != null) {
+            try {
+                return Optional.of(new DiskCachedImage(diskEntry, FileChannel.open(diskEntry.path(), StandardOpenOption.READ)));
+            } catch (IOException e) {
+                // The file has been evicted in the meantime
+                diskTier.invalidate(fileName);
+            }
+        }
+        return Optional.empty();
+    }
+
+
+    /**
+     * Get an image from the cache tiers, loading it from object storage into the memory tier on a miss
+     * Concurrent misses on the same image share a single load
+     * The returned image must be closed once written
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     * @param loader Opener of the image content stream from object storage
+     * @return Cached image
+     * @throws StorageAccessException If there is an error reading the image content
+     */
+    public CachedImage getOrLoad(ImageType imageType, String fileName, Supplier<ResponseInputStream<GetObjectResponse>> loader) throws StorageAccessException {
+        Optional<CachedImage> cachedImage = getIfPresent(imageType, fileName);
+        if (cachedImage.isPresent()) {
+            return cachedImage.get();
+        }
+        if (!enabled) {
+            return new MemoryCachedImage(load(fileName, loader));
+        }
+
+        MemoryEntry memoryEntry = loads.execute(new ImageKey(imageType, fileName), () -> {
+            MemoryEntry loaded = load(fileName, loader);
+            memoryTiers.get(imageType).put(fileName, loaded);
+            return loaded;
+        });
+        if (memoryEntry.retain()) {
+            return new MemoryCachedImage(memoryEntry);
+        }
+        // Evicted and freed before this caller could write it, which only happens under heavy churn
+        return new MemoryCachedImage(load(fileName, loader));
+    }
+
+
+    /**
+     * Stream an image content into a new off-heap segment
+     * @return Entry holding a single reference
+     */
+    private MemoryEntry load(String fileName, Supplier<ResponseInputStream<GetObjectResponse>> loader) throws StorageAccessException {
+        try (ResponseInputStream<GetObjectResponse> imageStream = loader.get()) {
+            GetObjectResponse response = imageStream.response();
+            Arena arena = Arena.ofShared();
+            try {
+                MemorySegment content = arena.allocate(response.contentLength());
+                ByteBuffer target = content.asByteBuffer();
+                ReadableByteChannel source = Channels.newChannel(imageStream);
+                while (target.hasRemaining()) {
+                    if (source.read(target) < 0) {
+                        throw new EOFException("Image content shorter than its length");
+                    }
+                }
+                return new MemoryEntry(arena, content, response.contentType());
+            } catch (IOException | RuntimeException e) {
+                arena.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            log.error("Error reading image {} from object storage", fileName, e);
+            throw new StorageAccessException("Error reading image from object storage", e);
+        }
+    }
+
+
+    /**
+     * Remove an image from all the cache tiers
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     */
+    public void invalidate(ImageType imageType, String fileName) {
+        memoryTiers.get(imageType).invalidate(fileName);
+        Cache<String, DiskEntry> diskTier = diskTiers.get(imageType);
+        if (diskTier != null) {
+            diskTier.invalidate(fileName);
+        }
+    }
+
+
+    @EventListener
+    public void onImageDeleted(ImageDeletedEvent event) {
+        invalidate(event.imageType(), event.fileName());
+    }
+
+
+    /**
+     * Create the directory of this instance in the configured one, which may be shared with other instances or
+     * applications, so only the files of this instance are ever deleted
+     */
+    private static Path createDiskDirectory(Path baseDirectory) throws IOException {
+        Files.createDirectories(baseDirectory);
+        return Files.createTempDirectory(baseDirectory, "instance-");
+    }
+
+
+    @PreDestroy
+    public void close() throws IOException {
+        memoryTiers.values().forEach(Cache::invalidateAll);
+        diskTiers.values().forEach(Cache::invalidateAll);
+        if (diskDirectory != null) {
+            FileSystemUtils.deleteRecursively(diskDirectory);
+        }
+    }
+
+
+    /**
+     * Write an image evicted from the memory tier to the disk tier
+     */
+    private void demote(ImageType imageType, String fileName, MemoryEntry memoryEntry) {
+        Cache<String, DiskEntry> diskTier = diskTiers.get(imageType);
+        if (diskTier == null || diskTier.getIfPresent(fileName) != null) {
+            return;
+        }
+        try {
+            Path file = Files.createTempFile(diskDirectory, imageType.getType() + "-", ".cache");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ByteBuffer content = memoryEntry.content().asByteBuffer();
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+            }
+            diskTier.put(fileName, new DiskEntry(file, memoryEntry.content().byteSize(), memoryEntry.contentType()));
+        } catch (IOException e) {
+            log.warn("Error writing image {} to the disk cache", fileName, e);
+        }
+    }
+
+
+    private void deleteFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Error deleting cached image file {}", path, e);
+        }
+    }
+
+
+    private void monitor(MeterRegistry meterRegistry, Cache<String, ?> cache, String tier, String type) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "image.content." + tier, "type", type);
+        Gauge.builder("image.content.cache.weighted.size", cache, c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Bytes stored in the image content cache tier")
+                .baseUnit("bytes")
+                .tags("tier", tier, "type", type)
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Image content served from one of the cache tiers
+     */
+    public interface CachedImage extends Closeable {
+
+        String getContentType();
+
+        long getContentLength();
+
+        /**
+         * Write a part of the image content
+         * @param output Output stream to write to
+         * @param position Position of the first byte to write
+         * @param length Number of bytes to write
+         * @throws IOException If an error occurs while writing
+         */
+        void writeTo(OutputStream output, long position, long length) throws IOException;
+
+    }
+
+
+    /**
+     * Image content held off-heap, referenced by the memory tier and by each image being written from it
+     */
+    private static final class MemoryEntry {
+
+        private final Arena arena;
+
+        private final MemorySegment content;
+
+        private final String contentType;
+
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private MemoryEntry(Arena arena, MemorySegment content, String contentType) {
+            this.arena = arena;
+            this.content = content;
+            this.contentType = contentType;
+        }
+
+        MemorySegment content() {
+            return content;
+        }
+
+        String contentType() {
+            return contentType;
+        }
+
+        /**
+         * Take a reference on the content
+         * @return False if the content is already freed
+         */
+        boolean retain() {
+            int current;
+            do {
+                current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                arena.close();
+            }
+        }
+
+    }
+
+
+    private record DiskEntry(Path path, long contentLength, String contentType) {}
+
+
+    private static final class MemoryCachedImage implements CachedImage {
+
+        private final MemoryEntry entry;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private MemoryCachedImage(MemoryEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public String getContentType() {
+            return entry.contentType();
+        }
+
+        @Override
+        public long getContentLength() {
+            return entry.content().byteSize();
+        }
+
+        @Override
+        public void writeTo(OutputStream output, long position, long length) throws IOException {
+            ByteBuffer content = entry.content().asSlice(position, length).asByteBuffer();
+            WritableByteChannel channel = Channels.newChannel(output);
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            output.flush();
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                entry.release();
+            }
+        }
+
+    }
+
+
+    private record DiskCachedImage(DiskEntry entry, FileChannel channel) implements CachedImage {
+
+        @Override
+        public String getContentType() {
+            return entry.contentType();
+        }
+
+        @Override
+        public long getContentLength() {
+            return entry.contentLength();
+        }
+
+        @Override
+        public void writeTo(OutputStream output, long position, long length) throws IOException {
+            WritableByteChannel target = Channels.newChannel(output);
+            long transferred = 0;
+            while (transferred < length) {
+                transferred += channel.transferTo(position + transferred, length - transferred, target);
+            }
+            output.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+}
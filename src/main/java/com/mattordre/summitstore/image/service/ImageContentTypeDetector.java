@@ -0,0 +1,53 @@
+package com.mattordre.summitstore.image.service;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Detect the content type of an image from its signature, the content type declared by clients cannot be trusted
+ */
+public final class ImageContentTypeDetector {
+
+    /**
+     * Number of leading bytes needed to detect the content type
+     */
+    public static final int SIGNATURE_LENGTH = 8;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+
+
+    private ImageContentTypeDetector() {
+    }
+
+
+    /**
+     * Detect the content type of an image from its first bytes
+     * @param content Buffer starting with the image content
+     * @param length Number of bytes of the image content in the buffer
+     * @return PNG or JPEG content type, or null if the content is neither
+     */
+    public static String detect(byte[] content, int length) {
+        if (startsWith(content, length, PNG_SIGNATURE)) {
+            return MediaType.IMAGE_PNG_VALUE;
+        }
+        if (startsWith(content, length, JPEG_SIGNATURE)) {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+        return null;
+    }
+
+
+    private static boolean startsWith(byte[] content, int length, byte[] signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (content[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.image.model.ImageDigest;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.repository.ImageDigestRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Content-addressed index of the uploaded image files, so uploading the same content again reuses the stored file.
+ * An image file can only be referenced by a single brand or product variant, so the stored content is reused by
+ * copying it to the new file name within the object storage, an indexed file name is never handed out
+ */
+@RequiredArgsConstructor
+@Component
+public class ImageDigestIndex {
+
+    private final ImageDigestRepository imageDigestRepository;
+
+
+    @Value("${image.deduplication.enabled:false}")
+    private boolean enabled;
+
+
+    /**
+     * @return True if uploads must be deduplicated, false otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Find the stored image file with the given content to reuse it, the reuse is recorded so the orphan cleanup
+     * does not collect the file while its content is being copied
+     * @param imageType Type of the image
+     * @param digest Hex-encoded SHA-256 digest of the image content
+     * @return Optional containing the file name of the stored image, or empty if the content is not indexed
+     */
+    @Transactional
+    public Optional<String> reuse(ImageType imageType, String digest) {
+        Optional<ImageDigest> imageDigest = imageDigestRepository.findById(new ImageDigest.ImageDigestId(imageType.getBucketName(), digest));
+        imageDigest.ifPresent(stored -> stored.setLastUsedAt(Instant.now()));
+        return imageDigest.map(ImageDigest::getFileName);
+    }
+
+
+    /**
+     * Register the digest of a newly uploaded image file, replacing the indexed file if the content is already indexed
+     * as it could not be reused
+     * @param imageType Type of the image
+     * @param digest Hex-encoded SHA-256 digest of the image content
+     * @param fileName Newly uploaded image file name
+     */
+    @Transactional
+    public void register(ImageType imageType, String digest, String fileName) {
+        imageDigestRepository.upsert(imageType.getBucketName(), digest, fileName, Instant.now());
+    }
+
+}
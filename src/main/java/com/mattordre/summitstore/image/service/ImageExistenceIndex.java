@@ -0,0 +1,206 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.config.rabbitMQ.ImageUploadedMessage;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQConfig;
+import com.mattordre.summitstore.image.event.ImageUploadedEvent;
+import com.mattordre.summitstore.image.model.ImageType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory Bloom filter of the image files stored in each bucket, so requests of images that were never uploaded are
+ * answered without reaching the object storage.
+ * The filters are built from the bucket listings and updated on every upload. Uploads made by this instance are
+ * broadcast to the other ones, an upload whose broadcast is lost is only seen by them after the next rebuild.
+ * Deleted images stay in the filters until the next rebuild, their requests simply reach the object storage
+ */
+@Component
+public class ImageExistenceIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageExistenceIndex.class);
+
+    private final S3ClientRegistry s3ClientRegistry;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final boolean enabled;
+
+    private final double falsePositiveProbability;
+
+    private final long minExpectedImages;
+
+    private final Map<ImageType, BloomFilter> filters = new ConcurrentHashMap<>();
+
+    // Images uploaded while a filter is rebuilt, added to the new filter before it replaces the current one
+    private final Map<ImageType, Set<String>> rebuildUploads = new EnumMap<>(ImageType.class);
+
+    private final Map<ImageType, Timer> rebuildTimers = new EnumMap<>(ImageType.class);
+
+    private final Map<ImageType, Counter> absentCounters = new EnumMap<>(ImageType.class);
+
+    private final Map<ImageType, Counter> falsePositiveCounters = new EnumMap<>(ImageType.class);
+
+
+    public ImageExistenceIndex(S3ClientRegistry s3ClientRegistry,
+                               RabbitTemplate rabbitTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${image.existence-index.enabled:false}") boolean enabled,
+                               @Value("${image.existence-index.false-positive-probability:0.01}") double falsePositiveProbability,
+                               @Value("${image.existence-index.min-expected-images:10000}") long minExpectedImages) {
+        this.s3ClientRegistry = s3ClientRegistry;
+        this.rabbitTemplate = rabbitTemplate;
+        this.enabled = enabled;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.minExpectedImages = minExpectedImages;
+        for (ImageType imageType : ImageType.values()) {
+            String type = imageType.name().toLowerCase();
+            rebuildTimers.put(imageType, Timer.builder("image.existence.rebuild").tag("type", type).register(meterRegistry));
+            absentCounters.put(imageType, Counter.builder("image.existence.absent").tag("type", type).register(meterRegistry));
+            falsePositiveCounters.put(imageType, Counter.builder("image.existence.false.positives").tag("type", type).register(meterRegistry));
+            Gauge.builder("image.existence.expected.false.positive.probability", filters,
+                            currentFilters -> currentFilters.containsKey(imageType) ? currentFilters.get(imageType).expectedFalsePositiveProbability() : Double.NaN)
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+    }
+
+
+    /**
+     * Check if an image may be stored, images are assumed to exist as long as their filter is not built
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     * @return False if the image is definitely not stored, true otherwise
+     */
+    public boolean mightExist(ImageType imageType, String fileName) {
+        BloomFilter filter = filters.get(imageType);
+        if (filter == null || filter.mightContain(fileName)) {
+            return true;
+        }
+        absentCounters.get(imageType).increment();
+        return false;
+    }
+
+
+    /**
+     * Record an image reported as possibly stored but not found in object storage
+     * @param imageType Type of the image
+     */
+    public void recordFalsePositive(ImageType imageType) {
+        if (filters.containsKey(imageType)) {
+            falsePositiveCounters.get(imageType).increment();
+        }
+    }
+
+
+    @EventListener
+    public void onImageUploaded(ImageUploadedEvent event) {
+        add(event.imageType(), event.fileName());
+        if (!enabled) {
+            return;
+        }
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.IMAGE_UPLOADED_EXCHANGE, "", new ImageUploadedMessage(event.fileName(), event.imageType()));
+        } catch (AmqpException e) {
+            // The other instances see the image after their next rebuild
+            log.warn("Error broadcasting the upload of image {}", event.fileName(), e);
+        }
+    }
+
+
+    /**
+     * Add an image uploaded by any instance, including this one
+     */
+    @RabbitListener(queues = "#{imageUploadedQueue.name}")
+    public void onImageUploadedBroadcast(ImageUploadedMessage message) {
+        if (message.getImageType() == null || message.getFileName() == null) {
+            log.warn("Ignoring invalid image upload: {}", message);
+            return;
+        }
+        add(message.getImageType(), message.getFileName());
+    }
+
+
+    private synchronized void add(ImageType imageType, String fileName) {
+        BloomFilter filter = filters.get(imageType);
+        if (filter != null) {
+            filter.put(fileName);
+        }
+        Set<String> uploads = rebuildUploads.get(imageType);
+        if (uploads != null) {
+            uploads.add(fileName);
+        }
+    }
+
+
+    /**
+     * Rebuild the filters from the bucket listings, sized for the listed images to double before the next rebuild
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${image.existence-index.rebuild-interval:1h}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        for (ImageType imageType : ImageType.values()) {
+            try {
+                rebuildTimers.get(imageType).record(() -> rebuild(imageType));
+            } catch (AwsServiceException | SdkClientException e) {
+                // The current filter is kept, it only misses the images whose upload broadcast was lost
+                log.error("Error rebuilding the existence index of {} images", imageType, e);
+                synchronized (this) {
+                    rebuildUploads.remove(imageType);
+                }
+            }
+        }
+    }
+
+
+    private void rebuild(ImageType imageType) {
+        synchronized (this) {
+            rebuildUploads.put(imageType, new HashSet<>());
+        }
+
+        List<String> fileNames = new ArrayList<>();
+        s3ClientRegistry.getClient().listObjectsV2Paginator(
+                ListObjectsV2Request.builder()
+                        .bucket(imageType.getBucketName())
+                        .build()
+        ).contents().stream()
+                .map(S3Object::key)
+                // Renditions are only requested through their original image
+                .filter(key -> !key.startsWith(ImageRenditionService.RENDITION_PREFIX))
+                .forEach(fileNames::add);
+
+        BloomFilter filter = new BloomFilter(Math.max(minExpectedImages, 2L * fileNames.size()), falsePositiveProbability);
+        fileNames.forEach(filter::put);
+        synchronized (this) {
+            rebuildUploads.remove(imageType).forEach(filter::put);
+            filters.put(imageType, filter);
+        }
+        log.info("Existence index of {} images rebuilt with {} images", imageType, fileNames.size());
+    }
+
+}
@@ -0,0 +1,237 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.image.event.ImageDeletedEvent;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.repository.ImageDigestRepository;
+import com.mattordre.summitstore.image.repository.ImageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled job deleting the image files that were uploaded but never referenced by a brand or a product.
+ * Each bucket listing page is checked against the image table with a single query, only files older than the grace
+ * period and not reused for deduplication within it are considered so images being created are never collected, and
+ * orphans are deleted in batches at a bounded rate. Renditions are deleted along with their original image.
+ * In dry-run mode, orphans are only logged and counted
+ */
+@Component
+public class ImageGarbageCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageGarbageCollector.class);
+
+    // S3 rejects DeleteObjects requests of more than 1000 keys
+    private static final int MAX_DELETE_BATCH_SIZE = 1000;
+
+    private final S3ClientRegistry s3ClientRegistry;
+
+    private final ImageRepository imageRepository;
+
+    private final ImageDigestRepository imageDigestRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final boolean dryRun;
+
+    private final Duration gracePeriod;
+
+    private final int pageSize;
+
+    private final int deleteBatchSize;
+
+    private final double maxDeletesPerSecond;
+
+    private long nextDeleteNanos;
+
+
+    public ImageGarbageCollector(S3ClientRegistry s3ClientRegistry,
+                                 ImageRepository imageRepository,
+                                 ImageDigestRepository imageDigestRepository,
+                                 ApplicationEventPublisher eventPublisher,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${image.gc.enabled:false}") boolean enabled,
+                                 @Value("${image.gc.dry-run:true}") boolean dryRun,
+                                 @Value("${image.gc.grace-period:24h}") Duration gracePeriod,
+                                 @Value("${image.gc.page-size:1000}") int pageSize,
+                                 @Value("${image.gc.delete-batch-size:1000}") int deleteBatchSize,
+                                 @Value("${image.gc.max-deletes-per-second:100}") double maxDeletesPerSecond) {
+        this.s3ClientRegistry = s3ClientRegistry;
+        this.imageRepository = imageRepository;
+        this.imageDigestRepository = imageDigestRepository;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.dryRun = dryRun;
+        this.gracePeriod = gracePeriod;
+        this.pageSize = pageSize;
+        this.deleteBatchSize = Math.min(deleteBatchSize, MAX_DELETE_BATCH_SIZE);
+        this.maxDeletesPerSecond = maxDeletesPerSecond;
+    }
+
+
+    /**
+     * Collect the orphaned image files of every bucket, a failing bucket does not prevent the others from being collected
+     */
+    @Scheduled(initialDelayString = "${image.gc.initial-delay:1h}", fixedDelayString = "${image.gc.interval:24h}")
+    public synchronized void collect() {
+        if (!enabled) {
+            return;
+        }
+        for (ImageType imageType : ImageType.values()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                meterRegistry.timer("image.gc.run", "type", tag(imageType)).record(() -> collect(imageType));
+            } catch (AwsServiceException | SdkClientException | DataAccessException e) {
+                log.error("Error collecting orphaned {} images", imageType, e);
+            }
+        }
+    }
+
+
+    private void collect(ImageType imageType) {
+        long start = System.nanoTime();
+        Instant cutoff = Instant.now().minus(gracePeriod);
+        long scanned = 0;
+        long orphans = 0;
+        List<String> batch = new ArrayList<>();
+
+        S3Client s3Client = s3ClientRegistry.getClient();
+        Iterable<ListObjectsV2Response> pages = s3Client.listObjectsV2Paginator(
+                ListObjectsV2Request.builder()
+                        .bucket(imageType.getBucketName())
+                        .maxKeys(pageSize)
+                        .build()
+        );
+        for (ListObjectsV2Response page : pages) {
+            scanned += page.contents().size();
+            meterRegistry.counter("image.gc.scanned", "type", tag(imageType)).increment(page.contents().size());
+
+            List<String> candidates = page.contents().stream()
+                    // Renditions are deleted with their original image
+                    .filter(object -> !object.key().startsWith(ImageRenditionService.RENDITION_PREFIX))
+                    .filter(object -> object.lastModified().isBefore(cutoff))
+                    .map(S3Object::key)
+                    .toList();
+            if (candidates.isEmpty()) {
+                continue;
+            }
+
+            Set<String> kept = new HashSet<>(imageRepository.findReferencedFileNames(imageType.getBucketName(), candidates));
+            // The content of recently reused files may still be being copied
+            kept.addAll(imageDigestRepository.findFileNamesUsedSince(imageType.getBucketName(), candidates, cutoff));
+            for (String key : candidates) {
+                if (kept.contains(key)) {
+                    continue;
+                }
+                orphans++;
+                batch.add(key);
+                if (batch.size() >= deleteBatchSize) {
+                    deleteOrphans(imageType, batch);
+                    batch.clear();
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                log.warn("Collection of orphaned {} images interrupted", imageType);
+                return;
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleteOrphans(imageType, batch);
+        }
+
+        double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+        log.info("Collection of orphaned {} images done: {} objects scanned ({} per second), {} orphans {}",
+                imageType, scanned, Math.round(scanned / seconds), orphans, dryRun ? "found (dry run)" : "deleted");
+    }
+
+
+    private void deleteOrphans(ImageType imageType, List<String> keys) {
+        meterRegistry.counter("image.gc.orphans", "type", tag(imageType), "dry-run", String.valueOf(dryRun)).increment(keys.size());
+        if (dryRun) {
+            log.info("Dry run, {} orphaned {} images would be deleted: {}", keys.size(), imageType, keys);
+            return;
+        }
+        if (!throttle(keys.size())) {
+            return;
+        }
+
+        // Drop the digests first, so the content of a deleted file is never handed out for reuse
+        imageDigestRepository.deleteByFileNames(imageType.getBucketName(), keys);
+        DeleteObjectsResponse response = s3ClientRegistry.getClient().deleteObjects(
+                DeleteObjectsRequest.builder()
+                        .bucket(imageType.getBucketName())
+                        .delete(Delete.builder()
+                                .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                                .quiet(false)
+                                .build())
+                        .build()
+        );
+
+        for (DeletedObject deleted : response.deleted()) {
+            eventPublisher.publishEvent(new ImageDeletedEvent(imageType, deleted.key()));
+        }
+        for (S3Error error : response.errors()) {
+            log.warn("Error deleting orphaned image {}: {}", error.key(), error.message());
+        }
+        meterRegistry.counter("image.gc.deleted", "type", tag(imageType)).increment(response.deleted().size());
+        meterRegistry.counter("image.gc.failed", "type", tag(imageType)).increment(response.errors().size());
+    }
+
+
+    /**
+     * Wait until the given number of deletions fits in the configured rate
+     * @return False if interrupted while waiting
+     */
+    private boolean throttle(int deletions) {
+        long now = System.nanoTime();
+        long wait = nextDeleteNanos - now;
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        nextDeleteNanos = Math.max(now, nextDeleteNanos) + (long) (deletions * 1e9 / maxDeletesPerSecond);
+        return true;
+    }
+
+
+    private String tag(ImageType imageType) {
+        return imageType.name().toLowerCase();
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.image.dto.ImageDimensions;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Read the dimensions of an image from its header, without decoding the pixels.
+ * Only the bytes up to the header are consumed from the stream, which is left open
+ */
+public final class ImageHeaderReader {
+
+    private ImageHeaderReader() {
+    }
+
+
+    /**
+     * Read the dimensions of an image from the beginning of its content
+     * @param content Stream positioned at the beginning of the image content
+     * @return Dimensions of the image, or null if the format is not supported or the header cannot be read
+     */
+    public static ImageDimensions readDimensions(InputStream content) {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new ImageDimensions(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+}
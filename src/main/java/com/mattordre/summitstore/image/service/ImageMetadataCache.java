@@ -0,0 +1,68 @@
+package com.mattordre.summitstore.image.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.event.ImageDeletedEvent;
+import com.mattordre.summitstore.image.model.ImageKey;
+import com.mattordre.summitstore.image.model.ImageType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived, size-bounded cache of image metadata retrieved from object storage.
+ * Only existing images are cached, so a file uploaded right after a failed lookup is visible immediately
+ */
+@Component
+public class ImageMetadataCache {
+
+    private final Cache<ImageKey, ImageMetadata> cache;
+
+
+    public ImageMetadataCache(@Value("${image.metadata.cache.ttl:30s}") Duration ttl,
+                              @Value("${image.metadata.cache.max-size:10000}") long maxSize,
+                              MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "image.metadata");
+    }
+
+
+    /**
+     * Get the metadata of an image, loading it on a cache miss.
+     * Concurrent lookups of the same image share a single load
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     * @param loader Loader of the metadata from object storage
+     * @return Metadata of the image
+     */
+    public ImageMetadata get(ImageType imageType, String fileName, Supplier<ImageMetadata> loader) {
+        return cache.get(new ImageKey(imageType, fileName), key -> loader.get());
+    }
+
+
+    /**
+     * Evict the metadata of an image, to be called when the image is deleted or replaced
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     */
+    public void invalidate(ImageType imageType, String fileName) {
+        cache.invalidate(new ImageKey(imageType, fileName));
+    }
+
+
+    @EventListener
+    public void onImageDeleted(ImageDeletedEvent event) {
+        invalidate(event.imageType(), event.fileName());
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.exception.InvalidArgumentException;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.dto.PresignUploadDTO;
+import com.mattordre.summitstore.image.dto.PresignedUrlDTO;
+import com.mattordre.summitstore.image.event.ImageUploadedEvent;
+import com.mattordre.summitstore.image.exception.ImageNotFoundException;
+import com.mattordre.summitstore.image.exception.ImageTooLargeException;
+import com.mattordre.summitstore.image.exception.StorageAccessException;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.model.PendingUpload;
+import com.mattordre.summitstore.image.repository.ImageRepository;
+import com.mattordre.summitstore.image.repository.PendingUploadRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.awscore.presigner.PresignedRequest;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Issue short-lived presigned URLs, so clients upload and download image bytes directly with the object storage
+ * instead of going through the API.
+ * Presigned uploads target a pending file name, recorded with the expiry of its URL, and are copied to their final
+ * file name once committed. The final file is never writable by the client, so it cannot be overwritten after it
+ * has been verified
+ */
+@RequiredArgsConstructor
+@Service
+public class ImagePresignService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImagePresignService.class);
+
+    // Presigned uploads are written under this prefix until they are committed
+    public static final String PENDING_UPLOAD_PREFIX = "pending/";
+
+    private final S3ClientRegistry s3ClientRegistry;
+
+    private final ImageService imageService;
+
+    private final ImageProcessingService imageProcessingService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final PendingUploadRepository pendingUploadRepository;
+
+    private final ImageRepository imageRepository;
+
+
+    @Value("${image.presign.upload-ttl:5m}")
+    private Duration uploadTtl;
+
+    @Value("${image.presign.download-ttl:10m}")
+    private Duration downloadTtl;
+
+    @Value("${image.upload.max-size:10MB}")
+    private DataSize maxSize;
+
+
+    /**
+     * Issue a presigned PUT URL to upload an image, the client must then commit the upload before the URL expires
+     * The content type is part of the signature, so the client must send the same Content-Type header
+     * @param presignUploadDTO Image to upload
+     * @return Presigned upload URL, along with the generated image fileName
+     */
+    public PresignedUrlDTO presignUpload(PresignUploadDTO presignUploadDTO) {
+        // Generate a unique file name
+        String fileName = UUID.randomUUID() + "-" + presignUploadDTO.getFileName();
+        Instant now = Instant.now();
+        pendingUploadRepository.save(PendingUpload.builder()
+                .bucketName(presignUploadDTO.getType().getBucketName())
+                .fileName(fileName)
+                .expiresAt(now.plus(uploadTtl))
+                .createdAt(now)
+                .build());
+
+        PresignedRequest presignedRequest = s3ClientRegistry.getPresigner().presignPutObject(
+                PutObjectPresignRequest.builder()
+                        .signatureDuration(uploadTtl)
+                        .putObjectRequest(
+                                PutObjectRequest.builder()
+                                        .bucket(presignUploadDTO.getType().getBucketName())
+                                        .key(pendingFileName(fileName))
+                                        .contentType(presignUploadDTO.getContentType())
+                                        .build()
+                        )
+                        .build()
+        );
+        return toPresignedUrlDTO(fileName, presignedRequest);
+    }
+
+
+    /**
+     * Issue a presigned GET URL to download an image
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     * @return Presigned download URL
+     * @throws ImageNotFoundException If the image is not found
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public PresignedUrlDTO presignDownload(ImageType imageType, String fileName) throws ImageNotFoundException, StorageAccessException {
+        // Do not sign URLs of missing images
+        imageService.getImageMetadata(imageType, fileName);
+
+        PresignedRequest presignedRequest = s3ClientRegistry.getPresigner().presignGetObject(
+                GetObjectPresignRequest.builder()
+                        .signatureDuration(downloadTtl)
+                        .getObjectRequest(
+                                GetObjectRequest.builder()
+                                        .bucket(imageType.getBucketName())
+                                        .key(fileName)
+                                        .build()
+                        )
+                        .build()
+        );
+        return toPresignedUrlDTO(fileName, presignedRequest);
+    }
+
+
+    /**
+     * Commit an image uploaded with a presigned URL and request its background processing
+     * Only a pending upload can be committed, once. Its object is copied to the final file name and verified there,
+     * as the presigned URL cannot enforce the size and type limits, and the copy is deleted if invalid
+     * @param imageType Type of the image
+     * @param fileName Image file name returned with the presigned URL
+     * @return Image fileName
+     * @throws InvalidArgumentException If the upload is not pending, has expired or has already been committed, or
+     * if the image is not a PNG or JPEG image
+     * @throws ImageTooLargeException If the image exceeds the maximum upload size
+     * @throws ImageNotFoundException If the image has not been uploaded
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public String commitImage(ImageType imageType, String fileName)
+            throws InvalidArgumentException, ImageTooLargeException, ImageNotFoundException, StorageAccessException {
+        String bucketName = imageType.getBucketName();
+        if (imageRepository.existsById(fileName) || pendingUploadRepository.markCommitted(bucketName, fileName, Instant.now()) == 0) {
+            throw new InvalidArgumentException("Image upload is not pending, has expired or has already been committed");
+        }
+        try {
+            imageService.copyImage(imageType, pendingFileName(fileName), fileName);
+        } catch (ImageNotFoundException | StorageAccessException e) {
+            // The upload can be committed again once the object is uploaded
+            pendingUploadRepository.markPending(bucketName, fileName);
+            throw e;
+        }
+        deletePendingObject(imageType, fileName);
+
+        ImageMetadata metadata = imageService.getImageMetadata(imageType, fileName);
+        if (metadata.getContentLength() > maxSize.toBytes()) {
+            deleteUnreferencedImage(imageType, fileName);
+            throw new ImageTooLargeException("Image must not exceed " + maxSize.toMegabytes() + "MB");
+        }
+        if (metadata.getContentLength() == 0 || readContentType(imageType, fileName, metadata.getContentLength()) == null) {
+            deleteUnreferencedImage(imageType, fileName);
+            throw new InvalidArgumentException("Image file must be a valid image type (PNG, JPEG, or JPG)");
+        }
+
+        eventPublisher.publishEvent(new ImageUploadedEvent(imageType, fileName));
+        imageProcessingService.processImageBackground(fileName, imageType);
+        log.info("Image {} committed successfully", fileName);
+        return fileName;
+    }
+
+
+    /**
+     * Forget the uploads whose presigned URL has expired, their objects are left to the orphan cleanup
+     */
+    @Scheduled(initialDelayString = "${image.presign.purge-interval:1h}", fixedDelayString = "${image.presign.purge-interval:1h}")
+    public void purgeExpiredUploads() {
+        try {
+            int purged = pendingUploadRepository.deleteExpiredBefore(Instant.now());
+            log.debug("{} expired presigned uploads purged", purged);
+        } catch (DataAccessException e) {
+            log.warn("Error purging expired presigned uploads", e);
+        }
+    }
+
+
+    private String pendingFileName(String fileName) {
+        return PENDING_UPLOAD_PREFIX + fileName;
+    }
+
+
+    private void deletePendingObject(ImageType imageType, String fileName) {
+        try {
+            imageService.deleteImage(imageType, pendingFileName(fileName));
+        } catch (StorageAccessException e) {
+            // The pending object is left to the orphan cleanup
+            log.warn("Error deleting the pending upload of image {}", fileName, e);
+        }
+    }
+
+
+    /**
+     * Delete an invalid image, unless it has been referenced meanwhile
+     */
+    private void deleteUnreferencedImage(ImageType imageType, String fileName) {
+        if (imageRepository.existsById(fileName)) {
+            log.warn("Invalid image {} is already referenced and is kept", fileName);
+            return;
+        }
+        imageService.deleteImage(imageType, fileName);
+    }
+
+
+    /**
+     * Detect the content type of an image from its first bytes, fetched with a ranged request
+     */
+    private String readContentType(ImageType imageType, String fileName, long contentLength) {
+        long end = Math.min(ImageContentTypeDetector.SIGNATURE_LENGTH, contentLength) - 1;
+        try (ResponseInputStream<GetObjectResponse> imageStream = imageService.getImageStreamByName(imageType, fileName, 0, end)) {
+            byte[] signature = imageStream.readNBytes(ImageContentTypeDetector.SIGNATURE_LENGTH);
+            return ImageContentTypeDetector.detect(signature, signature.length);
+        } catch (IOException e) {
+            throw new StorageAccessException("Error downloading image from object storage", e);
+        }
+    }
+
+
+    private PresignedUrlDTO toPresignedUrlDTO(String fileName, PresignedRequest presignedRequest) {
+        // The Host header is set by the client from the URL
+        Map<String, List<String>> headers = presignedRequest.signedHeaders().entrySet().stream()
+                .filter(header -> !header.getKey().equalsIgnoreCase(HttpHeaders.HOST))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        return PresignedUrlDTO.builder()
+                .fileName(fileName)
+                .method(presignedRequest.httpRequest().method().name())
+                .url(presignedRequest.url().toString())
+                .headers(headers)
+                .expiresAt(presignedRequest.expiration())
+                .build();
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.rabbitMQ.BatchingRabbitMQPublisher;
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingMessage;
+import com.mattordre.summitstore.image.model.OutboxMessage;
+import com.mattordre.summitstore.image.repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Relay publishing the image processing messages written to the outbox.
+ * Each batch is locked with SKIP LOCKED, published and deleted in a single transaction, so instances drain distinct
+ * batches in parallel and a batch failing to publish stays in the outbox for the next run. Messages are delivered at
+ * least once, a batch published before its transaction fails to commit is published again. A batch timing out gives
+ * up on its messages, so the sender does not keep retrying messages that the next run publishes again
+ */
+@Component
+public class ImageProcessingOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageProcessingOutboxRelay.class);
+
+    private final OutboxMessageRepository outboxMessageRepository;
+
+    private final BatchingRabbitMQPublisher batchingRabbitMQPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    private final Duration publishTimeout;
+
+    private final Counter relayedMessages;
+
+    private final Timer relayLag;
+
+
+    public ImageProcessingOutboxRelay(OutboxMessageRepository outboxMessageRepository,
+                                      BatchingRabbitMQPublisher batchingRabbitMQPublisher,
+                                      TransactionTemplate transactionTemplate,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${image.processing.outbox.batch-size:100}") int batchSize,
+                                      @Value("${image.processing.outbox.publish-timeout:10s}") Duration publishTimeout) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.batchingRabbitMQPublisher = batchingRabbitMQPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.publishTimeout = publishTimeout;
+        this.relayedMessages = Counter.builder("image.processing.outbox.relayed").register(meterRegistry);
+        this.relayLag = Timer.builder("image.processing.outbox.lag").register(meterRegistry);
+    }
+
+
+    /**
+     * Publish the messages of the outbox, batch after batch until it is drained
+     */
+    @Scheduled(fixedDelayString = "${image.processing.outbox.relay-interval:200ms}")
+    public void relay() {
+        try {
+            Integer relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed != null && relayed == batchSize && !Thread.currentThread().isInterrupted());
+        } catch (AmqpException | DataAccessException | TransactionException e) {
+            // Messages stay in the outbox until the next run
+            log.error("Error relaying image processing messages", e);
+        }
+    }
+
+
+    private int relayBatch() {
+        List<OutboxMessage> messages = outboxMessageRepository.lockOldest(batchSize);
+        if (messages.isEmpty()) {
+            return 0;
+        }
+
+        CompletableFuture<?>[] published = messages.stream()
+                .map(message -> batchingRabbitMQPublisher.publish(message.getQueueName(), toMessage(message)))
+                .toArray(CompletableFuture[]::new);
+        await(published);
+        outboxMessageRepository.deleteByIds(messages.stream().map(OutboxMessage::getId).toList());
+
+        relayedMessages.increment(messages.size());
+        Instant now = Instant.now();
+        messages.forEach(message -> relayLag.record(Duration.between(message.getCreatedAt(), now)));
+        return messages.size();
+    }
+
+
+    private void await(CompletableFuture<?>[] published) {
+        try {
+            CompletableFuture.allOf(published).get(publishTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AmqpException amqpException) {
+                throw amqpException;
+            }
+            throw new AmqpException("Error publishing image processing messages", e.getCause());
+        } catch (TimeoutException e) {
+            cancel(published);
+            throw new AmqpException("Timed out publishing image processing messages", e);
+        } catch (InterruptedException e) {
+            cancel(published);
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted while publishing image processing messages", e);
+        }
+    }
+
+
+    private void cancel(CompletableFuture<?>[] published) {
+        for (CompletableFuture<?> message : published) {
+            message.cancel(false);
+        }
+    }
+
+
+    private ImageProcessingMessage toMessage(OutboxMessage message) {
+        return ImageProcessingMessage.builder()
+                .fileName(message.getFileName())
+                .bucketName(message.getBucketName())
+                .requestedAt(message.getCreatedAt())
+                .build();
+    }
+
+}
@@ -1,23 +1,74 @@
 package com.mattordre.summitstore.image.service;
 
-import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingMessage;
-import com.mattordre.summitstore.config.rabbitMQ.RabbitMQSender;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQConfig;
 import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.model.OutboxMessage;
+import com.mattordre.summitstore.image.repository.OutboxMessageRepository;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Requests of image background processing, written to the outbox within the current transaction if any, and
+ * published to the message broker by {@link ImageProcessingOutboxRelay} once committed
+ */
 @RequiredArgsConstructor
 @Service
 public class ImageProcessingService {
 
-    private final RabbitMQSender rabbitMQSender;
+    private final OutboxMessageRepository outboxMessageRepository;
+
+    private final ExecutorService outboxTaskExecutor;
 
+
+    /**
+     * Request the background processing of an image
+     * @param fileName Image file name
+     * @param imageType Type of the image
+     */
+    @Transactional
     public void processImageBackground(String fileName, ImageType imageType) {
-        var message = ImageProcessingMessage.builder()
-                .fileName(fileName)
+        outboxMessageRepository.save(toOutboxMessage(fileName, imageType, Instant.now()));
+    }
+
+
+    /**
+     * Request the background processing of several images of the same type, all the requests are written at once
+     * @param fileNames Image file names
+     * @param imageType Type of the images
+     */
+    @Transactional
+    public void processImagesBackground(List<String> fileNames, ImageType imageType) {
+        Instant now = Instant.now();
+        outboxMessageRepository.saveAll(fileNames.stream()
+                .map(fileName -> toOutboxMessage(fileName, imageType, now))
+                .toList());
+    }
+
+
+    /**
+     * Request the background processing of an image without blocking the calling thread
+     * @param fileName Image file name
+     * @param imageType Type of the image
+     * @return Future completed once the processing request is written
+     */
+    public CompletableFuture<Void> processImageBackgroundAsync(String fileName, ImageType imageType) {
+        return CompletableFuture.runAsync(() -> processImageBackground(fileName, imageType), outboxTaskExecutor);
+    }
+
+
+    private OutboxMessage toOutboxMessage(String fileName, ImageType imageType, Instant createdAt) {
+        return OutboxMessage.builder()
+                .queueName(RabbitMQConfig.PROCESSING_QUEUE)
                 .bucketName(imageType.getBucketName())
+                .fileName(fileName)
+                .createdAt(createdAt)
                 .build();
-        rabbitMQSender.send("image.processing.background", message);
     }
 
 }
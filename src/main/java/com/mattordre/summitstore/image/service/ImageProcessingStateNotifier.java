@@ -0,0 +1,106 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingCompletedMessage;
+import com.mattordre.summitstore.image.model.ImageProcessingState;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Server-Sent Events pushing the processing state of an image to the clients waiting for it on this instance.
+ * A client receives the current state on subscription, then the terminal state as soon as it is broadcast, after
+ * which its stream is completed
+ */
+@Component
+public class ImageProcessingStateNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageProcessingStateNotifier.class);
+
+    private static final String STATE_EVENT = "state";
+
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final Duration timeout;
+
+
+    public ImageProcessingStateNotifier(MeterRegistry meterRegistry,
+                                        @Value("${image.processing.state.sse-timeout:60s}") Duration timeout) {
+        this.timeout = timeout;
+        Gauge.builder("image.processing.state.subscribers", subscriberCount, AtomicInteger::get).register(meterRegistry);
+    }
+
+
+    /**
+     * Subscribe to the processing state of an image
+     * @param fileName Image file name
+     * @param currentState Supplier of the recorded processing state, read once the subscription is registered so no
+     * state change is missed
+     * @return Event stream of the processing state
+     */
+    public SseEmitter subscribe(String fileName, Supplier<Optional<ImageProcessingState>> currentState) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        subscribers.computeIfAbsent(fileName, key -> ConcurrentHashMap.newKeySet()).add(emitter);
+        subscriberCount.incrementAndGet();
+        Runnable unsubscribe = () -> unsubscribe(fileName, emitter);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+
+        Optional<ImageProcessingState> state = currentState.get();
+        if (state.isPresent()) {
+            send(emitter, fileName, state.get());
+        }
+        return emitter;
+    }
+
+
+    @RabbitListener(queues = "#{imageProcessingStateQueue.name}")
+    public void onStateChanged(ImageProcessingCompletedMessage message) {
+        Set<SseEmitter> emitters = subscribers.get(message.getFileName());
+        if (emitters != null) {
+            emitters.forEach(emitter -> send(emitter, message.getFileName(), message.getState()));
+        }
+    }
+
+
+    private void send(SseEmitter emitter, String fileName, ImageProcessingState state) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(STATE_EVENT)
+                    .data(Map.of("fileName", fileName, "state", state)));
+            if (state.isTerminal()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client is gone or the stream already completed
+            log.debug("Error sending the processing state of image {}", fileName, e);
+            unsubscribe(fileName, emitter);
+        }
+    }
+
+
+    private void unsubscribe(String fileName, SseEmitter emitter) {
+        Set<SseEmitter> emitters = subscribers.get(fileName);
+        if (emitters != null && emitters.remove(emitter)) {
+            subscriberCount.decrementAndGet();
+            subscribers.computeIfPresent(fileName, (key, remaining) -> remaining.isEmpty() ? null : remaining);
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingCompletedMessage;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQConfig;
+import com.mattordre.summitstore.image.model.ImageProcessingCompletion;
+import com.mattordre.summitstore.image.model.ImageProcessingState;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.repository.ImageProcessingCompletionRepository;
+import com.mattordre.summitstore.image.repository.ImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tracking of the image processing states reported by the processing service.
+ * Completions are consumed in batches and recorded with one update per bucket and state, then broadcast to every
+ * instance once recorded to notify the waiting clients. An image is often referenced only after its upload, so
+ * completions of images not referenced yet are stored and applied when the image is referenced. A scheduled pass
+ * applies the completions stored while their image was being referenced, and drops the ones never referenced
+ */
+@Service
+public class ImageProcessingStateService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageProcessingStateService.class);
+
+    private final ImageRepository imageRepository;
+
+    private final ImageProcessingCompletionRepository completionRepository;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final Duration unmatchedRetention;
+
+    private final Counter unmatchedCompletions;
+
+    private final Map<ImageProcessingState, Timer> latencyTimers = new EnumMap<>(ImageProcessingState.class);
+
+
+    public ImageProcessingStateService(ImageRepository imageRepository,
+                                       ImageProcessingCompletionRepository completionRepository,
+                                       RabbitTemplate rabbitTemplate,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${image.processing.state.unmatched-retention:24h}") Duration unmatchedRetention) {
+        this.imageRepository = imageRepository;
+        this.completionRepository = completionRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.unmatchedRetention = unmatchedRetention;
+        this.unmatchedCompletions = Counter.builder("image.processing.state.unmatched").register(meterRegistry);
+        // Histogram of the time from the processing request to its completion
+        for (ImageProcessingState state : ImageProcessingState.values()) {
+            latencyTimers.put(state, Timer.builder("image.processing.latency")
+                    .tag("state", state.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+
+    /**
+     * Get the processing state of an image
+     * An image not referenced yet gets the state of its recorded completion, so its waiters see it completed
+     * @param fileName Image file name
+     * @return Optional containing the processing state, or empty if the image is neither referenced nor completed
+     */
+    public Optional<ImageProcessingState> getProcessingState(String fileName) {
+        return imageRepository.findProcessingStateByFileName(fileName)
+                .or(() -> completionRepository.findById(fileName).map(ImageProcessingCompletion::getState));
+    }
+
+
+    @Transactional
+    @RabbitListener(queues = RabbitMQConfig.PROCESSING_COMPLETED_QUEUE, containerFactory = "batchListenerContainerFactory")
+    public void onProcessingCompleted(List<ImageProcessingCompletedMessage> messages) {
+        Instant now = Instant.now();
+        List<StateChange> changes = new ArrayList<>(messages.size());
+        List<ImageProcessingCompletedMessage> validMessages = new ArrayList<>(messages.size());
+        for (ImageProcessingCompletedMessage message : messages) {
+            if (message.getFileName() == null || message.getBucketName() == null || message.getState() == null) {
+                log.warn("Ignoring invalid processing completion: {}", message);
+                continue;
+            }
+            if (message.getRequestedAt() != null) {
+                latencyTimers.get(message.getState()).record(Duration.between(message.getRequestedAt(), now));
+            }
+            changes.add(new StateChange(message.getBucketName(), message.getFileName(), message.getState(), now));
+            validMessages.add(message);
+        }
+        record(changes);
+        afterCommit(() -> validMessages.forEach(this::broadcast));
+    }
+
+
+    /**
+     * Apply the stored completions of image files being referenced, must be called in the transaction inserting their
+     * image rows
+     * @param fileNames Referenced image file names
+     */
+    @Transactional
+    public void applyCompletions(Collection<String> fileNames) {
+        if (fileNames.isEmpty()) {
+            return;
+        }
+        if (completionRepository.applyToImages(fileNames) > 0) {
+            completionRepository.deleteAllByIdInBatch(fileNames);
+        }
+    }
+
+
+    /**
+     * Give an image file copied from a stored one the processing state of its source, as its content is the same
+     * @param imageType Type of the image
+     * @param sourceFileName File name of the stored image
+     * @param fileName File name of the copy
+     * @return True if the source is processed, false if the copy must be processed as its source state is not known yet
+     */
+    @Transactional
+    public boolean inheritState(ImageType imageType, String sourceFileName, String fileName) {
+        Optional<StateChange> sourceState = imageRepository.findProcessingStateByFileName(sourceFileName)
+                .filter(ImageProcessingState::isTerminal)
+                .map(state -> new StateChange(imageType.getBucketName(), fileName, state, Instant.now()))
+                .or(() -> completionRepository.findById(sourceFileName)
+                        .map(completion -> new StateChange(imageType.getBucketName(), fileName, completion.getState(), completion.getCompletedAt())));
+        sourceState.ifPresent(this::store);
+        return sourceState.isPresent();
+    }
+
+
+    /**
+     * Apply the completions stored while their image was being referenced, and drop the expired ones
+     */
+    @Transactional
+    @Scheduled(fixedDelayString = "${image.processing.state.retry-interval:5s}")
+    public void applyStoredCompletions() {
+        if (completionRepository.applyAllToImages() > 0) {
+            completionRepository.deleteApplied();
+        }
+        int expired = completionRepository.deleteCompletedBefore(Instant.now().minus(unmatchedRetention));
+        if (expired > 0) {
+            log.warn("{} processing completions dropped, their image was never referenced", expired);
+        }
+    }
+
+
+    private void record(List<StateChange> changes) {
+        Map<String, List<StateChange>> changesByBucket = changes.stream()
+                .collect(Collectors.groupingBy(StateChange::bucketName));
+        changesByBucket.forEach((bucketName, bucketChanges) -> {
+            Set<String> referenced = new HashSet<>(imageRepository.findReferencedFileNames(bucketName,
+                    bucketChanges.stream().map(StateChange::fileName).toList()));
+            bucketChanges.stream()
+                    .filter(change -> !referenced.contains(change.fileName()))
+                    .forEach(change -> {
+                        store(change);
+                        unmatchedCompletions.increment();
+                    });
+            bucketChanges.stream()
+                    .filter(change -> referenced.contains(change.fileName()))
+                    .collect(Collectors.groupingBy(change -> new StateKey(change.state(), change.completedAt()),
+                            Collectors.mapping(StateChange::fileName, Collectors.toList())))
+                    .forEach((key, fileNames) -> imageRepository.updateProcessingState(fileNames, key.state(), key.completedAt()));
+        });
+    }
+
+
+    private void store(StateChange change) {
+        completionRepository.upsert(change.fileName(), change.bucketName(), change.state().name(), change.completedAt());
+    }
+
+
+    /**
+     * Run an action once the current transaction commits, or right away without transaction
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+
+    private void broadcast(ImageProcessingCompletedMessage message) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.PROCESSING_STATE_EXCHANGE, "", message);
+        } catch (AmqpException e) {
+            // Waiting clients fall back on the recorded state when reconnecting
+            log.warn("Error broadcasting the processing state of image {}", message.getFileName(), e);
+        }
+    }
+
+
+    private record StateChange(String bucketName, String fileName, ImageProcessingState state, Instant completedAt) {
+    }
+
+
+    private record StateKey(ImageProcessingState state, Instant completedAt) {
+    }
+
+}
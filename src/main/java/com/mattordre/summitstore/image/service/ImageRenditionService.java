@@ -0,0 +1,334 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.exception.InvalidArgumentException;
+import com.mattordre.summitstore.image.dto.ImageRendition;
+import com.mattordre.summitstore.image.event.ImageDeletedEvent;
+import com.mattordre.summitstore.image.exception.ImageNotFoundException;
+import com.mattordre.summitstore.image.exception.RenditionUnavailableException;
+import com.mattordre.summitstore.image.exception.StorageAccessException;
+import com.mattordre.summitstore.image.model.ImageKey;
+import com.mattordre.summitstore.image.model.ImageType;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Produce resized and re-encoded renditions of the stored images on first request, and store them next to the
+ * original images under the renditions prefix, so later requests are served from object storage like any other image.
+ * Only the configured sizes and qualities are accepted, so clients cannot fill the bucket with arbitrary renditions.
+ * Resizing is CPU-bound, it runs on a small dedicated pool whose queue is bounded, and requests beyond its capacity
+ * are rejected instead of piling up
+ */
+@Service
+public class ImageRenditionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageRenditionService.class);
+
+    public static final String RENDITION_PREFIX = "renditions/";
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of("png", "image/png", "jpeg", "image/jpeg");
+
+    private final ImageService imageService;
+
+    private final S3ClientRegistry s3ClientRegistry;
+
+    private final Set<Integer> allowedWidths;
+
+    private final Set<Integer> allowedHeights;
+
+    private final Set<Integer> allowedQualities;
+
+    private final int defaultQuality;
+
+    private final long maxSourcePixels;
+
+    private final Duration timeout;
+
+    private final ThreadPoolExecutor renditionExecutor;
+
+    private final SingleFlight<ImageKey, String> renditions = new SingleFlight<>();
+
+
+    public ImageRenditionService(ImageService imageService,
+                                 S3ClientRegistry s3ClientRegistry,
+                                 @Value("${image.rendition.widths:160,320,640,1280}") List<Integer> allowedWidths,
+                                 @Value("${image.rendition.heights:160,320,640,1280}") List<Integer> allowedHeights,
+                                 @Value("${image.rendition.qualities:60,75,90}") List<Integer> allowedQualities,
+                                 @Value("${image.rendition.default-quality:75}") int defaultQuality,
+                                 @Value("${image.rendition.max-source-pixels:40000000}") long maxSourcePixels,
+                                 @Value("${image.rendition.workers:0}") int workers,
+                                 @Value("${image.rendition.queue-size:32}") int queueSize,
+                                 @Value("${image.rendition.timeout:10s}") Duration timeout) {
+        this.imageService = imageService;
+        this.s3ClientRegistry = s3ClientRegistry;
+        this.allowedWidths = new TreeSet<>(allowedWidths);
+        this.allowedHeights = new TreeSet<>(allowedHeights);
+        this.allowedQualities = new TreeSet<>(allowedQualities);
+        this.defaultQuality = defaultQuality;
+        this.maxSourcePixels = maxSourcePixels;
+        this.timeout = timeout;
+        // Platform threads sized to the CPUs, as resizing never blocks on I/O
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.renditionExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), Thread.ofPlatform().name("image-rendition-", 0).factory());
+    }
+
+
+    /**
+     * Resolve the rendition requested by the given parameters, none of them being set means the original image
+     * @param fileName Original image file name, whose extension gives the default format
+     * @param width Requested width, or null
+     * @param height Requested height, or null
+     * @param quality Requested quality, or null for the default one
+     * @param format Requested format, or null for the format of the original image
+     * @return Requested rendition, or null if the original image is requested
+     * @throws InvalidArgumentException If a parameter is not one of the allowed values
+     */
+    public ImageRendition resolveRendition(String fileName, Integer width, Integer height, Integer quality, String format)
+            throws InvalidArgumentException {
+        if (width == null && height == null && quality == null && format == null) {
+            return null;
+        }
+        if (width != null && !allowedWidths.contains(width)) {
+            throw new InvalidArgumentException("Width must be one of " + allowedWidths);
+        }
+        if (height != null && !allowedHeights.contains(height)) {
+            throw new InvalidArgumentException("Height must be one of " + allowedHeights);
+        }
+        if (quality != null && !allowedQualities.contains(quality)) {
+            throw new InvalidArgumentException("Quality must be one of " + allowedQualities);
+        }
+        String resolvedFormat = normalizeFormat(format != null ? format : extensionOf(fileName));
+        if (resolvedFormat == null) {
+            if (format != null) {
+                throw new InvalidArgumentException("Format must be png or jpeg");
+            }
+            resolvedFormat = "png";
+        }
+        return new ImageRendition(width, height, quality != null ? quality : defaultQuality, resolvedFormat);
+    }
+
+
+    /**
+     * Get the file name of a rendition in object storage, producing and storing it first if it does not exist yet.
+     * Concurrent requests of the same missing rendition produce it only once
+     * @param imageType Type of the image
+     * @param fileName Original image file name
+     * @param rendition Requested rendition
+     * @return File name of the rendition, in the bucket of the image type
+     * @throws ImageNotFoundException If the original image is not found
+     * @throws InvalidArgumentException If the original image cannot be decoded or is too large to be resized
+     * @throws RenditionUnavailableException If the rendition workers are saturated or the rendition takes too long
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public String getRenditionFileName(ImageType imageType, String fileName, ImageRendition rendition)
+            throws ImageNotFoundException, InvalidArgumentException, RenditionUnavailableException, StorageAccessException {
+        String renditionFileName = renditionFileName(fileName, rendition);
+        return renditions.execute(new ImageKey(imageType, renditionFileName), () -> {
+            if (!imageService.isImageFileUploaded(renditionFileName, imageType)) {
+                byte[] original = imageService.getImageFileByName(imageType, fileName).asByteArray();
+                byte[] content = render(original, rendition);
+                imageService.putImageContent(imageType, renditionFileName, content, CONTENT_TYPES.get(rendition.format()));
+                log.info("Rendition {} of image {} created", renditionFileName, fileName);
+            }
+            return renditionFileName;
+        });
+    }
+
+
+    /**
+     * Delete the renditions of a deleted image, failures are only logged as they must not fail the deletion
+     */
+    @EventListener
+    public void onImageDeleted(ImageDeletedEvent event) {
+        if (event.fileName().startsWith(RENDITION_PREFIX)) {
+            return;
+        }
+        try {
+            s3ClientRegistry.getClient().listObjectsV2Paginator(
+                    ListObjectsV2Request.builder()
+                            .bucket(event.imageType().getBucketName())
+                            .prefix(RENDITION_PREFIX + event.fileName() + "/")
+                            .build()
+            ).contents().stream()
+                    .map(S3Object::key)
+                    .forEach(key -> imageService.deleteImage(event.imageType(), key));
+        } catch (AwsServiceException | SdkClientException | StorageAccessException e) {
+            log.warn("Error deleting the renditions of image {}", event.fileName(), e);
+        }
+    }
+
+
+    @PreDestroy
+    public void close() {
+        renditionExecutor.shutdownNow();
+    }
+
+
+    /**
+     * Resize and encode an image on the rendition workers
+     */
+    private byte[] render(byte[] original, ImageRendition rendition) {
+        Future<byte[]> task;
+        try {
+            task = renditionExecutor.submit(() -> resize(original, rendition));
+        } catch (RejectedExecutionException e) {
+            throw new RenditionUnavailableException("Too many renditions in progress", e);
+        }
+        try {
+            return task.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new InvalidArgumentException("Image cannot be resized", e.getCause());
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            throw new RenditionUnavailableException("Rendition took too long", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(true);
+            throw new RenditionUnavailableException("Interrupted while creating rendition", e);
+        }
+    }
+
+
+    private byte[] resize(byte[] original, ImageRendition rendition) throws IOException {
+        BufferedImage source = decode(original);
+
+        // Fit the image in the requested box, keeping its aspect ratio and never upscaling it
+        double scale = 1;
+        if (rendition.width() != null) {
+            scale = Math.min(scale, (double) rendition.width() / source.getWidth());
+        }
+        if (rendition.height() != null) {
+            scale = Math.min(scale, (double) rendition.height() / source.getHeight());
+        }
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        // JPEG has no alpha channel
+        boolean jpeg = rendition.format().equals("jpeg");
+        BufferedImage target = new BufferedImage(width, height, jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, jpeg ? Color.WHITE : null, null);
+        } finally {
+            graphics.dispose();
+        }
+        return encode(target, rendition);
+    }
+
+
+    /**
+     * Decode an image, its dimensions are read from the header first so oversized images are never decoded
+     */
+    private BufferedImage decode(byte[] content) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new InvalidArgumentException("Image cannot be resized");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxSourcePixels) {
+                    throw new InvalidArgumentException("Image is too large to be resized");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+
+    private byte[] encode(BufferedImage image, ImageRendition rendition) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(rendition.format()).next();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(content)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && rendition.format().equals("jpeg")) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(rendition.quality() / 100f);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return content.toByteArray();
+    }
+
+
+    /**
+     * Renditions are stored under the original file name, so they can be listed and deleted with it.
+     * The quality is left out of lossless renditions, as it does not change them
+     */
+    private String renditionFileName(String fileName, ImageRendition rendition) {
+        return RENDITION_PREFIX + fileName + "/"
+                + "w" + (rendition.width() != null ? rendition.width() : "auto")
+                + "-h" + (rendition.height() != null ? rendition.height() : "auto")
+                + (rendition.format().equals("jpeg") ? "-q" + rendition.quality() : "")
+                + "." + rendition.format();
+    }
+
+
+    private String normalizeFormat(String format) {
+        if (format == null) {
+            return null;
+        }
+        String normalized = format.toLowerCase(Locale.ROOT);
+        if (normalized.equals("jpg")) {
+            normalized = "jpeg";
+        }
+        return CONTENT_TYPES.containsKey(normalized) ? normalized : null;
+    }
+
+
+    private String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot + 1) : null;
+    }
+
+}
@@ -1,28 +1,63 @@
 package com.mattordre.summitstore.image.service;
 
-import com.mattordre.summitstore.config.S3ClientFactory;
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.config.StorageGuard;
+import com.mattordre.summitstore.config.StorageOperation;
+import com.mattordre.summitstore.image.dto.ImageDimensions;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.dto.StoredImage;
+import com.mattordre.summitstore.image.event.ImageDeletedEvent;
+import com.mattordre.summitstore.image.event.ImageUploadedEvent;
 import com.mattordre.summitstore.image.exception.ImageNotFoundException;
 import com.mattordre.summitstore.image.exception.StorageAccessException;
+import com.mattordre.summitstore.image.exception.StorageUnavailableException;
+import com.mattordre.summitstore.image.model.ImageKey;
 import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.repository.ImageRepository;
+import com.mattordre.summitstore.image.repository.ImageRepository.StoredImageMetadata;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
 
 @RequiredArgsConstructor
 @Service
@@ -30,45 +65,219 @@ public class ImageService {
 
     private static final Logger log = LoggerFactory.getLogger(ImageService.class);
 
-    private final S3ClientFactory s3ClientFactory;
+    private static final Pattern GENERATED_FILE_NAME_PATTERN = Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}-.+$");
 
+    private final S3ClientRegistry s3ClientRegistry;
 
-    @Value("${image.store.url}")
-    private String endpoint;
+    private final ImageMetadataCache imageMetadataCache;
 
-    @Value("${image.store.access.key}")
-    private String accessKey;
+    private final ExecutorService storageTaskExecutor;
 
-    @Value("${image.store.secret.key}")
-    private String secretKey;
+    private final ApplicationEventPublisher eventPublisher;
 
-    @Value("${image.store.region}")
-    private String region;
+    private final ImageDigestIndex imageDigestIndex;
+
+    private final ImageRepository imageRepository;
+
+    private final ImageProcessingStateService imageProcessingStateService;
+
+    private final StorageGuard storageGuard;
+
+    private final HedgedImageReader hedgedImageReader;
+
+    private final SingleFlight<ImageKey, ResponseBytes<GetObjectResponse>> imageFetches = new SingleFlight<>();
+
+
+    @Value("${image.upload.async.storage-timeout:20s}")
+    private Duration asyncUploadStorageTimeout;
 
 
     /**
      * Retrieve an image file by name directly from object storage and download the file
+     * Concurrent downloads of the same image are coalesced into a single object storage request, whose result
+     * or exception is shared by all the callers. The request is hedged with the replica endpoint when one is configured
+     * The whole file is buffered in memory, so callers only coalesce images up to image.coalesce.max-object-size and
+     * stream the larger ones with getImageStreamByName, whose requests are never coalesced
      * @param fileName Image file name
      * @return Image file as response bytes object
      * @throws ImageNotFoundException If the image is not found
      * @throws StorageAccessException If there is an error accessing the object storage
      */
     public ResponseBytes<GetObjectResponse> getImageFileByName(ImageType imageType, String fileName) throws ImageNotFoundException, StorageAccessException {
+        return imageFetches.execute(new ImageKey(imageType, fileName), () -> downloadImage(imageType, fileName));
+    }
+
 
-        // Create S3 client
-        try(S3Client s3Client = s3ClientFactory.createS3Client(endpoint, accessKey, secretKey, region)) {
+    private ResponseBytes<GetObjectResponse> downloadImage(ImageType imageType, String fileName) throws ImageNotFoundException, StorageAccessException {
+        // Retrieve the shared S3 client
+        S3Client s3Client = s3ClientRegistry.getClient();
+        try {
             // Download file from object storage
-            return s3Client.getObject(
-                    GetObjectRequest.builder()
+            GetObjectRequest request = GetObjectRequest.builder()
+                    .bucket(imageType.getBucketName())
+                    .key(fileName)
+                    .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.DOWNLOAD))
+                    .build();
+            return storageGuard.execute(StorageOperation.DOWNLOAD, () -> hedgedImageReader.isEnabled()
+                    ? readFully(hedgedImageReader.openStream(request))
+                    : s3Client.getObject(request, ResponseTransformer.toBytes()));
+        } catch (NoSuchKeyException e) {
+            throw new ImageNotFoundException("Image not found", e);
+        } catch (AwsServiceException | SdkClientException e) {
+            log.error("Error downloading image {} from object storage", fileName, e);
+            throw new StorageAccessException("Error downloading image from object storage", e);
+        }
+    }
+
+
+    private ResponseBytes<GetObjectResponse> readFully(ResponseInputStream<GetObjectResponse> stream) {
+        try (stream) {
+            return ResponseBytes.fromByteArrayUnsafe(stream.response(), stream.readAllBytes());
+        } catch (IOException e) {
+            stream.abort();
+            throw SdkClientException.create("Error reading image content", e);
+        }
+    }
+
+
+    /**
+     * Open a stream on an image file directly from object storage, without buffering the file in memory
+     * Full reads are hedged with the replica endpoint when one is configured, up to the response headers
+     * The caller must close the stream once consumed, or abort it to release the connection if it is not fully read
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     * @return Image file content stream, along with the object metadata
+     * @throws ImageNotFoundException If the image is not found
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public ResponseInputStream<GetObjectResponse> getImageStreamByName(ImageType imageType, String fileName) throws ImageNotFoundException, StorageAccessException {
+        return openImageStream(
+                GetObjectRequest.builder()
+                        .bucket(imageType.getBucketName())
+                        .key(fileName)
+                        .build()
+        );
+    }
+
+
+    /**
+     * Open a stream on a byte range of an image file directly from object storage
+     * The caller must close the stream once consumed, or abort it to release the connection if it is not fully read
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     * @param start Position of the first byte of the range
+     * @param end Position of the last byte of the range, inclusive
+     * @return Image file range content stream, along with the object metadata
+     * @throws ImageNotFoundException If the image is not found
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public ResponseInputStream<GetObjectResponse> getImageStreamByName(ImageType imageType, String fileName, long start, long end) throws ImageNotFoundException, StorageAccessException {
+        return openImageStream(
+                GetObjectRequest.builder()
+                        .bucket(imageType.getBucketName())
+                        .key(fileName)
+                        .range("bytes=" + start + "-" + end)
+                        .build()
+        );
+    }
+
+
+    /**
+     * Retrieve the metadata of an image file, without downloading its content
+     * Images referenced in the database are described by the metadata captured on upload, the other ones are looked
+     * up in object storage. Metadata is cached for a short time, so repeated lookups of the same image are local
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     * @return Metadata of the image file
+     * @throws ImageNotFoundException If the image is not found
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public ImageMetadata getImageMetadata(ImageType imageType, String fileName) throws ImageNotFoundException, StorageAccessException {
+        return imageMetadataCache.get(imageType, fileName, () -> loadImageMetadata(imageType, fileName));
+    }
+
+
+    private ImageMetadata loadImageMetadata(ImageType imageType, String fileName) throws ImageNotFoundException, StorageAccessException {
+        try {
+            // Without a checksum, there is no stable ETag to serve conditional requests from
+            Optional<StoredImageMetadata> storedMetadata = imageRepository.findMetadataByFileName(fileName)
+                    .filter(metadata -> metadata.getBucketName().equals(imageType.getBucketName()))
+                    .filter(metadata -> metadata.getContentLength() != null && metadata.getChecksum() != null);
+            if (storedMetadata.isPresent()) {
+                return toImageMetadata(storedMetadata.get());
+            }
+        } catch (DataAccessException e) {
+            // The object storage can still answer
+            log.warn("Error retrieving image {} metadata from the database", fileName, e);
+        }
+        return headImage(imageType, fileName);
+    }
+
+
+    private ImageMetadata toImageMetadata(StoredImageMetadata storedMetadata) {
+        return ImageMetadata.builder()
+                .contentLength(storedMetadata.getContentLength())
+                .contentType(storedMetadata.getContentType())
+                .eTag(checksumETag(storedMetadata.getChecksum()))
+                .lastModified(storedMetadata.getUploadedAt())
+                .width(storedMetadata.getWidth())
+                .height(storedMetadata.getHeight())
+                .checksum(storedMetadata.getChecksum())
+                .uploadedAt(storedMetadata.getUploadedAt())
+                .build();
+    }
+
+
+    /**
+     * Strong ETag of an image derived from the checksum of its content, so it does not depend on how it was uploaded
+     */
+    private static String checksumETag(String checksum) {
+        return "\"" + checksum + "\"";
+    }
+
+
+    private ImageMetadata headImage(ImageType imageType, String fileName) throws ImageNotFoundException, StorageAccessException {
+        // Retrieve the shared S3 client
+        S3Client s3Client = s3ClientRegistry.getClient();
+        try {
+            HeadObjectResponse object = storageGuard.execute(StorageOperation.HEAD, () -> s3Client.headObject(
+                    HeadObjectRequest.builder()
                             .bucket(imageType.getBucketName())
                             .key(fileName)
-                            .build(),
-                    ResponseTransformer.toBytes()
-            );
+                            .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.HEAD))
+                            .build()
+            ));
+            ImageMetadata.ImageMetadataBuilder metadata = ImageUserMetadata.fromUserMetadata(ImageMetadata.builder(), object.metadata())
+                    .contentLength(object.contentLength())
+                    .contentType(object.contentType())
+                    .lastModified(object.lastModified());
+            // Images uploaded with a checksum get the ETag they will have once described by the database
+            String checksum = ImageUserMetadata.checksum(object.metadata());
+            return metadata.eTag(checksum != null ? checksumETag(checksum) : object.eTag()).build();
         } catch (NoSuchKeyException e) {
             throw new ImageNotFoundException("Image not found", e);
         } catch (AwsServiceException | SdkClientException e) {
-            log.error("Error downloading image {} from object storage", fileName, e);
+            log.error("Error retrieving image {} metadata from object storage", fileName, e);
+            throw new StorageAccessException("Error retrieving image metadata from object storage", e);
+        }
+    }
+
+
+    private ResponseInputStream<GetObjectResponse> openImageStream(GetObjectRequest request) throws ImageNotFoundException, StorageAccessException {
+        // Retrieve the shared S3 client
+        S3Client s3Client = s3ClientRegistry.getClient();
+        try {
+            // Open the file stream from object storage, ranged reads are few and always go to the primary
+            GetObjectRequest guardedRequest = request.toBuilder()
+                    .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.GET))
+                    .build();
+            return storageGuard.openStream(StorageOperation.GET, () -> hedgedImageReader.isEnabled() && request.range() == null
+                    ? hedgedImageReader.openStream(guardedRequest)
+                    : s3Client.getObject(guardedRequest));
+        } catch (NoSuchKeyException e) {
+            throw new ImageNotFoundException("Image not found", e);
+        } catch (AwsServiceException | SdkClientException e) {
+            log.error("Error downloading image {} from object storage", request.key(), e);
             throw new StorageAccessException("Error downloading image from object storage", e);
         }
     }
@@ -82,55 +291,338 @@ public class ImageService {
      * @throws StorageAccessException If there is an error accessing the object storage
      */
     public String uploadImage(MultipartFile file, ImageType imageType) throws StorageAccessException {
+        return storeImage(file, imageType).fileName();
+    }
+
+
+    /**
+     * Upload an image file to object storage, deduplicated by content when enabled
+     * The size, dimensions and checksum of the image are stored with the object, to be persisted once the image is
+     * referenced. If deduplication is enabled and the same content is already stored, it is copied to the new file name
+     * within the object storage instead of being uploaded. The copy gets the processing state of its source, and is
+     * flagged as duplicate so its processing can be skipped, unless the source state is not known yet
+     * @param file Image file
+     * @param imageType Type of the image
+     * @return Stored image file
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public StoredImage storeImage(MultipartFile file, ImageType imageType) throws StorageAccessException {
         // Generate a unique file name
         String fileName = UUID.randomUUID() + "-" + file.getOriginalFilename();
+        ImageMetadata metadata = inspectImage(file);
 
-        // Create S3 client
-        try(S3Client s3Client = s3ClientFactory.createS3Client(endpoint, accessKey, secretKey, region)) {
+        Optional<StoredImage> duplicate = reuseStoredImage(imageType, fileName, metadata);
+        if (duplicate.isPresent()) {
+            return duplicate.get();
+        }
+
+        // Retrieve the shared S3 client
+        S3Client s3Client = s3ClientRegistry.getClient();
+        try (InputStream content = file.getInputStream()) {
             // Upload file to S3
-            s3Client.putObject(
+            storageGuard.execute(StorageOperation.PUT, () -> s3Client.putObject(
                     PutObjectRequest.builder()
                             .bucket(imageType.getBucketName())
                             .key(fileName)
-                            .contentType(file.getContentType())
+                            .contentType(metadata.getContentType())
+                            .metadata(ImageUserMetadata.toUserMetadata(metadata))
+                            .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.PUT))
                             .build(),
-                    RequestBody.fromInputStream(file.getInputStream(), file.getSize())
-            );
+                    RequestBody.fromInputStream(content, metadata.getContentLength())
+            ));
             log.info("Image {} uploaded successfully", file.getOriginalFilename());
-
-            return fileName;
         } catch (AwsServiceException | SdkClientException | IOException e) {
             log.error("Error uploading image {} to object storage", file.getOriginalFilename(), e);
             throw new StorageAccessException("Error uploading image to object storage", e);
         }
+        eventPublisher.publishEvent(new ImageUploadedEvent(imageType, fileName));
+        return registerStoredImage(imageType, fileName, metadata);
+    }
+
+
+    /**
+     * Store an image with the same content as an already stored one by copying the stored file, if deduplication is
+     * enabled and such an image is known
+     * @return Stored image, or empty if the content must be uploaded
+     */
+    private Optional<StoredImage> reuseStoredImage(ImageType imageType, String fileName, ImageMetadata metadata) {
+        if (!imageDigestIndex.isEnabled()) {
+            return Optional.empty();
+        }
+        Optional<String> sourceFileName = imageDigestIndex.reuse(imageType, metadata.getChecksum());
+        if (sourceFileName.isEmpty() || !copyStoredImage(imageType, sourceFileName.get(), fileName, metadata)) {
+            return Optional.empty();
+        }
+        eventPublisher.publishEvent(new ImageUploadedEvent(imageType, fileName));
+        log.info("Image {} deduplicated from {}", fileName, sourceFileName.get());
+        if (imageProcessingStateService.inheritState(imageType, sourceFileName.get(), fileName)) {
+            return Optional.of(new StoredImage(fileName, sourceFileName.get()));
+        }
+        // The source is still being processed, the copy must be processed on its own
+        return Optional.of(new StoredImage(fileName, null));
+    }
+
+
+    /**
+     * Register an uploaded image content, so the next uploads of the same content can reuse it
+     */
+    private StoredImage registerStoredImage(ImageType imageType, String fileName, ImageMetadata metadata) {
+        if (imageDigestIndex.isEnabled()) {
+            imageDigestIndex.register(imageType, metadata.getChecksum(), fileName);
+        }
+        return new StoredImage(fileName, null);
     }
 
 
     /**
-     * Check if an image file is uploaded to object storage
+     * Copy the stored image with the same content to the new file name, along with the metadata of the upload
+     * @return False if the stored image cannot be copied, so the content must be uploaded
+     */
+    private boolean copyStoredImage(ImageType imageType, String sourceFileName, String fileName, ImageMetadata metadata) {
+        try {
+            copyObject(CopyObjectRequest.builder()
+                    .sourceBucket(imageType.getBucketName())
+                    .sourceKey(sourceFileName)
+                    .destinationBucket(imageType.getBucketName())
+                    .destinationKey(fileName)
+                    .metadataDirective(MetadataDirective.REPLACE)
+                    .contentType(metadata.getContentType())
+                    .metadata(ImageUserMetadata.toUserMetadata(metadata)));
+            return true;
+        } catch (ImageNotFoundException e) {
+            log.info("Stored image {} with the content of {} is gone", sourceFileName, fileName);
+            return false;
+        } catch (StorageAccessException e) {
+            log.warn("Error copying stored image {}, the content of {} is uploaded", sourceFileName, fileName, e);
+            return false;
+        }
+    }
+
+
+    /**
+     * Upload generated image content to object storage under the given file name, replacing any existing file
+     * @param imageType Type of the image
      * @param fileName Image file name
+     * @param content Image content
+     * @param contentType Image content type
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public void putImageContent(ImageType imageType, String fileName, byte[] content, String contentType) throws StorageAccessException {
+        // Retrieve the shared S3 client
+        S3Client s3Client = s3ClientRegistry.getClient();
+        try {
+            storageGuard.execute(StorageOperation.PUT, () -> s3Client.putObject(
+                    PutObjectRequest.builder()
+                            .bucket(imageType.getBucketName())
+                            .key(fileName)
+                            .contentType(contentType)
+                            .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.PUT))
+                            .build(),
+                    RequestBody.fromBytes(content)
+            ));
+        } catch (AwsServiceException | SdkClientException e) {
+            log.error("Error uploading image {} to object storage", fileName, e);
+            throw new StorageAccessException("Error uploading image to object storage", e);
+        }
+        // A previous version may have been looked up already
+        imageMetadataCache.invalidate(imageType, fileName);
+    }
+
+
+    /**
+     * Copy an image file to a new file name within the object storage, the content is not transferred through the API
      * @param imageType Type of the image
-     * @return True if the image file is uploaded, false otherwise
+     * @param sourceFileName File name of the image to copy
+     * @param fileName File name of the copy
+     * @throws ImageNotFoundException If the image to copy is not found
      * @throws StorageAccessException If there is an error accessing the object storage
      */
-    public boolean isImageFileUploaded(String fileName, ImageType imageType) throws StorageAccessException {
-        // Create S3 client
-        try(S3Client s3Client = s3ClientFactory.createS3Client(endpoint, accessKey, secretKey, region)) {
-            // Upload file to S3
-            s3Client.getObject(
-                    GetObjectRequest.builder()
+    public void copyImage(ImageType imageType, String sourceFileName, String fileName) throws ImageNotFoundException, StorageAccessException {
+        copyObject(CopyObjectRequest.builder()
+                .sourceBucket(imageType.getBucketName())
+                .sourceKey(sourceFileName)
+                .destinationBucket(imageType.getBucketName())
+                .destinationKey(fileName));
+        // A missing file may have been looked up already
+        imageMetadataCache.invalidate(imageType, fileName);
+    }
+
+
+    private void copyObject(CopyObjectRequest.Builder request) throws ImageNotFoundException, StorageAccessException {
+        // Retrieve the shared S3 client
+        S3Client s3Client = s3ClientRegistry.getClient();
+        try {
+            storageGuard.execute(StorageOperation.PUT, () -> s3Client.copyObject(
+                    request.overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.PUT)).build()
+            ));
+        } catch (NoSuchKeyException e) {
+            throw new ImageNotFoundException("Image not found", e);
+        } catch (AwsServiceException | SdkClientException e) {
+            CopyObjectRequest failedRequest = request.build();
+            log.error("Error copying image {} to {} in object storage", failedRequest.sourceKey(), failedRequest.destinationKey(), e);
+            throw new StorageAccessException("Error copying image in object storage", e);
+        }
+    }
+
+
+    /**
+     * Capture the metadata of an uploaded file from its local copy, the dimensions are read from the header only
+     * while the checksum covers the whole content
+     */
+    private ImageMetadata inspectImage(MultipartFile file) throws StorageAccessException {
+        MessageDigest digest = newDigest();
+        try (InputStream content = new DigestInputStream(file.getInputStream(), digest)) {
+            ImageDimensions dimensions = ImageHeaderReader.readDimensions(content);
+            content.transferTo(OutputStream.nullOutputStream());
+            return ImageMetadata.builder()
+                    .contentLength(file.getSize())
+                    .contentType(file.getContentType())
+                    .width(dimensions != null ? dimensions.width() : null)
+                    .height(dimensions != null ? dimensions.height() : null)
+                    .checksum(HexFormat.of().formatHex(digest.digest()))
+                    .uploadedAt(Instant.now())
+                    .build();
+        } catch (IOException e) {
+            log.error("Error reading image {}", file.getOriginalFilename(), e);
+            throw new StorageAccessException("Error uploading image to object storage", e);
+        }
+    }
+
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+
+    /**
+     * Upload an image file to object storage without blocking the calling thread
+     * The file content is inspected and read on the storage executor and sent through the non-blocking client, along
+     * with the same metadata as the other uploads. The object storage call is cancelled by the SDK if it exceeds the
+     * configured timeout. The call holds a slot of the storage guard until it completes, the future fails with a
+     * {@link StorageUnavailableException} if it is rejected. An image whose content is already stored is copied
+     * instead of uploaded, like with {@link #storeImage}
+     * @param file Image file
+     * @param imageType Type of the image
+     * @return Future of the image stored in object storage, failed with a {@link StorageAccessException}
+     * if there is an error accessing the object storage
+     */
+    public CompletableFuture<StoredImage> uploadImageAsync(MultipartFile file, ImageType imageType) {
+        // Generate a unique file name
+        String fileName = UUID.randomUUID() + "-" + file.getOriginalFilename();
+
+        // The metadata is captured like for the other uploads, reading the whole file for its checksum
+        return CompletableFuture.supplyAsync(() -> inspectImage(file), storageTaskExecutor)
+                .thenComposeAsync(metadata -> reuseStoredImage(imageType, fileName, metadata)
+                        .map(CompletableFuture::completedFuture)
+                        .orElseGet(() -> putImageAsync(file, imageType, fileName, metadata).thenApply(response -> {
+                            log.info("Image {} uploaded successfully", file.getOriginalFilename());
+                            eventPublisher.publishEvent(new ImageUploadedEvent(imageType, fileName));
+                            return registerStoredImage(imageType, fileName, metadata);
+                        })), storageTaskExecutor);
+    }
+
+
+    private CompletableFuture<PutObjectResponse> putImageAsync(MultipartFile file, ImageType imageType, String fileName, ImageMetadata metadata) {
+        InputStream content;
+        try {
+            content = file.getInputStream();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new StorageAccessException("Error uploading image to object storage", e));
+        }
+
+        // Retrieve the shared S3 async client
+        S3AsyncClient s3AsyncClient = s3ClientRegistry.getAsyncClient();
+        CompletableFuture<PutObjectResponse> upload;
+        try {
+            upload = storageGuard.executeAsync(StorageOperation.PUT, () -> s3AsyncClient.putObject(
+                    PutObjectRequest.builder()
                             .bucket(imageType.getBucketName())
                             .key(fileName)
+                            .contentType(metadata.getContentType())
+                            .metadata(ImageUserMetadata.toUserMetadata(metadata))
+                            .overrideConfiguration(config -> config.apiCallTimeout(asyncUploadStorageTimeout))
                             .build(),
-                    ResponseTransformer.toBytes()
-            );
+                    AsyncRequestBody.fromInputStream(content, metadata.getContentLength(), storageTaskExecutor)
+            ));
+        } catch (StorageUnavailableException e) {
+            closeQuietly(content);
+            return CompletableFuture.failedFuture(e);
+        }
+        return upload.handle((response, e) -> {
+            closeQuietly(content);
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Error uploading image {} to object storage", file.getOriginalFilename(), cause);
+                throw new StorageAccessException("Error uploading image to object storage", cause);
+            }
+            return response;
+        });
+    }
+
+
+    private void closeQuietly(InputStream content) {
+        try {
+            content.close();
+        } catch (IOException e) {
+            log.warn("Error closing uploaded image content", e);
+        }
+    }
+
+
+    /**
+     * Delete an image file from object storage, local copies of the image are invalidated
+     * @param imageType Type of the image
+     * @param fileName Image file name
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public void deleteImage(ImageType imageType, String fileName) throws StorageAccessException {
+        // Retrieve the shared S3 client
+        S3Client s3Client = s3ClientRegistry.getClient();
+        try {
+            storageGuard.execute(StorageOperation.DELETE, () -> s3Client.deleteObject(
+                    DeleteObjectRequest.builder()
+                            .bucket(imageType.getBucketName())
+                            .key(fileName)
+                            .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.DELETE))
+                            .build()
+            ));
+            log.info("Image {} deleted successfully", fileName);
+        } catch (AwsServiceException | SdkClientException e) {
+            log.error("Error deleting image {} from object storage", fileName, e);
+            throw new StorageAccessException("Error deleting image from object storage", e);
+        }
+        eventPublisher.publishEvent(new ImageDeletedEvent(imageType, fileName));
+    }
+
+
+    /**
+     * Check if an image file is uploaded to object storage, only its metadata is retrieved
+     * @param fileName Image file name
+     * @param imageType Type of the image
+     * @return True if the image file is uploaded, false otherwise
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public boolean isImageFileUploaded(String fileName, ImageType imageType) throws StorageAccessException {
+        try {
+            getImageMetadata(imageType, fileName);
             return true;
-        } catch (NoSuchKeyException e) {
+        } catch (ImageNotFoundException e) {
             return false;
-        } catch (AwsServiceException | SdkClientException e) {
-            log.error("Error downloading image {} to object storage", fileName, e);
-            throw new StorageAccessException("Error downloading image from object storage", e);
         }
     }
 
+
+    /**
+     * Check if a file name has been generated on upload, such files are never overwritten so their content is immutable
+     * @param fileName Image file name
+     * @return True if the file name starts with the random UUID added on upload, false otherwise
+     */
+    public boolean isImmutableFileName(String fileName) {
+        return GENERATED_FILE_NAME_PATTERN.matcher(fileName).matches();
+    }
+
 }
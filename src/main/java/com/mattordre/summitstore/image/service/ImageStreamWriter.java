@@ -0,0 +1,71 @@
+package com.mattordre.summitstore.image.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Copy object storage streams to HTTP responses through a pool of fixed-size transfer buffers,
+ * so downloads never hold the whole file in memory
+ */
+@Component
+public class ImageStreamWriter {
+
+    private final int bufferSize;
+
+    private final BlockingQueue<byte[]> buffers;
+
+
+    public ImageStreamWriter(@Value("${image.stream.buffer-size:65536}") int bufferSize,
+                             @Value("${image.stream.buffer-pool-size:64}") int bufferPoolSize) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(bufferPoolSize);
+    }
+
+
+    /**
+     * Transfer the whole content of an object storage stream to the given output stream.
+     * If the transfer fails, for instance because the client aborted the request, the storage stream is aborted
+     * so its connection is discarded instead of being drained before returning to the pool
+     * @param source Object storage stream, closed by the caller
+     * @param target Output stream to write to
+     * @return Number of bytes transferred
+     * @throws IOException If an error occurs while reading the source or writing the target
+     */
+    public long transfer(ResponseInputStream<?> source, OutputStream target) throws IOException {
+        byte[] buffer = acquireBuffer();
+        try {
+            long transferred = 0;
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                target.write(buffer, 0, read);
+                transferred += read;
+            }
+            target.flush();
+            return transferred;
+        } catch (IOException | RuntimeException e) {
+            source.abort();
+            throw e;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+
+    private byte[] acquireBuffer() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+
+    private void releaseBuffer(byte[] buffer) {
+        // Buffers exceeding the pool capacity are left to the garbage collector
+        buffers.offer(buffer);
+    }
+
+}
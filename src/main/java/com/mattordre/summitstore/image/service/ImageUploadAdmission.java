@@ -0,0 +1,137 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingRouter;
+import com.mattordre.summitstore.image.exception.ProcessingBacklogException;
+import com.mattordre.summitstore.image.repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Admission control of image uploads, based on the backlog of the image processing requests.
+ * The backlog is made of the processing requests still in the outbox and the messages waiting in the processing queues,
+ * sampled periodically along with the consumer count of the queues. Once the backlog per consumer reaches the reject
+ * threshold, uploads are rejected right away with the delay after which they can be retried. Bulk uploads are rejected
+ * first, from their own lower threshold. Each part of the backlog keeps its previous sample when it cannot be sampled
+ */
+@Component
+public class ImageUploadAdmission {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageUploadAdmission.class);
+
+    private final AmqpAdmin amqpAdmin;
+
+    private final OutboxMessageRepository outboxMessageRepository;
+
+    private final List<String> queueNames;
+
+    private final long rejectThreshold;
+
+    private final long bulkRejectThreshold;
+
+    private final Duration retryAfter;
+
+    private final Counter admittedUploads;
+
+    private final Counter rejectedUploads;
+
+    private final Counter rejectedBulkUploads;
+
+    private volatile long queueDepth;
+
+    private volatile long outboxDepth;
+
+    private volatile long consumerCount;
+
+
+    public ImageUploadAdmission(AmqpAdmin amqpAdmin,
+                                OutboxMessageRepository outboxMessageRepository,
+                                ImageProcessingRouter imageProcessingRouter,
+                                MeterRegistry meterRegistry,
+                                @Value("${image.processing.admission.reject-threshold:5000}") long rejectThreshold,
+                                @Value("${image.processing.admission.bulk-reject-threshold:2000}") long bulkRejectThreshold,
+                                @Value("${image.processing.admission.retry-after:30s}") Duration retryAfter) {
+        this.amqpAdmin = amqpAdmin;
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.queueNames = imageProcessingRouter.getQueueNames();
+        this.rejectThreshold = rejectThreshold;
+        this.bulkRejectThreshold = Math.min(bulkRejectThreshold, rejectThreshold);
+        this.retryAfter = retryAfter;
+
+        this.admittedUploads = Counter.builder("image.processing.admission.admitted").register(meterRegistry);
+        this.rejectedUploads = Counter.builder("image.processing.admission.rejected").tag("kind", "single").register(meterRegistry);
+        this.rejectedBulkUploads = Counter.builder("image.processing.admission.rejected").tag("kind", "bulk").register(meterRegistry);
+        Gauge.builder("image.processing.admission.queue.depth", this, admission -> admission.queueDepth).register(meterRegistry);
+        Gauge.builder("image.processing.admission.outbox.depth", this, admission -> admission.outboxDepth).register(meterRegistry);
+        Gauge.builder("image.processing.admission.consumers", this, admission -> admission.consumerCount).register(meterRegistry);
+        Gauge.builder("image.processing.admission.backlog", this, ImageUploadAdmission::backlog).register(meterRegistry);
+        Gauge.builder("image.processing.admission.threshold", this, admission -> admission.rejectThreshold).tag("action", "reject").register(meterRegistry);
+        Gauge.builder("image.processing.admission.threshold", this, admission -> admission.bulkRejectThreshold).tag("action", "bulk-reject").register(meterRegistry);
+    }
+
+
+    /**
+     * Sample the unpublished processing requests, then the depth and consumer count of the processing queues
+     */
+    @Scheduled(fixedDelayString = "${image.processing.admission.sample-interval:5s}")
+    public void sample() {
+        try {
+            outboxDepth = outboxMessageRepository.count();
+        } catch (DataAccessException e) {
+            log.warn("Error sampling the image processing outbox", e);
+        }
+
+        long depth = 0;
+        long consumers = 0;
+        try {
+            for (String queueName : queueNames) {
+                QueueInformation queueInformation = amqpAdmin.getQueueInfo(queueName);
+                if (queueInformation != null) {
+                    depth += queueInformation.getMessageCount();
+                    consumers += queueInformation.getConsumerCount();
+                }
+            }
+        } catch (AmqpException e) {
+            log.warn("Error sampling the image processing queues", e);
+            return;
+        }
+        queueDepth = depth;
+        consumerCount = consumers;
+    }
+
+
+    /**
+     * Admit an upload, without waiting as it is checked before the upload is received
+     * @param bulk True for an upload of several images
+     * @throws ProcessingBacklogException If the processing backlog is too large
+     */
+    public void admit(boolean bulk) throws ProcessingBacklogException {
+        long backlog = backlog();
+        if (backlog >= (bulk ? bulkRejectThreshold : rejectThreshold)) {
+            (bulk ? rejectedBulkUploads : rejectedUploads).increment();
+            throw new ProcessingBacklogException("Image processing backlog of " + backlog + " messages per consumer", retryAfter);
+        }
+        admittedUploads.increment();
+    }
+
+
+    /**
+     * Requests waiting per consumer, all of them if the queues have no consumer
+     */
+    private long backlog() {
+        return (outboxDepth + queueDepth) / Math.max(1, consumerCount);
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Convert the metadata captured on upload to and from the user metadata stored with the objects, so it can be read
+ * back with a HEAD request until the image is referenced in the database
+ */
+final class ImageUserMetadata {
+
+    private static final String WIDTH = "width";
+
+    private static final String HEIGHT = "height";
+
+    private static final String CHECKSUM = "checksum-sha256";
+
+    private static final String UPLOADED_AT = "uploaded-at";
+
+
+    private ImageUserMetadata() {
+    }
+
+
+    /**
+     * @param metadata Metadata captured on upload
+     * @return User metadata to store with the object, without the missing values
+     */
+    static Map<String, String> toUserMetadata(ImageMetadata metadata) {
+        Map<String, String> userMetadata = new HashMap<>();
+        if (metadata.getWidth() != null && metadata.getHeight() != null) {
+            userMetadata.put(WIDTH, metadata.getWidth().toString());
+            userMetadata.put(HEIGHT, metadata.getHeight().toString());
+        }
+        if (metadata.getChecksum() != null) {
+            userMetadata.put(CHECKSUM, metadata.getChecksum());
+        }
+        if (metadata.getUploadedAt() != null) {
+            userMetadata.put(UPLOADED_AT, metadata.getUploadedAt().toString());
+        }
+        return userMetadata;
+    }
+
+
+    /**
+     * Add the metadata captured on upload to a metadata builder, values missing or invalid are left unset
+     * @param builder Metadata builder
+     * @param userMetadata User metadata stored with the object
+     * @return The given builder
+     */
+    static ImageMetadata.ImageMetadataBuilder fromUserMetadata(ImageMetadata.ImageMetadataBuilder builder, Map<String, String> userMetadata) {
+        return builder
+                .width(parseInteger(userMetadata.get(WIDTH)))
+                .height(parseInteger(userMetadata.get(HEIGHT)))
+                .checksum(userMetadata.get(CHECKSUM))
+                .uploadedAt(parseInstant(userMetadata.get(UPLOADED_AT)));
+    }
+
+
+    /**
+     * @param userMetadata User metadata stored with the object
+     * @return Checksum of the image content captured on upload, or null if it was not captured
+     */
+    static String checksum(Map<String, String> userMetadata) {
+        return userMetadata.get(CHECKSUM);
+    }
+
+
+    private static Integer parseInteger(String value) {
+        try {
+            return value != null ? Integer.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+
+    private static Instant parseInstant(String value) {
+        try {
+            return value != null ? Instant.parse(value) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+}
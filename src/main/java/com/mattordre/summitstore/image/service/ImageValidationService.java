@@ -0,0 +1,92 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.StorageGuard;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.exception.ImageNotFoundException;
+import com.mattordre.summitstore.image.exception.StorageAccessException;
+import com.mattordre.summitstore.image.model.ImageType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+@RequiredArgsConstructor
+@Service
+public class ImageValidationService {
+
+    private final ImageService imageService;
+
+    private final ExecutorService storageTaskExecutor;
+
+    private final StorageGuard storageGuard;
+
+
+    @Value("${image.validation.max-concurrency:16}")
+    private int maxConcurrency;
+
+
+    /**
+     * Retrieve the metadata of the given image files, failing if one of them is not uploaded to object storage.
+     * All files are looked up concurrently, up to the configured concurrency, and the lookups still running are
+     * cancelled as soon as a missing file is found. The lookups take at most half of the current storage guard limit,
+     * so a product with many images is not rejected by the guard nor starves the concurrent image requests
+     * @param fileNames Image file names to look up
+     * @param imageType Type of the images
+     * @return Metadata of each distinct image file, by file name
+     * @throws ImageNotFoundException If an image file is not uploaded, with the file name in its message
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public Map<String, ImageMetadata> getImagesMetadata(Collection<String> fileNames, ImageType imageType) throws ImageNotFoundException, StorageAccessException {
+        Semaphore permits = new Semaphore(Math.clamp(storageGuard.getConcurrencyLimit() / 2, 1, Math.max(1, maxConcurrency)));
+        CompletionService<Map.Entry<String, ImageMetadata>> completionService = new ExecutorCompletionService<>(storageTaskExecutor);
+        List<Future<Map.Entry<String, ImageMetadata>>> lookups = new ArrayList<>();
+
+        for (String fileName : fileNames.stream().distinct().toList()) {
+            lookups.add(completionService.submit(() -> {
+                permits.acquire();
+                try {
+                    return Map.entry(fileName, imageService.getImageMetadata(imageType, fileName));
+                } catch (ImageNotFoundException e) {
+                    throw new ImageNotFoundException("Image not found: " + fileName, e);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        try {
+            Map<String, ImageMetadata> imagesMetadata = new HashMap<>();
+            for (int i = 0; i < lookups.size(); i++) {
+                Map.Entry<String, ImageMetadata> metadata = completionService.take().get();
+                imagesMetadata.put(metadata.getKey(), metadata.getValue());
+            }
+            return imagesMetadata;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ImageNotFoundException imageNotFoundException) {
+                throw imageNotFoundException;
+            }
+            if (e.getCause() instanceof StorageAccessException storageAccessException) {
+                throw storageAccessException;
+            }
+            throw new StorageAccessException("Error checking images in object storage", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageAccessException("Interrupted while checking images in object storage", e);
+        } finally {
+            // Short-circuit the remaining lookups
+            lookups.forEach(lookup -> lookup.cancel(true));
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.mattordre.summitstore.image.service;
+
+import java.util.Arrays;
+
+/**
+ * Percentiles of the last latencies recorded for an endpoint.
+ * Latencies are kept in a fixed-size ring, the percentile is recomputed once enough new latencies are recorded so
+ * reading it stays cheap
+ */
+public final class LatencyTracker {
+
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    private final long[] latencies;
+
+    private final double percentile;
+
+    private int nextLatency;
+
+    private int recordedLatencies;
+
+    private int recordsSinceCompute;
+
+    private long percentileNanos = -1;
+
+
+    /**
+     * @param windowSize Number of last latencies the percentile is computed on
+     * @param percentile Percentile to compute, between 0 and 1
+     */
+    public LatencyTracker(int windowSize, double percentile) {
+        this.latencies = new long[windowSize];
+        this.percentile = percentile;
+    }
+
+
+    /**
+     * Record the latency of a completed call
+     * @param latencyNanos Latency, in nanoseconds
+     */
+    public synchronized void record(long latencyNanos) {
+        latencies[nextLatency] = latencyNanos;
+        nextLatency = (nextLatency + 1) % latencies.length;
+        recordedLatencies = Math.min(recordedLatencies + 1, latencies.length);
+        if (++recordsSinceCompute >= RECOMPUTE_INTERVAL) {
+            long[] window = Arrays.copyOf(latencies, recordedLatencies);
+            Arrays.sort(window);
+            percentileNanos = window[(int) Math.min(window.length - 1, Math.ceil(percentile * window.length) - 1)];
+            recordsSinceCompute = 0;
+        }
+    }
+
+
+    /**
+     * @return Percentile of the last latencies, in nanoseconds, or -1 while too few latencies are recorded
+     */
+    public synchronized long percentileNanos() {
+        return percentileNanos;
+    }
+
+}
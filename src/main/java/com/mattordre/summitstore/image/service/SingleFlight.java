@@ -0,0 +1,71 @@
+package com.mattordre.summitstore.image.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesce concurrent executions of the same keyed call, callers arriving while a call is in flight wait for it
+ * and share its result or exception instead of executing the call again.
+ * Results are not retained once the call completes
+ * @param <K> Type of the call keys
+ * @param <V> Type of the call results
+ */
+public final class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlightCalls = new ConcurrentHashMap<>();
+
+
+    /**
+     * Execute a call, or wait for the one already in flight for the same key
+     * @param key Key of the call
+     * @param call Call to execute
+     * @return Result of the call
+     * @throws RuntimeException Exception thrown by the call, rethrown to every waiting caller
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> ownCall = new CompletableFuture<>();
+        CompletableFuture<V> inFlightCall = inFlightCalls.putIfAbsent(key, ownCall);
+        if (inFlightCall != null) {
+            return await(inFlightCall);
+        }
+
+        try {
+            V result = call.get();
+            ownCall.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            ownCall.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Later callers must trigger a new call
+            inFlightCalls.remove(key, ownCall);
+        }
+    }
+
+
+    /**
+     * @return Number of calls currently in flight
+     */
+    public int inFlightCount() {
+        return inFlightCalls.size();
+    }
+
+
+    private V await(CompletableFuture<V> inFlightCall) {
+        try {
+            return inFlightCall.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+package com.mattordre.summitstore.image.service;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.config.StorageGuard;
+import com.mattordre.summitstore.config.StorageOperation;
+import com.mattordre.summitstore.exception.InvalidArgumentException;
+import com.mattordre.summitstore.image.dto.ImageDimensions;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.event.ImageUploadedEvent;
+import com.mattordre.summitstore.image.exception.ImageTooLargeException;
+import com.mattordre.summitstore.image.exception.StorageAccessException;
+import com.mattordre.summitstore.image.exception.StorageUnavailableException;
+import com.mattordre.summitstore.image.model.ImageType;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Upload images streamed from the request body straight to object storage, without spooling them to a temporary file.
+ * The body is read in fixed-size parts uploaded concurrently as an S3 multipart upload, so at most a few parts are
+ * held in memory at a time. Every object storage call of the upload takes a slot of the storage guard
+ */
+@RequiredArgsConstructor
+@Service
+public class StreamingImageUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingImageUploadService.class);
+
+    // S3 rejects multipart uploads whose parts, except the last one, are smaller than 5MB
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    // Initial buffer of the first part when the client does not announce the image length
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final S3ClientRegistry s3ClientRegistry;
+
+    private final StorageGuard storageGuard;
+
+    private final ExecutorService storageTaskExecutor;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+
+    @Value("${image.upload.part-size:5MB}")
+    private DataSize partSize;
+
+    @Value("${image.upload.max-concurrent-parts:4}")
+    private int maxConcurrentParts;
+
+    @Value("${image.upload.max-size:10MB}")
+    private DataSize maxSize;
+
+
+    /**
+     * Upload an image streamed from the request body to object storage
+     * The image type is checked from its first bytes and its size while it is read, the multipart upload is aborted
+     * as soon as a limit is exceeded or a part fails
+     * @param input Image content stream
+     * @param declaredLength Length announced by the client, or -1 if unknown
+     * @param originalFilename Original image file name
+     * @param imageType Type of the image
+     * @return Image fileName stored in object storage
+     * @throws InvalidArgumentException If the content is not a PNG or JPEG image or cannot be read
+     * @throws ImageTooLargeException If the image exceeds the maximum upload size
+     * @throws StorageAccessException If there is an error accessing the object storage
+     */
+    public String uploadImage(InputStream input, long declaredLength, String originalFilename, ImageType imageType)
+            throws InvalidArgumentException, ImageTooLargeException, StorageAccessException {
+        if (declaredLength > maxSize.toBytes()) {
+            throw new ImageTooLargeException("Image must not exceed " + maxSize.toMegabytes() + "MB");
+        }
+
+        // Generate a unique file name
+        String fileName = UUID.randomUUID() + "-" + originalFilename;
+        int partLength = (int) Math.max(partSize.toBytes(), MIN_PART_SIZE);
+
+        // Small images only allocate what they need, the buffer reaches a whole part only for multipart uploads
+        FirstPart first = readFirstPart(input, partLength, declaredLength);
+        byte[] firstPart = first.content();
+        int firstPartLength = first.length();
+        String contentType = ImageContentTypeDetector.detect(firstPart, firstPartLength);
+        if (contentType == null) {
+            throw new InvalidArgumentException("Image file must be a valid image type (PNG, JPEG, or JPG)");
+        }
+        checkSize(firstPartLength);
+
+        // The object metadata is sent before the content, so the checksum of streamed images is not captured
+        ImageDimensions dimensions = ImageHeaderReader.readDimensions(new ByteArrayInputStream(firstPart, 0, firstPartLength));
+        Map<String, String> userMetadata = ImageUserMetadata.toUserMetadata(ImageMetadata.builder()
+                .width(dimensions != null ? dimensions.width() : null)
+                .height(dimensions != null ? dimensions.height() : null)
+                .uploadedAt(Instant.now())
+                .build());
+
+        S3Client s3Client = s3ClientRegistry.getClient();
+        if (firstPartLength < partLength) {
+            // The whole image fits in a single part, a plain upload saves the multipart round-trips
+            putImage(s3Client, imageType, fileName, contentType, userMetadata, firstPart, firstPartLength);
+        } else {
+            uploadImageParts(s3Client, input, imageType, fileName, contentType, userMetadata, firstPart);
+        }
+        log.info("Image {} uploaded successfully", originalFilename);
+        eventPublisher.publishEvent(new ImageUploadedEvent(imageType, fileName));
+        return fileName;
+    }
+
+
+    private void putImage(S3Client s3Client, ImageType imageType, String fileName, String contentType, Map<String, String> userMetadata,
+                          byte[] content, int length) {
+        try {
+            storageGuard.execute(StorageOperation.PUT, () -> s3Client.putObject(
+                    PutObjectRequest.builder()
+                            .bucket(imageType.getBucketName())
+                            .key(fileName)
+                            .contentType(contentType)
+                            .metadata(userMetadata)
+                            .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.PUT))
+                            .build(),
+                    RequestBody.fromInputStream(new ByteArrayInputStream(content, 0, length), length)
+            ));
+        } catch (AwsServiceException | SdkClientException e) {
+            log.error("Error uploading image {} to object storage", fileName, e);
+            throw new StorageAccessException("Error uploading image to object storage", e);
+        }
+    }
+
+
+    private void uploadImageParts(S3Client s3Client, InputStream input, ImageType imageType, String fileName, String contentType,
+                                  Map<String, String> userMetadata, byte[] firstPart) {
+        String uploadId;
+        try {
+            uploadId = storageGuard.execute(StorageOperation.PUT, () -> s3Client.createMultipartUpload(
+                    CreateMultipartUploadRequest.builder()
+                            .bucket(imageType.getBucketName())
+                            .key(fileName)
+                            .contentType(contentType)
+                            .metadata(userMetadata)
+                            .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.PUT))
+                            .build()
+            )).uploadId();
+        } catch (AwsServiceException | SdkClientException e) {
+            log.error("Error starting the upload of image {} to object storage", fileName, e);
+            throw new StorageAccessException("Error uploading image to object storage", e);
+        }
+
+        // Bound the parts in flight, which also bounds the memory held by their buffers
+        Semaphore permits = new Semaphore(maxConcurrentParts);
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+        try {
+            byte[] part = firstPart;
+            int partLength = firstPart.length;
+            long totalLength = 0;
+            while (partLength > 0) {
+                totalLength += partLength;
+                checkSize(totalLength);
+                permits.acquire();
+                parts.add(submitPart(s3Client, imageType, fileName, uploadId, parts.size() + 1, part, partLength, permits));
+                if (partLength < part.length || parts.stream().anyMatch(future -> future.state() == Future.State.FAILED)) {
+                    break;
+                }
+                part = new byte[part.length];
+                partLength = readPart(input, part);
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>();
+            for (Future<CompletedPart> future : parts) {
+                completedParts.add(future.get());
+            }
+            storageGuard.execute(StorageOperation.PUT, () -> s3Client.completeMultipartUpload(
+                    CompleteMultipartUploadRequest.builder()
+                            .bucket(imageType.getBucketName())
+                            .key(fileName)
+                            .uploadId(uploadId)
+                            .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                            .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.PUT))
+                            .build()
+            ));
+        } catch (InvalidArgumentException | ImageTooLargeException | StorageAccessException e) {
+            abortUpload(s3Client, imageType, fileName, uploadId, parts);
+            throw e;
+        } catch (AwsServiceException | SdkClientException e) {
+            abortUpload(s3Client, imageType, fileName, uploadId, parts);
+            log.error("Error uploading image {} to object storage", fileName, e);
+            throw new StorageAccessException("Error uploading image to object storage", e);
+        } catch (ExecutionException e) {
+            abortUpload(s3Client, imageType, fileName, uploadId, parts);
+            if (e.getCause() instanceof StorageUnavailableException storageUnavailableException) {
+                throw storageUnavailableException;
+            }
+            log.error("Error uploading a part of image {} to object storage", fileName, e.getCause());
+            throw new StorageAccessException("Error uploading image to object storage", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abortUpload(s3Client, imageType, fileName, uploadId, parts);
+            throw new StorageAccessException("Interrupted while uploading image to object storage", e);
+        }
+    }
+
+
+    private Future<CompletedPart> submitPart(S3Client s3Client, ImageType imageType, String fileName, String uploadId,
+                                             int partNumber, byte[] content, int length, Semaphore permits) {
+        return storageTaskExecutor.submit(() -> {
+            try {
+                String eTag = storageGuard.execute(StorageOperation.PUT, () -> s3Client.uploadPart(
+                        UploadPartRequest.builder()
+                                .bucket(imageType.getBucketName())
+                                .key(fileName)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength((long) length)
+                                .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.PUT))
+                                .build(),
+                        RequestBody.fromInputStream(new ByteArrayInputStream(content, 0, length), length)
+                )).eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+
+    private void abortUpload(S3Client s3Client, ImageType imageType, String fileName, String uploadId, List<Future<CompletedPart>> parts) {
+        parts.forEach(part -> part.cancel(true));
+        try {
+            storageGuard.run(StorageOperation.DELETE, () -> s3Client.abortMultipartUpload(
+                    AbortMultipartUploadRequest.builder()
+                            .bucket(imageType.getBucketName())
+                            .key(fileName)
+                            .uploadId(uploadId)
+                            .overrideConfiguration(storageGuard.requestConfiguration(StorageOperation.DELETE))
+                            .build()
+            ));
+        } catch (AwsServiceException | SdkClientException | StorageUnavailableException e) {
+            // Left to the bucket lifecycle rule cleaning incomplete multipart uploads
+            log.warn("Error aborting the upload of image {}", fileName, e);
+        }
+    }
+
+
+    /**
+     * Read the first part of the stream, in a buffer sized from the declared length and grown as data arrives
+     * @return First part, whose buffer is a whole part only if the stream holds at least a whole part
+     */
+    private FirstPart readFirstPart(InputStream input, int partLength, long declaredLength) {
+        // One byte more than announced detects the end of the stream without another read
+        int capacity = (int) Math.min(partLength, declaredLength >= 0 ? declaredLength + 1 : INITIAL_BUFFER_SIZE);
+        byte[] buffer = new byte[Math.max(capacity, 1)];
+        int length = 0;
+        while (true) {
+            length += readPart(input, buffer, length);
+            if (length < buffer.length || buffer.length == partLength) {
+                return new FirstPart(buffer, length);
+            }
+            checkSize(length);
+            buffer = Arrays.copyOf(buffer, (int) Math.min(partLength, 2L * buffer.length));
+        }
+    }
+
+
+    /**
+     * Fill a part buffer from the stream
+     * @return Number of bytes read, lower than the buffer length only at the end of the stream
+     */
+    private int readPart(InputStream input, byte[] part) {
+        return readPart(input, part, 0);
+    }
+
+
+    private int readPart(InputStream input, byte[] part, int offset) {
+        try {
+            return input.readNBytes(part, offset, part.length - offset);
+        } catch (IOException e) {
+            throw new InvalidArgumentException("Error reading the image content", e);
+        }
+    }
+
+
+    private void checkSize(long length) {
+        if (length > maxSize.toBytes()) {
+            throw new ImageTooLargeException("Image must not exceed " + maxSize.toMegabytes() + "MB");
+        }
+    }
+
+
+    private record FirstPart(byte[] content, int length) {
+    }
+
+}
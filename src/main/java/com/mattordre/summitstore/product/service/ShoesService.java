@@ -3,20 +3,25 @@ package com.mattordre.summitstore.product.service;
 import com.mattordre.summitstore.brand.model.Brand;
 import com.mattordre.summitstore.brand.repository.BrandRepository;
 import com.mattordre.summitstore.exception.InvalidArgumentException;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.exception.ImageNotFoundException;
 import com.mattordre.summitstore.image.model.ImageType;
 import com.mattordre.summitstore.image.model.ProductVariantImage;
-import com.mattordre.summitstore.image.service.ImageService;
+import com.mattordre.summitstore.image.service.ImageProcessingStateService;
+import com.mattordre.summitstore.image.service.ImageValidationService;
 import com.mattordre.summitstore.product.dto.CreateProductVariantImageDTO;
 import com.mattordre.summitstore.product.dto.CreateShoesDTO;
 import com.mattordre.summitstore.product.dto.CreateVariantDTO;
 import com.mattordre.summitstore.product.model.Shoes;
 import com.mattordre.summitstore.product.model.Variant;
 import com.mattordre.summitstore.product.repository.ShoesRepository;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @RequiredArgsConstructor
 @Service
@@ -26,17 +31,39 @@ public class ShoesService {
 
     private final BrandRepository brandRepository;
 
-    private final ImageService imageService;
+    private final ImageValidationService imageValidationService;
+
+    private final ImageProcessingStateService imageProcessingStateService;
+
+    private final TransactionTemplate transactionTemplate;
 
 
     /**
      * Create a new shoes product with variants and images
+     * The metadata of all images is retrieved concurrently from the object storage before the database transaction is
+     * started, so no database connection is held during remote calls, and is kept with their references
      * @param createShoesDTO DTO containing shoes details and variants with images to be created
      * @return Created shoes object
      * @throws InvalidArgumentException If brand is not found or image is not uploaded
      */
-    @Transactional
     public Shoes createShoes(CreateShoesDTO createShoesDTO) throws InvalidArgumentException {
+        // Check if all the images are uploaded to the object storage
+        List<String> imageFileNames = createShoesDTO.getVariants().stream()
+                .flatMap(variantDTO -> variantDTO.getImages().stream())
+                .map(CreateProductVariantImageDTO::getFileName)
+                .toList();
+        Map<String, ImageMetadata> imagesMetadata;
+        try {
+            imagesMetadata = imageValidationService.getImagesMetadata(imageFileNames, ImageType.PRODUCT);
+        } catch (ImageNotFoundException e) {
+            throw new InvalidArgumentException(e.getMessage());
+        }
+
+        return transactionTemplate.execute(status -> saveShoes(createShoesDTO, imagesMetadata));
+    }
+
+
+    private Shoes saveShoes(CreateShoesDTO createShoesDTO, Map<String, ImageMetadata> imagesMetadata) throws InvalidArgumentException {
         // Retrieve brand according to brandId from the dto
         Brand brand = brandRepository.findById(createShoesDTO.getBrandId()).orElseThrow(() -> new InvalidArgumentException("Brand not found"));
 
@@ -56,17 +83,17 @@ public class ShoesService {
             var images = new ArrayList<ProductVariantImage>();
 
             for (CreateProductVariantImageDTO imageDTO : variantDTO.getImages()) {
-                // Check if image is uploaded to the object storage
-                var isImageUploaded = imageService.isImageFileUploaded(imageDTO.getFileName(), ImageType.PRODUCT);
-
-                if (!isImageUploaded) {
-                    throw new InvalidArgumentException("Image not found");
-                }
-
+                ImageMetadata metadata = imagesMetadata.get(imageDTO.getFileName());
                 var productVariantImage = ProductVariantImage.builder()
                         .fileName(imageDTO.getFileName())
                         .order(imageDTO.getOrder())
                         .bucketName(ImageType.PRODUCT.getBucketName())
+                        .contentLength(metadata.getContentLength())
+                        .contentType(metadata.getContentType())
+                        .width(metadata.getWidth())
+                        .height(metadata.getHeight())
+                        .checksum(metadata.getChecksum())
+                        .uploadedAt(metadata.getUploadedAt())
                         .variant(variant)
                         .build();
 
@@ -78,7 +105,10 @@ public class ShoesService {
 
         shoes.setVariants(variants);
 
-        return shoesRepository.save(shoes);
+        // Insert the image rows before applying the processing completions received before they were referenced
+        Shoes savedShoes = shoesRepository.saveAndFlush(shoes);
+        imageProcessingStateService.applyCompletions(imagesMetadata.keySet());
+        return savedShoes;
     }
 
 }
@@ -0,0 +1,10 @@
+CREATE TABLE image_processing_completion
+(
+    file_name    VARCHAR(100) NOT NULL,
+    bucket_name  VARCHAR(50)  NOT NULL,
+    state        VARCHAR(20)  NOT NULL,
+    completed_at TIMESTAMP    NOT NULL,
+    CONSTRAINT pk_image_processing_completion PRIMARY KEY (file_name)
+);
+
+CREATE INDEX idx_image_processing_completion_completed_at ON image_processing_completion (completed_at);
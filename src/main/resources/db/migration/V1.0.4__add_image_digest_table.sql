@@ -0,0 +1,10 @@
+CREATE TABLE image_digest
+(
+    bucket_name VARCHAR(50)  NOT NULL,
+    digest      VARCHAR(64)  NOT NULL,
+    file_name   VARCHAR(100) NOT NULL,
+    created_at  TIMESTAMP    NOT NULL,
+    CONSTRAINT pk_image_digest PRIMARY KEY (bucket_name, digest)
+);
+
+CREATE INDEX idx_image_digest_file_name ON image_digest (file_name);
@@ -0,0 +1,7 @@
+ALTER TABLE image
+    ADD COLUMN content_length BIGINT,
+    ADD COLUMN content_type   VARCHAR(50),
+    ADD COLUMN width          INTEGER,
+    ADD COLUMN height         INTEGER,
+    ADD COLUMN checksum       VARCHAR(64),
+    ADD COLUMN uploaded_at    TIMESTAMP;
@@ -0,0 +1,9 @@
+CREATE TABLE image_processing_outbox
+(
+    id          BIGSERIAL    NOT NULL,
+    queue_name  VARCHAR(100) NOT NULL,
+    bucket_name VARCHAR(50)  NOT NULL,
+    file_name   VARCHAR(100) NOT NULL,
+    created_at  TIMESTAMP    NOT NULL,
+    CONSTRAINT pk_image_processing_outbox PRIMARY KEY (id)
+);
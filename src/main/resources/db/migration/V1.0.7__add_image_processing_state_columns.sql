@@ -0,0 +1,7 @@
+ALTER TABLE image
+    ADD COLUMN processing_state VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    ADD COLUMN processed_at     TIMESTAMP;
+
+-- Images referenced before the state was tracked were processed long ago
+UPDATE image
+SET processing_state = 'PROCESSED';
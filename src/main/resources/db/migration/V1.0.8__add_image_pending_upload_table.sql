@@ -0,0 +1,11 @@
+CREATE TABLE image_pending_upload
+(
+    bucket_name  VARCHAR(50)  NOT NULL,
+    file_name    VARCHAR(100) NOT NULL,
+    expires_at   TIMESTAMP    NOT NULL,
+    committed_at TIMESTAMP,
+    created_at   TIMESTAMP    NOT NULL,
+    CONSTRAINT pk_image_pending_upload PRIMARY KEY (bucket_name, file_name)
+);
+
+CREATE INDEX idx_image_pending_upload_expires_at ON image_pending_upload (expires_at);
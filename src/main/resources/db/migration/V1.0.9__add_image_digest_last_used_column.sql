@@ -0,0 +1,2 @@
+ALTER TABLE image_digest
+    ADD COLUMN last_used_at TIMESTAMP;
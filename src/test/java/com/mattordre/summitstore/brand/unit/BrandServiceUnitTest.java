@@ -5,9 +5,12 @@ import com.mattordre.summitstore.brand.service.BrandService;
 import com.mattordre.summitstore.brand.dto.CreateBrandDTO;
 import com.mattordre.summitstore.brand.model.Brand;
 import com.mattordre.summitstore.exception.InvalidArgumentException;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.exception.ImageNotFoundException;
 import com.mattordre.summitstore.image.model.BrandLogo;
 import com.mattordre.summitstore.image.model.ImageType;
 import com.mattordre.summitstore.image.repository.BrandLogoRepository;
+import com.mattordre.summitstore.image.service.ImageProcessingStateService;
 import com.mattordre.summitstore.image.service.ImageService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -37,6 +40,9 @@ public class BrandServiceUnitTest {
     @Mock
     private ImageService imageService;
 
+    @Mock
+    private ImageProcessingStateService imageProcessingStateService;
+
 
     @BeforeEach
     void setUp() {
@@ -112,9 +118,9 @@ public class BrandServiceUnitTest {
         Brand savedBrand = Brand.builder().id(1).name("Brand1").description("Description Brand1").logo(brandLogo).build();
 
         // Setup mocks
-        when(brandLogoRepository.save(any(BrandLogo.class))).thenReturn(brandLogo);
+        when(brandLogoRepository.saveAndFlush(any(BrandLogo.class))).thenReturn(brandLogo);
         when(brandRepository.save(any(Brand.class))).thenReturn(savedBrand);
-        when(imageService.isImageFileUploaded(anyString(), any())).thenReturn(true);
+        when(imageService.getImageMetadata(any(), anyString())).thenReturn(ImageMetadata.builder().contentLength(1024).contentType("image/png").build());
 
         // Execute method under test
         Brand actualBrand = brandService.createBrand(createBrandDTO);
@@ -122,7 +128,8 @@ public class BrandServiceUnitTest {
         // Assert results
         assertNotNull(actualBrand);
         assertEquals(savedBrand, actualBrand);
-        verify(brandLogoRepository, times(1)).save(any(BrandLogo.class));
+        verify(brandLogoRepository, times(1)).saveAndFlush(any(BrandLogo.class));
+        verify(imageProcessingStateService, times(1)).applyCompletions(List.of("brand1.png"));
         verify(brandRepository, times(1)).save(any(Brand.class));
     }
 
@@ -137,12 +144,12 @@ public class BrandServiceUnitTest {
                 .build();
 
         // Setup mocks
-        when(imageService.isImageFileUploaded(anyString(), any())).thenReturn(false);
+        when(imageService.getImageMetadata(any(), anyString())).thenThrow(new ImageNotFoundException("Image not found"));
 
         // Execute method under test & Assert results
         assertThrows(InvalidArgumentException.class, () -> brandService.createBrand(createBrandDTO));
         verify(brandRepository, times(0)).save(any(Brand.class));
-        verify(brandLogoRepository, times(0)).save(any(BrandLogo.class));
+        verify(brandLogoRepository, times(0)).saveAndFlush(any(BrandLogo.class));
     }
 
 }
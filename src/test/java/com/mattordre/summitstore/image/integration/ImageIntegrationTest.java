@@ -142,6 +142,101 @@ public class ImageIntegrationTest {
     }
 
 
+    @Test
+    void getImage_shouldReturnPartialContentForRangeRequest() throws Exception {
+        // Prepare testing data
+        MockMultipartFile imageFile = new MockMultipartFile(
+                "image",
+                "ranged-image.png",
+                MediaType.IMAGE_PNG_VALUE,
+                "test image content".getBytes()
+        );
+        String fileName = mockMvc.perform(
+                multipart("/api/image")
+                        .file(imageFile)
+                        .param("type", String.valueOf(ImageType.PRODUCT))
+        ).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+        // Execute the HTTP request to retrieve the first bytes of the image
+        ResultActions result = mockMvc.perform(
+                get("/api/image/{filename}", fileName)
+                        .param("type", String.valueOf(ImageType.PRODUCT))
+                        .header("Range", "bytes=0-3")
+                        .accept(MediaType.IMAGE_PNG_VALUE)
+        );
+
+        // Assert response
+        result.andExpect(status().isPartialContent());
+        result.andExpect(header().string("Content-Range", "bytes 0-3/18"));
+        result.andExpect(content().bytes("test".getBytes()));
+    }
+
+
+    @Test
+    void getImage_shouldReturnRangeNotSatisfiableForOutOfBoundsRange() throws Exception {
+        // Prepare testing data
+        MockMultipartFile imageFile = new MockMultipartFile(
+                "image",
+                "ranged-image.png",
+                MediaType.IMAGE_PNG_VALUE,
+                "test image content".getBytes()
+        );
+        String fileName = mockMvc.perform(
+                multipart("/api/image")
+                        .file(imageFile)
+                        .param("type", String.valueOf(ImageType.PRODUCT))
+        ).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+        // Execute the HTTP request with a range starting after the end of the image
+        ResultActions result = mockMvc.perform(
+                get("/api/image/{filename}", fileName)
+                        .param("type", String.valueOf(ImageType.PRODUCT))
+                        .header("Range", "bytes=100-200")
+                        .accept(MediaType.IMAGE_PNG_VALUE)
+        );
+
+        // Assert response
+        result.andExpect(status().isRequestedRangeNotSatisfiable());
+        result.andExpect(header().string("Content-Range", "bytes */18"));
+    }
+
+
+    @Test
+    void getImage_shouldReturnNotModifiedWhenETagMatches() throws Exception {
+        // Prepare testing data
+        MockMultipartFile imageFile = new MockMultipartFile(
+                "image",
+                "cached-image.png",
+                MediaType.IMAGE_PNG_VALUE,
+                "test image content".getBytes()
+        );
+        String fileName = mockMvc.perform(
+                multipart("/api/image")
+                        .file(imageFile)
+                        .param("type", String.valueOf(ImageType.PRODUCT))
+        ).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        String eTag = mockMvc.perform(
+                get("/api/image/{filename}", fileName)
+                        .param("type", String.valueOf(ImageType.PRODUCT))
+                        .accept(MediaType.IMAGE_PNG_VALUE)
+        ).andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", org.hamcrest.Matchers.containsString("immutable")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Execute the HTTP request to revalidate the image
+        ResultActions result = mockMvc.perform(
+                get("/api/image/{filename}", fileName)
+                        .param("type", String.valueOf(ImageType.PRODUCT))
+                        .header("If-None-Match", eTag)
+                        .accept(MediaType.IMAGE_PNG_VALUE)
+        );
+
+        // Assert response
+        result.andExpect(status().isNotModified());
+        result.andExpect(header().string("ETag", eTag));
+    }
+
+
     @Test
     void getImage_shouldReturnNotFoundWhenImageDoesNotExist() throws Exception {
         // Prepare testing data
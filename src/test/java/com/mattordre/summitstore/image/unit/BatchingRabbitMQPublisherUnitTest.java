@@ -0,0 +1,127 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.rabbitMQ.BatchingRabbitMQPublisher;
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingMessage;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQSender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.AmqpException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BatchingRabbitMQPublisherUnitTest {
+
+    private BatchingRabbitMQPublisher batchingRabbitMQPublisher;
+
+    @Mock
+    private RabbitMQSender rabbitMQSender;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        batchingRabbitMQPublisher = new BatchingRabbitMQPublisher(rabbitMQSender, new SimpleMeterRegistry(), 3, Duration.ofSeconds(10), 100);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        batchingRabbitMQPublisher.close();
+    }
+
+
+    @Test
+    void publish_shouldSendMessagesInOneBatch_whenBatchIsFull() throws Exception {
+        // Setup mocks
+        when(rabbitMQSender.sendAll(anyString(), anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(1)).stream()
+                .map(message -> CompletableFuture.<Void>completedFuture(null))
+                .toList());
+
+        // Execute method under test
+        List<CompletableFuture<Void>> published = List.of(
+                batchingRabbitMQPublisher.publish("image.processing.background", message("first.png")),
+                batchingRabbitMQPublisher.publish("image.processing.background", message("second.png")),
+                batchingRabbitMQPublisher.publish("image.processing.background", message("third.png"))
+        );
+        CompletableFuture.allOf(published.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        // Assert results
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ImageProcessingMessage>> messages = ArgumentCaptor.forClass(List.class);
+        verify(rabbitMQSender, times(1)).sendAll(eq("image.processing.background"), messages.capture());
+        assertEquals(List.of("first.png", "second.png", "third.png"), messages.getValue().stream().map(ImageProcessingMessage::getFileName).toList());
+    }
+
+
+    @Test
+    void publish_shouldFailFuture_whenBatchCannotBePublished() {
+        // Setup mocks
+        doThrow(new AmqpConnectException(new RuntimeException("Broker unavailable"))).when(rabbitMQSender).sendAll(anyString(), anyList());
+
+        // Execute method under test
+        CompletableFuture<Void> published = batchingRabbitMQPublisher.publish("image.processing.background", message("image.png"));
+
+        // Assert results
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> {
+            // Flushed on close, before the flush interval
+            batchingRabbitMQPublisher.close();
+            published.get(5, TimeUnit.SECONDS);
+        });
+        assertInstanceOf(AmqpException.class, exception.getCause());
+    }
+
+
+    @Test
+    void publish_shouldKeepPublishing_whenBatchFailsWithUnexpectedException() throws Exception {
+        // Setup mocks
+        when(rabbitMQSender.sendAll(anyString(), anyList()))
+                .thenThrow(new IllegalStateException("Channel closed"))
+                .thenAnswer(invocation -> ((List<?>) invocation.getArgument(1)).stream()
+                        .map(message -> CompletableFuture.<Void>completedFuture(null))
+                        .toList());
+
+        // Execute method under test
+        List<CompletableFuture<Void>> failed = List.of(
+                batchingRabbitMQPublisher.publish("image.processing.background", message("first.png")),
+                batchingRabbitMQPublisher.publish("image.processing.background", message("second.png")),
+                batchingRabbitMQPublisher.publish("image.processing.background", message("third.png"))
+        );
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> failed.getFirst().get(5, TimeUnit.SECONDS));
+        List<CompletableFuture<Void>> published = List.of(
+                batchingRabbitMQPublisher.publish("image.processing.background", message("fourth.png")),
+                batchingRabbitMQPublisher.publish("image.processing.background", message("fifth.png")),
+                batchingRabbitMQPublisher.publish("image.processing.background", message("sixth.png"))
+        );
+
+        // Assert results
+        assertInstanceOf(AmqpException.class, exception.getCause());
+        assertInstanceOf(IllegalStateException.class, exception.getCause().getCause());
+        CompletableFuture.allOf(published.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        verify(rabbitMQSender, times(2)).sendAll(eq("image.processing.background"), anyList());
+    }
+
+
+    private ImageProcessingMessage message(String fileName) {
+        return ImageProcessingMessage.builder()
+                .fileName(fileName)
+                .bucketName("product-images")
+                .build();
+    }
+
+}
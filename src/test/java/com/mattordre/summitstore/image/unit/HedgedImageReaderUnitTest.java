@@ -0,0 +1,120 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.config.StorageGuard;
+import com.mattordre.summitstore.image.service.HedgedImageReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class HedgedImageReaderUnitTest {
+
+    private static final GetObjectRequest REQUEST = GetObjectRequest.builder().bucket("product-images").key("test-image.png").build();
+
+    @Mock
+    private S3ClientRegistry s3ClientRegistry;
+
+    private final StorageGuard storageGuard = new StorageGuard(new SimpleMeterRegistry(), Duration.ofSeconds(2), Duration.ofSeconds(10),
+            Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofSeconds(5), 50, 20, 0.5, Duration.ofSeconds(10), 3, 20, 4, 50,
+            Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ZERO, Duration.ZERO, Duration.ofSeconds(1));
+
+    @Mock
+    private S3AsyncClient primaryClient;
+
+    @Mock
+    private S3AsyncClient replicaClient;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(s3ClientRegistry.getAsyncClient("http://primary:9000")).thenReturn(primaryClient);
+        when(s3ClientRegistry.getAsyncClient("http://replica:9000")).thenReturn(replicaClient);
+    }
+
+
+    @Test
+    void openStream_shouldReturnReplicaResponseAndCancelPrimary_whenPrimaryIsSlow() {
+        // Prepare testing data
+        HedgedImageReader hedgedImageReader = newReader(10);
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> primaryResponse = new CompletableFuture<>();
+        ResponseInputStream<GetObjectResponse> replicaStream = newStream();
+
+        // Setup mocks
+        doReturn(primaryResponse).when(primaryClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+        doReturn(CompletableFuture.completedFuture(replicaStream)).when(replicaClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+
+        // Execute method under test
+        ResponseInputStream<GetObjectResponse> result = hedgedImageReader.openStream(REQUEST);
+
+        // Assert results
+        assertSame(replicaStream, result);
+        assertTrue(primaryResponse.isCancelled());
+    }
+
+
+    @Test
+    void openStream_shouldNotHedge_whenPrimaryAnswersInTime() {
+        // Prepare testing data
+        HedgedImageReader hedgedImageReader = newReader(10);
+        ResponseInputStream<GetObjectResponse> primaryStream = newStream();
+
+        // Setup mocks
+        doReturn(CompletableFuture.completedFuture(primaryStream)).when(primaryClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+
+        // Execute method under test
+        ResponseInputStream<GetObjectResponse> result = hedgedImageReader.openStream(REQUEST);
+
+        // Assert results
+        assertSame(primaryStream, result);
+        verifyNoInteractions(replicaClient);
+    }
+
+
+    @Test
+    void openStream_shouldWaitForPrimary_whenHedgeBudgetIsExhausted() {
+        // Prepare testing data
+        HedgedImageReader hedgedImageReader = newReader(0);
+        ResponseInputStream<GetObjectResponse> primaryStream = newStream();
+
+        // Setup mocks
+        doReturn(CompletableFuture.supplyAsync(() -> primaryStream, CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS)))
+                .when(primaryClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+
+        // Execute method under test
+        ResponseInputStream<GetObjectResponse> result = hedgedImageReader.openStream(REQUEST);
+
+        // Assert results
+        assertSame(primaryStream, result);
+        verifyNoInteractions(replicaClient);
+    }
+
+
+    private ResponseInputStream<GetObjectResponse> newStream() {
+        return new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream(new byte[16])));
+    }
+
+
+    private HedgedImageReader newReader(double budgetBurst) {
+        return new HedgedImageReader(s3ClientRegistry, storageGuard, new SimpleMeterRegistry(), "http://primary:9000", "http://replica:9000",
+                0.95, Duration.ofMillis(1), Duration.ofMillis(10), 0.05, budgetBurst);
+    }
+
+}
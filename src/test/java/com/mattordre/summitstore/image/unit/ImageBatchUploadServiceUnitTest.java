@@ -0,0 +1,122 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.image.dto.ImageUploadResultDTO;
+import com.mattordre.summitstore.image.dto.ImageUploadStatus;
+import com.mattordre.summitstore.image.dto.StoredImage;
+import com.mattordre.summitstore.image.exception.StorageAccessException;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.service.ImageBatchUploadService;
+import com.mattordre.summitstore.image.service.ImageProcessingService;
+import com.mattordre.summitstore.image.service.ImageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.*;
+
+public class ImageBatchUploadServiceUnitTest {
+
+    private ImageBatchUploadService imageBatchUploadService;
+
+    @Mock
+    private ImageService imageService;
+
+    @Mock
+    private ImageProcessingService imageProcessingService;
+
+    private ExecutorService executorService;
+
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executorService = Executors.newVirtualThreadPerTaskExecutor();
+        imageBatchUploadService = new ImageBatchUploadService(imageService, imageProcessingService, executorService);
+        ReflectionTestUtils.setField(imageBatchUploadService, "maxFiles", 10);
+        ReflectionTestUtils.setField(imageBatchUploadService, "maxConcurrency", 2);
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+
+    @Test
+    void uploadImages_shouldReportFailuresInInputOrder_whenSomeUploadsFail() {
+        // Prepare testing data
+        MultipartFile first = new MockMultipartFile("images", "first.png", "image/png", new byte[]{1});
+        MultipartFile invalid = new MockMultipartFile("images", "invalid.txt", "text/plain", new byte[]{2});
+        MultipartFile failing = new MockMultipartFile("images", "failing.png", "image/png", new byte[]{3});
+        MultipartFile last = new MockMultipartFile("images", "last.jpg", "image/jpeg", new byte[]{4});
+
+        // Setup mocks
+        when(imageService.storeImage(first, ImageType.PRODUCT)).thenReturn(new StoredImage("uuid-first.png", null));
+        when(imageService.storeImage(failing, ImageType.PRODUCT)).thenThrow(new StorageAccessException("Error uploading image to object storage"));
+        when(imageService.storeImage(last, ImageType.PRODUCT)).thenReturn(new StoredImage("uuid-last.jpg", null));
+
+        // Execute method under test
+        List<ImageUploadResultDTO> results = imageBatchUploadService.uploadImages(List.of(first, invalid, failing, last), ImageType.PRODUCT);
+
+        // Assert results
+        assertEquals(List.of("first.png", "invalid.txt", "failing.png", "last.jpg"), results.stream().map(ImageUploadResultDTO::getOriginalFileName).toList());
+        assertEquals(List.of(ImageUploadStatus.UPLOADED, ImageUploadStatus.FAILED, ImageUploadStatus.FAILED, ImageUploadStatus.UPLOADED),
+                results.stream().map(ImageUploadResultDTO::getStatus).toList());
+        assertNull(results.get(2).getFileName());
+        verify(imageService, never()).storeImage(invalid, ImageType.PRODUCT);
+        verify(imageProcessingService).processImagesBackground(List.of("uuid-first.png", "uuid-last.jpg"), ImageType.PRODUCT);
+    }
+
+
+    @Test
+    void uploadImages_shouldReportProcessingNotRequested_whenPublishFails() {
+        // Prepare testing data
+        MultipartFile image = new MockMultipartFile("images", "image.png", "image/png", new byte[]{1});
+
+        // Setup mocks
+        when(imageService.storeImage(image, ImageType.BRAND)).thenReturn(new StoredImage("uuid-image.png", null));
+        doThrow(new DataAccessResourceFailureException("Database unavailable"))
+                .when(imageProcessingService).processImagesBackground(anyList(), eq(ImageType.BRAND));
+
+        // Execute method under test
+        List<ImageUploadResultDTO> results = imageBatchUploadService.uploadImages(List.of(image), ImageType.BRAND);
+
+        // Assert results
+        assertEquals(ImageUploadStatus.PROCESSING_NOT_REQUESTED, results.getFirst().getStatus());
+        assertEquals("uuid-image.png", results.getFirst().getFileName());
+    }
+
+
+    @Test
+    void uploadImages_shouldNotRequestProcessing_whenImageIsDuplicate() {
+        // Prepare testing data
+        MultipartFile image = new MockMultipartFile("images", "image.png", "image/png", new byte[]{1});
+        MultipartFile duplicate = new MockMultipartFile("images", "duplicate.png", "image/png", new byte[]{2});
+
+        // Setup mocks
+        when(imageService.storeImage(image, ImageType.PRODUCT)).thenReturn(new StoredImage("uuid-image.png", null));
+        when(imageService.storeImage(duplicate, ImageType.PRODUCT)).thenReturn(new StoredImage("uuid-stored.png", "uuid-image.png"));
+
+        // Execute method under test
+        List<ImageUploadResultDTO> results = imageBatchUploadService.uploadImages(List.of(image, duplicate), ImageType.PRODUCT);
+
+        // Assert results
+        assertEquals("uuid-stored.png", results.get(1).getFileName());
+        assertEquals(ImageUploadStatus.UPLOADED, results.get(1).getStatus());
+        verify(imageProcessingService).processImagesBackground(List.of("uuid-image.png"), ImageType.PRODUCT);
+    }
+
+}
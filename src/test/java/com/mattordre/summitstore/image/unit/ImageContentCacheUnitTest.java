@@ -0,0 +1,145 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.event.ImageDeletedEvent;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.service.ImageContentCache;
+import com.mattordre.summitstore.image.service.ImageContentCache.CachedImage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ImageContentCacheUnitTest {
+
+    @TempDir
+    private Path cacheDirectory;
+
+    private ImageContentCache imageContentCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        imageContentCache = new ImageContentCache(new SimpleMeterRegistry(), true, DataSize.ofKilobytes(1),
+                DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), true, cacheDirectory.resolve("images").toString(),
+                DataSize.ofMegabytes(1), DataSize.ofMegabytes(1));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        imageContentCache.close();
+    }
+
+
+    @Test
+    void getOrLoad_shouldLoadImageOnce_whenImageIsRequestedTwice() throws IOException {
+        // Prepare testing data
+        String fileName = "test-image.png";
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<ResponseInputStream<GetObjectResponse>> loader = () -> {
+            loads.incrementAndGet();
+            return imageStream("image/png", "image-content".getBytes(StandardCharsets.UTF_8));
+        };
+
+        // Execute method under test
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (CachedImage first = imageContentCache.getOrLoad(ImageType.PRODUCT, fileName, loader);
+             CachedImage second = imageContentCache.getOrLoad(ImageType.PRODUCT, fileName, loader)) {
+            second.writeTo(output, 6, 7);
+
+            // Assert results
+            assertEquals(1, loads.get());
+            assertEquals("image/png", first.getContentType());
+            assertEquals(13, second.getContentLength());
+            assertEquals("content", output.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+
+    @Test
+    void writeTo_shouldWriteContent_whenImageIsInvalidatedWhileBeingWritten() throws IOException {
+        // Prepare testing data
+        String fileName = "test-image.png";
+        byte[] content = "image-content".getBytes(StandardCharsets.UTF_8);
+
+        try (CachedImage cachedImage = imageContentCache.getOrLoad(ImageType.PRODUCT, fileName, () -> imageStream("image/png", content))) {
+            // Execute method under test
+            imageContentCache.invalidate(ImageType.PRODUCT, fileName);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            cachedImage.writeTo(output, 0, content.length);
+
+            // Assert results
+            assertEquals("image-content", output.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+
+    @Test
+    void onImageDeleted_shouldInvalidateImage_whenImageIsCached() throws IOException {
+        // Prepare testing data
+        String fileName = "test-image.png";
+        imageContentCache.getOrLoad(ImageType.BRAND, fileName, () -> imageStream(null, new byte[]{1, 2, 3})).close();
+
+        // Execute method under test
+        imageContentCache.onImageDeleted(new ImageDeletedEvent(ImageType.BRAND, fileName));
+
+        // Assert results
+        assertTrue(imageContentCache.getIfPresent(ImageType.BRAND, fileName).isEmpty());
+    }
+
+
+    @Test
+    void close_shouldOnlyDeleteOwnDirectory_whenDiskDirectoryIsShared() throws IOException {
+        // Prepare testing data
+        Path sharedFile = Files.writeString(cacheDirectory.resolve("images").resolve("shared.txt"), "shared");
+        ImageContentCache otherCache = new ImageContentCache(new SimpleMeterRegistry(), true, DataSize.ofKilobytes(1),
+                DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), true, cacheDirectory.resolve("images").toString(),
+                DataSize.ofMegabytes(1), DataSize.ofMegabytes(1));
+
+        // Execute method under test
+        otherCache.close();
+
+        // Assert results
+        assertTrue(Files.exists(sharedFile));
+        try (Stream<Path> instanceDirectories = Files.list(cacheDirectory.resolve("images")).filter(Files::isDirectory)) {
+            assertEquals(1, instanceDirectories.count());
+        }
+    }
+
+
+    @Test
+    void isCacheable_shouldReturnFalse_whenImageIsLargerThanMaxObjectSize() {
+        // Prepare testing data
+        ImageMetadata small = ImageMetadata.builder().contentLength(1024).build();
+        ImageMetadata large = ImageMetadata.builder().contentLength(1025).build();
+
+        // Execute method under test & Assert results
+        assertTrue(imageContentCache.isCacheable(small));
+        assertFalse(imageContentCache.isCacheable(large));
+    }
+
+
+    private ResponseInputStream<GetObjectResponse> imageStream(String contentType, byte[] content) {
+        return new ResponseInputStream<>(GetObjectResponse.builder().contentType(contentType).contentLength((long) content.length).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(content)));
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.config.StorageGuard;
+import com.mattordre.summitstore.image.controller.ImageController;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.repository.ImageRepository;
+import com.mattordre.summitstore.image.service.HedgedImageReader;
+import com.mattordre.summitstore.image.service.ImageBatchUploadService;
+import com.mattordre.summitstore.image.service.ImageContentCache;
+import com.mattordre.summitstore.image.service.ImageDigestIndex;
+import com.mattordre.summitstore.image.service.ImageExistenceIndex;
+import com.mattordre.summitstore.image.service.ImageMetadataCache;
+import com.mattordre.summitstore.image.service.ImagePresignService;
+import com.mattordre.summitstore.image.service.ImageProcessingService;
+import com.mattordre.summitstore.image.service.ImageProcessingStateNotifier;
+import com.mattordre.summitstore.image.service.ImageProcessingStateService;
+import com.mattordre.summitstore.image.service.ImageRenditionService;
+import com.mattordre.summitstore.image.service.ImageService;
+import com.mattordre.summitstore.image.service.ImageStreamWriter;
+import com.mattordre.summitstore.image.service.StreamingImageUploadService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ImageControllerUnitTest {
+
+    private static final byte[] IMAGE_CONTENT = "replica image content".getBytes();
+
+    @Mock
+    private S3ClientRegistry s3ClientRegistry;
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private S3AsyncClient primaryClient;
+
+    @Mock
+    private S3AsyncClient replicaClient;
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageContentCache imageContentCache;
+
+    @Mock
+    private ImageRenditionService imageRenditionService;
+
+    @Mock
+    private ImageExistenceIndex imageExistenceIndex;
+
+    private ImageController imageController;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        when(s3ClientRegistry.getAsyncClient("http://primary:9000")).thenReturn(primaryClient);
+        when(s3ClientRegistry.getAsyncClient("http://replica:9000")).thenReturn(replicaClient);
+
+        StorageGuard storageGuard = new StorageGuard(new SimpleMeterRegistry(), Duration.ofSeconds(2), Duration.ofSeconds(10),
+                Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofSeconds(5), 50, 20, 0.5, Duration.ofSeconds(10), 3, 20, 4, 50,
+                Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ZERO, Duration.ZERO, Duration.ofSeconds(1));
+        HedgedImageReader hedgedImageReader = new HedgedImageReader(s3ClientRegistry, storageGuard, new SimpleMeterRegistry(), "http://primary:9000",
+                "http://replica:9000", 0.95, Duration.ofMillis(1), Duration.ofMillis(10), 0.05, 10);
+        ImageService imageService = new ImageService(s3ClientRegistry, new ImageMetadataCache(Duration.ofSeconds(30), 100, new SimpleMeterRegistry()),
+                mock(ExecutorService.class), mock(ApplicationEventPublisher.class), mock(ImageDigestIndex.class), imageRepository,
+                mock(ImageProcessingStateService.class), storageGuard, hedgedImageReader);
+        imageController = new ImageController(imageService, mock(ImageProcessingService.class), new ImageStreamWriter(8192, 4),
+                imageContentCache, mock(StreamingImageUploadService.class), mock(ImagePresignService.class), mock(ImageBatchUploadService.class),
+                imageRenditionService, imageExistenceIndex, mock(ImageProcessingStateService.class), mock(ImageProcessingStateNotifier.class));
+        ReflectionTestUtils.setField(imageController, "immutableMaxAge", Duration.ofDays(365));
+        ReflectionTestUtils.setField(imageController, "coalesceMaxObjectSize", DataSize.ofMegabytes(10));
+    }
+
+
+    @Test
+    void getImages_shouldStreamReplicaContent_whenPrimaryIsSlow() throws Exception {
+        // Prepare testing data
+        String fileName = "test-image.png";
+        ReflectionTestUtils.setField(imageController, "coalesceMaxObjectSize", DataSize.ofBytes(0));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/image/" + fileName);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> primaryResponse = new CompletableFuture<>();
+        GetObjectResponse object = GetObjectResponse.builder()
+                .contentType("image/png")
+                .contentLength((long) IMAGE_CONTENT.length)
+                .build();
+
+        // Setup mocks
+        when(imageExistenceIndex.mightExist(ImageType.PRODUCT, fileName)).thenReturn(true);
+        when(imageRepository.findMetadataByFileName(fileName)).thenReturn(Optional.empty());
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .contentType("image/png")
+                .contentLength((long) IMAGE_CONTENT.length)
+                .eTag("\"etag\"")
+                .lastModified(Instant.now())
+                .build());
+        doReturn(primaryResponse).when(primaryClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+        doReturn(CompletableFuture.completedFuture(new ResponseInputStream<>(object, AbortableInputStream.create(new ByteArrayInputStream(IMAGE_CONTENT)))))
+                .when(replicaClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+
+        // Execute method under test
+        imageController.getImages(fileName, ImageType.PRODUCT, null, null, null, null, null, null,
+                new ServletWebRequest(request, response), response);
+
+        // Assert results
+        assertEquals(200, response.getStatus());
+        assertEquals("image/png", response.getContentType());
+        assertArrayEquals(IMAGE_CONTENT, response.getContentAsByteArray());
+        assertTrue(primaryResponse.isCancelled());
+        verify(s3Client, never()).getObject(any(GetObjectRequest.class));
+        verify(imageContentCache, never()).getOrLoad(any(), anyString(), any());
+    }
+
+
+    @Test
+    void getImages_shouldShareDownload_whenConcurrentRequestsAreNotCacheable() throws Exception {
+        // Prepare testing data
+        String fileName = "test-image.png";
+        CompletableFuture<ResponseInputStream<GetObjectResponse>> primaryResponse = new CompletableFuture<>();
+        GetObjectResponse object = GetObjectResponse.builder()
+                .contentType("image/png")
+                .contentLength((long) IMAGE_CONTENT.length)
+                .build();
+        List<MockHttpServletResponse> responses = List.of(new MockHttpServletResponse(), new MockHttpServletResponse());
+
+        // Setup mocks
+        when(imageExistenceIndex.mightExist(ImageType.PRODUCT, fileName)).thenReturn(true);
+        when(imageRepository.findMetadataByFileName(fileName)).thenReturn(Optional.empty());
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+                .contentType("image/png")
+                .contentLength((long) IMAGE_CONTENT.length)
+                .eTag("\"etag\"")
+                .lastModified(Instant.now())
+                .build());
+        doReturn(primaryResponse).when(primaryClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+        doReturn(new CompletableFuture<>()).when(replicaClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+
+        // Execute method under test
+        List<Thread> requests = new ArrayList<>();
+        for (MockHttpServletResponse response : responses) {
+            Thread thread = new Thread(() -> {
+                try {
+                    imageController.getImages(fileName, ImageType.PRODUCT, null, null, null, null, null, null,
+                            new ServletWebRequest(new MockHttpServletRequest("GET", "/api/image/" + fileName), response), response);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            requests.add(thread);
+        }
+        waitUntil(() -> requests.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING));
+        primaryResponse.complete(new ResponseInputStream<>(object, AbortableInputStream.create(new ByteArrayInputStream(IMAGE_CONTENT))));
+        for (Thread thread : requests) {
+            thread.join();
+        }
+
+        // Assert results
+        for (MockHttpServletResponse response : responses) {
+            assertEquals(200, response.getStatus());
+            assertArrayEquals(IMAGE_CONTENT, response.getContentAsByteArray());
+        }
+        verify(primaryClient, times(1)).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+        verify(imageContentCache, never()).getOrLoad(any(), anyString(), any());
+    }
+
+
+    private void waitUntil(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.config.rabbitMQ.ImageUploadedMessage;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQConfig;
+import com.mattordre.summitstore.image.event.ImageUploadedEvent;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.service.ImageExistenceIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class ImageExistenceIndexUnitTest {
+
+    private ImageExistenceIndex imageExistenceIndex;
+
+    @Mock
+    private S3ClientRegistry s3ClientRegistry;
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        imageExistenceIndex = new ImageExistenceIndex(s3ClientRegistry, rabbitTemplate, new SimpleMeterRegistry(), true, 0.01, 1000);
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        when(s3Client.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+                .thenAnswer(invocation -> new ListObjectsV2Iterable(s3Client, invocation.getArgument(0)));
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(ListObjectsV2Response.builder()
+                .contents(S3Object.builder().key("stored-image.png").build())
+                .isTruncated(false)
+                .build());
+    }
+
+
+    @Test
+    void mightExist_shouldReturnFalse_whenImageIsNotListed() {
+        // Execute method under test
+        imageExistenceIndex.rebuild();
+
+        // Assert results
+        assertTrue(imageExistenceIndex.mightExist(ImageType.PRODUCT, "stored-image.png"));
+        assertFalse(imageExistenceIndex.mightExist(ImageType.PRODUCT, "unknown-image.png"));
+    }
+
+
+    @Test
+    void mightExist_shouldReturnTrue_whenImageIsUploadedAfterRebuild() {
+        // Prepare testing data
+        imageExistenceIndex.rebuild();
+
+        // Execute method under test
+        imageExistenceIndex.onImageUploaded(new ImageUploadedEvent(ImageType.PRODUCT, "new-image.png"));
+
+        // Assert results
+        assertTrue(imageExistenceIndex.mightExist(ImageType.PRODUCT, "new-image.png"));
+    }
+
+
+    @Test
+    void mightExist_shouldReturnTrue_whenIndexIsNotBuilt() {
+        // Execute method under test & Assert results
+        assertTrue(imageExistenceIndex.mightExist(ImageType.PRODUCT, "unknown-image.png"));
+        verifyNoInteractions(s3Client);
+    }
+
+
+
+    @Test
+    void onImageUploaded_shouldBroadcastUpload_whenIndexIsEnabled() {
+        // Execute method under test
+        imageExistenceIndex.onImageUploaded(new ImageUploadedEvent(ImageType.PRODUCT, "new-image.png"));
+
+        // Assert results
+        ArgumentCaptor<ImageUploadedMessage> message = ArgumentCaptor.forClass(ImageUploadedMessage.class);
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.IMAGE_UPLOADED_EXCHANGE), eq(""), message.capture());
+        assertEquals("new-image.png", message.getValue().getFileName());
+        assertEquals(ImageType.PRODUCT, message.getValue().getImageType());
+    }
+
+
+    @Test
+    void mightExist_shouldReturnTrue_whenImageIsUploadedByAnotherInstance() {
+        // Prepare testing data
+        imageExistenceIndex.rebuild();
+
+        // Execute method under test
+        imageExistenceIndex.onImageUploadedBroadcast(new ImageUploadedMessage("other-image.png", ImageType.PRODUCT));
+
+        // Assert results
+        assertTrue(imageExistenceIndex.mightExist(ImageType.PRODUCT, "other-image.png"));
+        assertFalse(imageExistenceIndex.mightExist(ImageType.BRAND, "other-image.png"));
+    }
+
+}
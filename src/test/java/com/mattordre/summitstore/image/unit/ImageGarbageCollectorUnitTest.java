@@ -0,0 +1,117 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.image.event.ImageDeletedEvent;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.repository.ImageDigestRepository;
+import com.mattordre.summitstore.image.repository.ImageRepository;
+import com.mattordre.summitstore.image.service.ImageGarbageCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ImageGarbageCollectorUnitTest {
+
+    @Mock
+    private S3ClientRegistry s3ClientRegistry;
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageDigestRepository imageDigestRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Instant old = Instant.now().minus(Duration.ofDays(2));
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        when(s3Client.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+                .thenAnswer(invocation -> new ListObjectsV2Iterable(s3Client, invocation.getArgument(0)));
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(ListObjectsV2Response.builder()
+                .contents(
+                        S3Object.builder().key("referenced.png").lastModified(old).build(),
+                        S3Object.builder().key("orphan.png").lastModified(old).build(),
+                        S3Object.builder().key("recent.png").lastModified(Instant.now()).build(),
+                        S3Object.builder().key("reused.png").lastModified(old).build(),
+                        S3Object.builder().key("renditions/orphan.png/w160-hauto.png").lastModified(old).build()
+                )
+                .isTruncated(false)
+                .build());
+        when(imageRepository.findReferencedFileNames(anyString(), anyCollection())).thenReturn(List.of("referenced.png"));
+        when(imageDigestRepository.findFileNamesUsedSince(anyString(), anyCollection(), any())).thenReturn(List.of("reused.png"));
+    }
+
+
+    @Test
+    void collect_shouldOnlyDeleteOrphansNotCreatedOrReusedWithinGracePeriod() {
+        // Prepare testing data
+        ImageGarbageCollector imageGarbageCollector = newImageGarbageCollector(false);
+
+        // Setup mocks
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder()
+                .deleted(DeletedObject.builder().key("orphan.png").build())
+                .build());
+
+        // Execute method under test
+        imageGarbageCollector.collect();
+
+        // Assert results
+        ArgumentCaptor<DeleteObjectsRequest> request = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3Client, times(ImageType.values().length)).deleteObjects(request.capture());
+        assertEquals(List.of("orphan.png"), request.getValue().delete().objects().stream().map(ObjectIdentifier::key).toList());
+        verify(imageDigestRepository).deleteByFileNames(eq(ImageType.PRODUCT.getBucketName()), eq(List.of("orphan.png")));
+        verify(eventPublisher).publishEvent(new ImageDeletedEvent(ImageType.PRODUCT, "orphan.png"));
+    }
+
+
+    @Test
+    void collect_shouldNotDeleteOrphans_whenDryRun() {
+        // Prepare testing data
+        ImageGarbageCollector imageGarbageCollector = newImageGarbageCollector(true);
+
+        // Execute method under test
+        imageGarbageCollector.collect();
+
+        // Assert results
+        verify(s3Client, never()).deleteObjects(any(DeleteObjectsRequest.class));
+        verify(imageDigestRepository, never()).deleteByFileNames(any(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+
+    private ImageGarbageCollector newImageGarbageCollector(boolean dryRun) {
+        return new ImageGarbageCollector(s3ClientRegistry, imageRepository, imageDigestRepository, eventPublisher,
+                new SimpleMeterRegistry(), true, dryRun, Duration.ofHours(24), 1000, 1000, 1000);
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.exception.InvalidArgumentException;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.exception.ImageTooLargeException;
+import com.mattordre.summitstore.image.dto.PresignUploadDTO;
+import com.mattordre.summitstore.image.exception.ImageNotFoundException;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.model.PendingUpload;
+import com.mattordre.summitstore.image.repository.ImageRepository;
+import com.mattordre.summitstore.image.repository.PendingUploadRepository;
+import com.mattordre.summitstore.image.service.ImagePresignService;
+import com.mattordre.summitstore.image.service.ImageProcessingService;
+import com.mattordre.summitstore.image.service.ImageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.http.SdkHttpRequest;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ImagePresignServiceUnitTest {
+
+    private static final String FILE_NAME = "00000000-0000-0000-0000-000000000000-test-image.png";
+
+    @InjectMocks
+    private ImagePresignService imagePresignService;
+
+    @Mock
+    private S3ClientRegistry s3ClientRegistry;
+
+    @Mock
+    private ImageService imageService;
+
+    @Mock
+    private ImageProcessingService imageProcessingService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PendingUploadRepository pendingUploadRepository;
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(imagePresignService, "maxSize", DataSize.ofMegabytes(10));
+        ReflectionTestUtils.setField(imagePresignService, "uploadTtl", Duration.ofMinutes(5));
+        when(pendingUploadRepository.markCommitted(eq(ImageType.PRODUCT.getBucketName()), eq(FILE_NAME), any())).thenReturn(1);
+    }
+
+
+    @Test
+    void presignUpload_shouldSignPendingFileNameAndRecordUpload_whenImageIsRequested() throws Exception {
+        // Prepare testing data
+        PresignUploadDTO presignUploadDTO = PresignUploadDTO.builder()
+                .fileName("test-image.png")
+                .contentType("image/png")
+                .type(ImageType.PRODUCT)
+                .build();
+        S3Presigner presigner = mock(S3Presigner.class);
+        PresignedPutObjectRequest presignedRequest = mock(PresignedPutObjectRequest.class);
+
+        // Setup mocks
+        when(s3ClientRegistry.getPresigner()).thenReturn(presigner);
+        when(presigner.presignPutObject(any(PutObjectPresignRequest.class))).thenReturn(presignedRequest);
+        when(presignedRequest.signedHeaders()).thenReturn(Map.of("Content-Type", List.of("image/png")));
+        when(presignedRequest.httpRequest()).thenReturn(SdkHttpRequest.builder().method(SdkHttpMethod.PUT).uri(URI.create("http://localhost:9000")).build());
+        when(presignedRequest.url()).thenReturn(URI.create("http://localhost:9000/products/upload").toURL());
+        when(presignedRequest.expiration()).thenReturn(Instant.now().plus(Duration.ofMinutes(5)));
+
+        // Execute method under test
+        String fileName = imagePresignService.presignUpload(presignUploadDTO).getFileName();
+
+        // Assert results
+        ArgumentCaptor<PutObjectPresignRequest> presignRequest = ArgumentCaptor.forClass(PutObjectPresignRequest.class);
+        verify(presigner).presignPutObject(presignRequest.capture());
+        assertEquals(ImagePresignService.PENDING_UPLOAD_PREFIX + fileName, presignRequest.getValue().putObjectRequest().key());
+        ArgumentCaptor<PendingUpload> pendingUpload = ArgumentCaptor.forClass(PendingUpload.class);
+        verify(pendingUploadRepository).save(pendingUpload.capture());
+        assertEquals(fileName, pendingUpload.getValue().getFileName());
+        assertEquals(ImageType.PRODUCT.getBucketName(), pendingUpload.getValue().getBucketName());
+        assertNull(pendingUpload.getValue().getCommittedAt());
+    }
+
+
+    @Test
+    void commitImage_shouldCopyPendingObjectAndRequestProcessing_whenImageIsValid() {
+        // Setup mocks
+        when(imageService.getImageMetadata(ImageType.PRODUCT, FILE_NAME)).thenReturn(ImageMetadata.builder().contentLength(1024).build());
+        when(imageService.getImageStreamByName(ImageType.PRODUCT, FILE_NAME, 0, 7)).thenReturn(imageStream(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0, 0, 0, 0, 0}));
+
+        // Execute method under test
+        String result = imagePresignService.commitImage(ImageType.PRODUCT, FILE_NAME);
+
+        // Assert results
+        assertEquals(FILE_NAME, result);
+        verify(imageService).copyImage(ImageType.PRODUCT, ImagePresignService.PENDING_UPLOAD_PREFIX + FILE_NAME, FILE_NAME);
+        verify(imageService).deleteImage(ImageType.PRODUCT, ImagePresignService.PENDING_UPLOAD_PREFIX + FILE_NAME);
+        verify(imageService, never()).deleteImage(ImageType.PRODUCT, FILE_NAME);
+        verify(imageProcessingService).processImageBackground(FILE_NAME, ImageType.PRODUCT);
+    }
+
+
+    @Test
+    void commitImage_shouldDeleteImage_whenImageIsTooLarge() {
+        // Setup mocks
+        when(imageService.getImageMetadata(ImageType.PRODUCT, FILE_NAME)).thenReturn(ImageMetadata.builder().contentLength(11 * 1024 * 1024).build());
+
+        // Execute method under test & Assert results
+        assertThrows(ImageTooLargeException.class, () -> imagePresignService.commitImage(ImageType.PRODUCT, FILE_NAME));
+        verify(imageService).deleteImage(ImageType.PRODUCT, FILE_NAME);
+        verifyNoInteractions(imageProcessingService);
+    }
+
+
+    @Test
+    void commitImage_shouldDeleteImage_whenContentIsNotAnImage() {
+        // Setup mocks
+        when(imageService.getImageMetadata(ImageType.PRODUCT, FILE_NAME)).thenReturn(ImageMetadata.builder().contentLength(4).build());
+        when(imageService.getImageStreamByName(ImageType.PRODUCT, FILE_NAME, 0, 3)).thenReturn(imageStream("text".getBytes()));
+
+        // Execute method under test & Assert results
+        assertThrows(InvalidArgumentException.class, () -> imagePresignService.commitImage(ImageType.PRODUCT, FILE_NAME));
+        verify(imageService).deleteImage(ImageType.PRODUCT, FILE_NAME);
+        verifyNoInteractions(imageProcessingService);
+    }
+
+
+    @Test
+    void commitImage_shouldKeepImage_whenInvalidImageIsReferencedMeanwhile() {
+        // Setup mocks
+        when(imageRepository.existsById(FILE_NAME)).thenReturn(false, true);
+        when(imageService.getImageMetadata(ImageType.PRODUCT, FILE_NAME)).thenReturn(ImageMetadata.builder().contentLength(11 * 1024 * 1024).build());
+
+        // Execute method under test & Assert results
+        assertThrows(ImageTooLargeException.class, () -> imagePresignService.commitImage(ImageType.PRODUCT, FILE_NAME));
+        verify(imageService, never()).deleteImage(ImageType.PRODUCT, FILE_NAME);
+    }
+
+
+    @Test
+    void commitImage_shouldThrowInvalidArgumentException_whenUploadIsNotPending() {
+        // Setup mocks
+        when(pendingUploadRepository.markCommitted(eq(ImageType.PRODUCT.getBucketName()), eq(FILE_NAME), any())).thenReturn(0);
+
+        // Execute method under test & Assert results
+        assertThrows(InvalidArgumentException.class, () -> imagePresignService.commitImage(ImageType.PRODUCT, FILE_NAME));
+        verify(imageService, never()).copyImage(any(), any(), any());
+        verify(imageService, never()).deleteImage(any(), any());
+        verifyNoInteractions(imageProcessingService);
+    }
+
+
+    @Test
+    void commitImage_shouldThrowInvalidArgumentException_whenImageIsReferenced() {
+        // Setup mocks
+        when(imageRepository.existsById(FILE_NAME)).thenReturn(true);
+
+        // Execute method under test & Assert results
+        assertThrows(InvalidArgumentException.class, () -> imagePresignService.commitImage(ImageType.PRODUCT, FILE_NAME));
+        verify(pendingUploadRepository, never()).markCommitted(any(), any(), any());
+        verify(imageService, never()).deleteImage(any(), any());
+        verifyNoInteractions(imageProcessingService);
+    }
+
+
+    @Test
+    void commitImage_shouldKeepUploadPending_whenImageIsNotUploaded() {
+        // Setup mocks
+        doThrow(new ImageNotFoundException("Image not found")).when(imageService).copyImage(ImageType.PRODUCT, ImagePresignService.PENDING_UPLOAD_PREFIX + FILE_NAME, FILE_NAME);
+
+        // Execute method under test & Assert results
+        assertThrows(ImageNotFoundException.class, () -> imagePresignService.commitImage(ImageType.PRODUCT, FILE_NAME));
+        verify(pendingUploadRepository).markPending(ImageType.PRODUCT.getBucketName(), FILE_NAME);
+        verifyNoInteractions(imageProcessingService);
+    }
+
+
+    private ResponseInputStream<GetObjectResponse> imageStream(byte[] content) {
+        return new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream(content)));
+    }
+
+}
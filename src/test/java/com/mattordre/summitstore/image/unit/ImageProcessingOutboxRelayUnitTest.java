@@ -0,0 +1,139 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.rabbitMQ.BatchingRabbitMQPublisher;
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingMessage;
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingRouter;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQConfig;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQSender;
+import com.mattordre.summitstore.image.model.OutboxMessage;
+import com.mattordre.summitstore.image.repository.OutboxMessageRepository;
+import com.mattordre.summitstore.image.service.ImageProcessingOutboxRelay;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ImageProcessingOutboxRelayUnitTest {
+
+    private ImageProcessingOutboxRelay imageProcessingOutboxRelay;
+
+    @Mock
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Mock
+    private BatchingRabbitMQPublisher batchingRabbitMQPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        imageProcessingOutboxRelay = new ImageProcessingOutboxRelay(outboxMessageRepository, batchingRabbitMQPublisher,
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry(), 2, Duration.ofSeconds(5));
+    }
+
+
+    @Test
+    void relay_shouldDeletePublishedMessages_whenOutboxIsDrained() {
+        // Prepare testing data
+        List<OutboxMessage> firstBatch = List.of(outboxMessage(1L, "first.png"), outboxMessage(2L, "second.png"));
+        List<OutboxMessage> lastBatch = List.of(outboxMessage(3L, "third.png"));
+
+        // Setup mocks
+        when(outboxMessageRepository.lockOldest(2)).thenReturn(firstBatch, lastBatch);
+        when(batchingRabbitMQPublisher.publish(eq("image.processing.background"), any(ImageProcessingMessage.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // Execute method under test
+        imageProcessingOutboxRelay.relay();
+
+        // Assert results
+        verify(batchingRabbitMQPublisher, times(3)).publish(eq("image.processing.background"), any(ImageProcessingMessage.class));
+        verify(outboxMessageRepository).deleteByIds(List.of(1L, 2L));
+        verify(outboxMessageRepository).deleteByIds(List.of(3L));
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+
+    @Test
+    void relay_shouldKeepMessages_whenPublishFails() {
+        // Setup mocks
+        when(outboxMessageRepository.lockOldest(2)).thenReturn(List.of(outboxMessage(1L, "image.png")));
+        when(batchingRabbitMQPublisher.publish(eq("image.processing.background"), any(ImageProcessingMessage.class)))
+                .thenReturn(CompletableFuture.failedFuture(new AmqpConnectException(new RuntimeException("Broker unavailable"))));
+
+        // Execute method under test
+        imageProcessingOutboxRelay.relay();
+
+        // Assert results
+        verify(outboxMessageRepository, never()).deleteByIds(anyCollection());
+        verify(transactionManager).rollback(any());
+    }
+
+
+    @Test
+    void relay_shouldCancelSenderRetries_whenPublishTimesOut() throws Exception {
+        // Prepare testing data
+        RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+        RabbitOperations rabbitOperations = mock(RabbitOperations.class);
+        // Each attempt waits 200ms for a confirm and is retried 3 times, far beyond the 100ms publish timeout
+        RabbitMQSender rabbitMQSender = new RabbitMQSender(rabbitTemplate, new ImageProcessingRouter(1, false, 5, 0, 0, List.of(RabbitMQConfig.PROCESSING_QUEUE)), new SimpleMeterRegistry(),
+                1, Duration.ofMillis(50), Duration.ofMillis(200), 4, Duration.ofMillis(1), Duration.ofMillis(10));
+        BatchingRabbitMQPublisher publisher = new BatchingRabbitMQPublisher(rabbitMQSender, new SimpleMeterRegistry(), 1, Duration.ofMillis(10), 100);
+        ImageProcessingOutboxRelay relay = new ImageProcessingOutboxRelay(outboxMessageRepository, publisher,
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry(), 2, Duration.ofMillis(100));
+
+        // Setup mocks
+        when(outboxMessageRepository.lockOldest(2)).thenReturn(List.of(outboxMessage(1L, "image.png")), List.of());
+        when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class)))
+                .thenAnswer(invocation -> invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(rabbitOperations));
+
+        try {
+            // Execute method under test
+            relay.relay();
+
+            // Assert results
+            verify(outboxMessageRepository, never()).deleteByIds(anyCollection());
+            verify(transactionManager).rollback(any());
+            verify(rabbitTemplate, after(500).never()).convertAndSend(anyString(), anyString(), any(Object.class), any(MessagePostProcessor.class), any(CorrelationData.class));
+            verify(rabbitOperations, times(1)).convertAndSend(anyString(), anyString(), any(Object.class), any(MessagePostProcessor.class), any(CorrelationData.class));
+            // The slot of the message is free again, so the next run can publish it
+            rabbitMQSender.send(RabbitMQConfig.PROCESSING_QUEUE, ImageProcessingMessage.builder().fileName("image.png").build());
+        } finally {
+            publisher.close();
+            rabbitMQSender.close();
+        }
+    }
+
+
+    private OutboxMessage outboxMessage(Long id, String fileName) {
+        return OutboxMessage.builder()
+                .id(id)
+                .queueName("image.processing.background")
+                .bucketName("product-images")
+                .fileName(fileName)
+                .createdAt(Instant.now())
+                .build();
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingMessage;
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingRouter;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQConfig;
+import com.mattordre.summitstore.image.model.ImageType;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageProcessingRouterUnitTest {
+
+    @Test
+    void route_shouldRouteToConsumerQueueWithoutPriority_whenPrioritiesAreDisabled() {
+        // Prepare testing data
+        ImageProcessingRouter router = new ImageProcessingRouter(1, false, 5, 5, 1, List.of(RabbitMQConfig.PROCESSING_QUEUE));
+
+        // Execute method under test
+        ImageProcessingRouter.Route route = router.route(RabbitMQConfig.PROCESSING_QUEUE, message(ImageType.BRAND, "logo.png"));
+        Declarables declarables = new RabbitMQConfig().imageProcessingDeclarables(router);
+
+        // Assert results
+        assertEquals("", route.exchange());
+        assertEquals(RabbitMQConfig.PROCESSING_QUEUE, route.routingKey());
+        assertNull(route.priority());
+        // The queue is declared by the processing service, redeclaring it with other arguments would fail
+        assertTrue(declarables.getDeclarables().isEmpty());
+    }
+
+
+    @Test
+    void route_shouldSetPriorityOfImageType_whenPrioritiesAreEnabled() {
+        // Prepare testing data
+        ImageProcessingRouter router = new ImageProcessingRouter(1, true, 5, 9, 1,
+                List.of(RabbitMQConfig.PROCESSING_QUEUE, RabbitMQConfig.PROCESSING_PRIORITY_QUEUE));
+
+        // Execute method under test
+        ImageProcessingRouter.Route brandRoute = router.route(RabbitMQConfig.PROCESSING_QUEUE, message(ImageType.BRAND, "logo.png"));
+        ImageProcessingRouter.Route productRoute = router.route(RabbitMQConfig.PROCESSING_QUEUE, message(ImageType.PRODUCT, "product.png"));
+        Declarables declarables = new RabbitMQConfig().imageProcessingDeclarables(router);
+
+        // Assert results
+        assertEquals("", brandRoute.exchange());
+        assertEquals(RabbitMQConfig.PROCESSING_PRIORITY_QUEUE, brandRoute.routingKey());
+        // Priorities are capped to the maximum priority of the queues
+        assertEquals(5, brandRoute.priority());
+        assertEquals(1, productRoute.priority());
+        Message processed = brandRoute.postProcessor().postProcessMessage(new Message(new byte[0], new MessageProperties()));
+        assertEquals(5, processed.getMessageProperties().getPriority());
+        List<Queue> queues = declarables.getDeclarablesByType(Queue.class);
+        assertEquals(1, queues.size());
+        assertEquals(RabbitMQConfig.PROCESSING_PRIORITY_QUEUE, queues.getFirst().getName());
+        assertEquals(5, queues.getFirst().getArguments().get("x-max-priority"));
+    }
+
+
+    @Test
+    void route_shouldRouteByFileName_whenProcessingIsSharded() {
+        // Prepare testing data
+        List<String> shardQueues = List.of("image.processing.shard.0", "image.processing.shard.1");
+        ImageProcessingRouter router = new ImageProcessingRouter(2, false, 5, 5, 1, shardQueues);
+
+        // Execute method under test
+        ImageProcessingRouter.Route route = router.route(RabbitMQConfig.PROCESSING_QUEUE, message(ImageType.PRODUCT, "product.png"));
+        Declarables declarables = new RabbitMQConfig().imageProcessingDeclarables(router);
+
+        // Assert results
+        assertEquals(RabbitMQConfig.PROCESSING_SHARDED_EXCHANGE, route.exchange());
+        assertEquals("product.png", route.routingKey());
+        assertNull(route.priority());
+        assertEquals(shardQueues, router.getQueueNames());
+        List<Queue> queues = declarables.getDeclarablesByType(Queue.class);
+        assertEquals(shardQueues, queues.stream().map(Queue::getName).toList());
+        assertTrue(queues.stream().noneMatch(queue -> queue.getArguments().containsKey("x-max-priority")));
+    }
+
+
+    @Test
+    void constructor_shouldThrowIllegalStateException_whenShardQueueHasNoConsumer() {
+        // Execute method under test & Assert results
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> new ImageProcessingRouter(3, false, 5, 5, 1, List.of("image.processing.shard.0", "image.processing.shard.1")));
+        assertTrue(exception.getMessage().contains("image.processing.shard.2"));
+    }
+
+
+    @Test
+    void constructor_shouldThrowIllegalStateException_whenPriorityQueueHasNoConsumer() {
+        // Execute method under test & Assert results
+        assertThrows(IllegalStateException.class,
+                () -> new ImageProcessingRouter(1, true, 5, 5, 1, List.of(RabbitMQConfig.PROCESSING_QUEUE)));
+    }
+
+
+    @Test
+    void route_shouldUseDefaultExchange_whenMessageIsForAnotherQueue() {
+        // Prepare testing data
+        ImageProcessingRouter router = new ImageProcessingRouter(1, true, 5, 5, 1, List.of(RabbitMQConfig.PROCESSING_PRIORITY_QUEUE));
+
+        // Execute method under test
+        ImageProcessingRouter.Route route = router.route("other.queue", message(ImageType.BRAND, "logo.png"));
+
+        // Assert results
+        assertEquals("", route.exchange());
+        assertEquals("other.queue", route.routingKey());
+        assertNull(route.priority());
+    }
+
+
+    private ImageProcessingMessage message(ImageType imageType, String fileName) {
+        return ImageProcessingMessage.builder()
+                .fileName(fileName)
+                .bucketName(imageType.getBucketName())
+                .build();
+    }
+
+}
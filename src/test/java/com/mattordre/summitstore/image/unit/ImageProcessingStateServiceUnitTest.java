@@ -0,0 +1,291 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingCompletedMessage;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQConfig;
+import com.mattordre.summitstore.image.model.ImageProcessingCompletion;
+import com.mattordre.summitstore.image.model.ImageProcessingState;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.repository.ImageProcessingCompletionRepository;
+import com.mattordre.summitstore.image.repository.ImageRepository;
+import com.mattordre.summitstore.image.service.ImageProcessingStateService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ImageProcessingStateServiceUnitTest {
+
+    private static final String BUCKET_NAME = ImageType.PRODUCT.getBucketName();
+
+    private static final Duration UNMATCHED_RETENTION = Duration.ofHours(24);
+
+    private ImageProcessingStateService imageProcessingStateService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageProcessingCompletionRepository completionRepository;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        imageProcessingStateService = new ImageProcessingStateService(imageRepository, completionRepository, rabbitTemplate,
+                meterRegistry, UNMATCHED_RETENTION);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+
+    @Test
+    void onProcessingCompleted_shouldUpdateStatesInBatch_whenImagesAreReferenced() {
+        // Prepare testing data
+        Instant requestedAt = Instant.now().minusSeconds(2);
+        List<ImageProcessingCompletedMessage> messages = List.of(
+                new ImageProcessingCompletedMessage("first.png", BUCKET_NAME, ImageProcessingState.PROCESSED, requestedAt),
+                new ImageProcessingCompletedMessage("second.png", BUCKET_NAME, ImageProcessingState.PROCESSED, requestedAt)
+        );
+
+        // Setup mocks
+        when(imageRepository.findReferencedFileNames(eq(BUCKET_NAME), anyCollection())).thenReturn(List.of("first.png", "second.png"));
+
+        // Execute method under test
+        imageProcessingStateService.onProcessingCompleted(messages);
+
+        // Assert results
+        verify(imageRepository).updateProcessingState(eq(List.of("first.png", "second.png")), eq(ImageProcessingState.PROCESSED), any(Instant.class));
+        verifyNoInteractions(completionRepository);
+        assertEquals(2, meterRegistry.get("image.processing.latency").tag("state", "processed").timer().count());
+    }
+
+
+    @Test
+    void onProcessingCompleted_shouldBroadcastOnlyAfterCommit_whenTransactionIsActive() {
+        // Prepare testing data
+        List<ImageProcessingCompletedMessage> messages = List.of(
+                new ImageProcessingCompletedMessage("first.png", BUCKET_NAME, ImageProcessingState.PROCESSED, null)
+        );
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Setup mocks
+        when(imageRepository.findReferencedFileNames(eq(BUCKET_NAME), anyCollection())).thenReturn(List.of("first.png"));
+
+        // Execute method under test
+        imageProcessingStateService.onProcessingCompleted(messages);
+
+        // Assert results
+        verifyNoInteractions(rabbitTemplate);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(rabbitTemplate).convertAndSend(RabbitMQConfig.PROCESSING_STATE_EXCHANGE, "", messages.getFirst());
+    }
+
+
+    @Test
+    void onProcessingCompleted_shouldNotBroadcast_whenTransactionRollsBack() {
+        // Prepare testing data
+        List<ImageProcessingCompletedMessage> messages = List.of(
+                new ImageProcessingCompletedMessage("first.png", BUCKET_NAME, ImageProcessingState.PROCESSED, null)
+        );
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Setup mocks
+        when(imageRepository.findReferencedFileNames(eq(BUCKET_NAME), anyCollection())).thenReturn(List.of("first.png"));
+
+        // Execute method under test
+        imageProcessingStateService.onProcessingCompleted(messages);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // Assert results
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+
+    @Test
+    void onProcessingCompleted_shouldPersistCompletion_whenImageIsNotReferencedYet() {
+        // Prepare testing data
+        List<ImageProcessingCompletedMessage> messages = List.of(
+                new ImageProcessingCompletedMessage("new.png", BUCKET_NAME, ImageProcessingState.FAILED, null)
+        );
+
+        // Setup mocks
+        when(imageRepository.findReferencedFileNames(eq(BUCKET_NAME), anyCollection())).thenReturn(List.of());
+
+        // Execute method under test
+        imageProcessingStateService.onProcessingCompleted(messages);
+
+        // Assert results
+        verify(completionRepository).upsert(eq("new.png"), eq(BUCKET_NAME), eq("FAILED"), any(Instant.class));
+        verify(imageRepository, never()).updateProcessingState(anyCollection(), any(), any());
+        assertEquals(1.0, meterRegistry.get("image.processing.state.unmatched").counter().count());
+    }
+
+
+    @Test
+    void applyCompletions_shouldApplyAndRemoveStoredCompletions_whenImagesAreReferenced() {
+        // Prepare testing data
+        List<String> fileNames = List.of("new.png");
+
+        // Setup mocks
+        when(completionRepository.applyToImages(fileNames)).thenReturn(1);
+
+        // Execute method under test
+        imageProcessingStateService.applyCompletions(fileNames);
+
+        // Assert results
+        verify(completionRepository).deleteAllByIdInBatch(fileNames);
+    }
+
+
+    @Test
+    void applyStoredCompletions_shouldDropCompletions_whenPastRetention() {
+        // Setup mocks
+        when(completionRepository.applyAllToImages()).thenReturn(0);
+        when(completionRepository.deleteCompletedBefore(any(Instant.class))).thenReturn(3);
+
+        // Execute method under test
+        Instant before = Instant.now();
+        imageProcessingStateService.applyStoredCompletions();
+        Instant after = Instant.now();
+
+        // Assert results
+        ArgumentCaptor<Instant> expiry = ArgumentCaptor.forClass(Instant.class);
+        verify(completionRepository).deleteCompletedBefore(expiry.capture());
+        assertFalse(expiry.getValue().isBefore(before.minus(UNMATCHED_RETENTION)));
+        assertFalse(expiry.getValue().isAfter(after.minus(UNMATCHED_RETENTION)));
+        verify(completionRepository, never()).deleteApplied();
+    }
+
+
+    @Test
+    void applyStoredCompletions_shouldRemoveAppliedCompletions_whenImagesWereReferenced() {
+        // Setup mocks
+        when(completionRepository.applyAllToImages()).thenReturn(2);
+
+        // Execute method under test
+        imageProcessingStateService.applyStoredCompletions();
+
+        // Assert results
+        verify(completionRepository).deleteApplied();
+    }
+
+
+    @Test
+    void inheritState_shouldStoreSourceState_whenSourceIsProcessed() {
+        // Setup mocks
+        when(imageRepository.findProcessingStateByFileName("source.png")).thenReturn(Optional.of(ImageProcessingState.PROCESSED));
+
+        // Execute method under test
+        boolean inherited = imageProcessingStateService.inheritState(ImageType.PRODUCT, "source.png", "copy.png");
+
+        // Assert results
+        assertTrue(inherited);
+        verify(completionRepository).upsert(eq("copy.png"), eq(BUCKET_NAME), eq("PROCESSED"), any(Instant.class));
+    }
+
+
+    @Test
+    void inheritState_shouldStoreSourceCompletion_whenSourceIsNotReferenced() {
+        // Prepare testing data
+        Instant completedAt = Instant.now().minusSeconds(60);
+        ImageProcessingCompletion completion = ImageProcessingCompletion.builder()
+                .fileName("source.png")
+                .bucketName(BUCKET_NAME)
+                .state(ImageProcessingState.FAILED)
+                .completedAt(completedAt)
+                .build();
+
+        // Setup mocks
+        when(imageRepository.findProcessingStateByFileName("source.png")).thenReturn(Optional.empty());
+        when(completionRepository.findById("source.png")).thenReturn(Optional.of(completion));
+
+        // Execute method under test
+        boolean inherited = imageProcessingStateService.inheritState(ImageType.PRODUCT, "source.png", "copy.png");
+
+        // Assert results
+        assertTrue(inherited);
+        verify(completionRepository).upsert("copy.png", BUCKET_NAME, "FAILED", completedAt);
+    }
+
+
+    @Test
+    void inheritState_shouldReturnFalse_whenSourceIsStillPending() {
+        // Setup mocks
+        when(imageRepository.findProcessingStateByFileName("source.png")).thenReturn(Optional.of(ImageProcessingState.PENDING));
+        when(completionRepository.findById("source.png")).thenReturn(Optional.empty());
+
+        // Execute method under test
+        boolean inherited = imageProcessingStateService.inheritState(ImageType.PRODUCT, "source.png", "copy.png");
+
+        // Assert results
+        assertFalse(inherited);
+        verify(completionRepository, never()).upsert(any(), any(), any(), any());
+    }
+
+
+    @Test
+    void onProcessingCompleted_shouldIgnoreMessage_whenStateIsMissing() {
+        // Prepare testing data
+        List<ImageProcessingCompletedMessage> messages = List.of(
+                new ImageProcessingCompletedMessage("first.png", BUCKET_NAME, null, null)
+        );
+
+        // Execute method under test
+        imageProcessingStateService.onProcessingCompleted(messages);
+
+        // Assert results
+        verifyNoInteractions(imageRepository, completionRepository, rabbitTemplate);
+    }
+
+
+
+    @Test
+    void getProcessingState_shouldReturnCompletionState_whenImageIsNotReferencedYet() {
+        // Prepare testing data
+        ImageProcessingCompletion completion = ImageProcessingCompletion.builder()
+                .fileName("unreferenced.png")
+                .bucketName(BUCKET_NAME)
+                .state(ImageProcessingState.PROCESSED)
+                .completedAt(Instant.now())
+                .build();
+
+        // Setup mocks
+        when(imageRepository.findProcessingStateByFileName("unreferenced.png")).thenReturn(Optional.empty());
+        when(completionRepository.findById("unreferenced.png")).thenReturn(Optional.of(completion));
+
+        // Execute method under test
+        Optional<ImageProcessingState> state = imageProcessingStateService.getProcessingState("unreferenced.png");
+
+        // Assert results
+        assertEquals(Optional.of(ImageProcessingState.PROCESSED), state);
+    }
+
+}
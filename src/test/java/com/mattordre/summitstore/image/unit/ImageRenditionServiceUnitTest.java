@@ -0,0 +1,112 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.exception.InvalidArgumentException;
+import com.mattordre.summitstore.image.dto.ImageRendition;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.service.ImageRenditionService;
+import com.mattordre.summitstore.image.service.ImageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ImageRenditionServiceUnitTest {
+
+    private static final String FILE_NAME = "00000000-0000-0000-0000-000000000000-test-image.png";
+
+    private ImageRenditionService imageRenditionService;
+
+    @Mock
+    private ImageService imageService;
+
+    @Mock
+    private S3ClientRegistry s3ClientRegistry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        imageRenditionService = new ImageRenditionService(imageService, s3ClientRegistry, List.of(160, 320), List.of(160, 320),
+                List.of(60, 75, 90), 75, 40_000_000, 1, 4, Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageRenditionService.close();
+    }
+
+
+    @Test
+    void resolveRendition_shouldThrowInvalidArgumentException_whenWidthIsNotAllowed() {
+        // Execute method under test & Assert results
+        assertThrows(InvalidArgumentException.class, () -> imageRenditionService.resolveRendition(FILE_NAME, 100, null, null, null));
+    }
+
+
+    @Test
+    void getRenditionFileName_shouldStoreResizedImage_whenRenditionDoesNotExist() throws IOException {
+        // Prepare testing data
+        ImageRendition rendition = imageRenditionService.resolveRendition(FILE_NAME, 160, null, null, "jpg");
+        String renditionFileName = "renditions/" + FILE_NAME + "/w160-hauto-q75.jpeg";
+
+        // Setup mocks
+        when(imageService.isImageFileUploaded(renditionFileName, ImageType.PRODUCT)).thenReturn(false);
+        when(imageService.getImageFileByName(ImageType.PRODUCT, FILE_NAME))
+                .thenReturn(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), pngImage(640, 480)));
+
+        // Execute method under test
+        String result = imageRenditionService.getRenditionFileName(ImageType.PRODUCT, FILE_NAME, rendition);
+
+        // Assert results
+        assertEquals(renditionFileName, result);
+        ArgumentCaptor<byte[]> content = ArgumentCaptor.forClass(byte[].class);
+        verify(imageService).putImageContent(eq(ImageType.PRODUCT), eq(renditionFileName), content.capture(), eq("image/jpeg"));
+        BufferedImage stored = ImageIO.read(new ByteArrayInputStream(content.getValue()));
+        assertEquals(160, stored.getWidth());
+        assertEquals(120, stored.getHeight());
+    }
+
+
+    @Test
+    void getRenditionFileName_shouldNotResizeImage_whenRenditionExists() {
+        // Prepare testing data
+        ImageRendition rendition = imageRenditionService.resolveRendition(FILE_NAME, 320, 320, 90, null);
+        String renditionFileName = "renditions/" + FILE_NAME + "/w320-h320.png";
+
+        // Setup mocks
+        when(imageService.isImageFileUploaded(renditionFileName, ImageType.PRODUCT)).thenReturn(true);
+
+        // Execute method under test
+        String result = imageRenditionService.getRenditionFileName(ImageType.PRODUCT, FILE_NAME, rendition);
+
+        // Assert results
+        assertEquals(renditionFileName, result);
+        verify(imageService, never()).getImageFileByName(any(), any());
+        verify(imageService, never()).putImageContent(any(), any(), any(), any());
+    }
+
+
+    private byte[] pngImage(int width, int height) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", content);
+        return content.toByteArray();
+    }
+
+}
@@ -3,28 +3,57 @@ package com.mattordre.summitstore.image.unit;
 import com.mattordre.summitstore.image.exception.ImageNotFoundException;
 import com.mattordre.summitstore.image.exception.StorageAccessException;
 import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.repository.ImageRepository;
+import com.mattordre.summitstore.image.repository.ImageRepository.StoredImageMetadata;
+import com.mattordre.summitstore.image.dto.StoredImage;
+import com.mattordre.summitstore.image.service.HedgedImageReader;
+import com.mattordre.summitstore.image.service.ImageDigestIndex;
+import com.mattordre.summitstore.image.service.ImageProcessingStateService;
+import com.mattordre.summitstore.image.service.ImageMetadataCache;
 import com.mattordre.summitstore.image.service.ImageService;
-import com.mattordre.summitstore.config.S3ClientFactory;
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.config.StorageGuard;
 import org.junit.jupiter.api.BeforeEach;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class ImageServiceUnitTest {
@@ -33,14 +62,48 @@ public class ImageServiceUnitTest {
     private ImageService imageService;
 
     @Mock
-    private S3ClientFactory s3ClientFactory;
+    private S3ClientRegistry s3ClientRegistry;
 
     @Mock
     private S3Client s3Client;
 
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    @Mock
+    private ImageDigestIndex imageDigestIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageProcessingStateService imageProcessingStateService;
+
+    @Mock
+    private HedgedImageReader hedgedImageReader;
+
+    @Mock
+    private ExecutorService storageTaskExecutor;
+
+    @Spy
+    private ImageMetadataCache imageMetadataCache = new ImageMetadataCache(Duration.ofSeconds(30), 100, new SimpleMeterRegistry());
+
+    @Spy
+    private StorageGuard storageGuard = new StorageGuard(new SimpleMeterRegistry(), Duration.ofSeconds(2), Duration.ofSeconds(10),
+            Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofSeconds(5), 50, 20, 0.5, Duration.ofSeconds(10), 3, 20, 4, 50,
+            Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ZERO, Duration.ZERO, Duration.ofSeconds(1));
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // Storage tasks run on the calling thread
+        doAnswer(invocation -> {
+            invocation.getArgument(0, Runnable.class).run();
+            return null;
+        }).when(storageTaskExecutor).execute(any(Runnable.class));
     }
 
 
@@ -50,7 +113,7 @@ public class ImageServiceUnitTest {
         String fileName = "test-image.png";
 
         // Setup mocks
-        when(s3ClientFactory.createS3Client(any(), any(), any(), any())).thenReturn(s3Client);
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
         doReturn(mock(ResponseBytes.class)).when(s3Client).getObject(any(GetObjectRequest.class), any(ResponseTransformer.class));
 
         // Execute method under test
@@ -68,7 +131,7 @@ public class ImageServiceUnitTest {
         String fileName = "non-existent.png";
 
         // Setup mocks
-        when(s3ClientFactory.createS3Client(any(), any(), any(), any())).thenReturn(s3Client);
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
         doThrow(NoSuchKeyException.class).when(s3Client).getObject(any(GetObjectRequest.class), any(ResponseTransformer.class));
 
         // Execute method under test & Assert results
@@ -83,7 +146,7 @@ public class ImageServiceUnitTest {
         String fileName = "test-image.png";
 
         // Setup mocks
-        when(s3ClientFactory.createS3Client(any(), any(), any(), any())).thenReturn(s3Client);
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
         doThrow(NoSuchBucketException.class).when(s3Client).getObject(any(GetObjectRequest.class), any(ResponseTransformer.class));
 
         // Execute method under test & Assert results
@@ -98,7 +161,7 @@ public class ImageServiceUnitTest {
         String fileName = "test-image.png";
 
         // Setup mocks
-        when(s3ClientFactory.createS3Client(any(), any(), any(), any())).thenReturn(s3Client);
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
         doThrow(AwsServiceException.class).when(s3Client).getObject(any(GetObjectRequest.class), any(ResponseTransformer.class));
 
         // Execute method under test & Assert results
@@ -107,6 +170,40 @@ public class ImageServiceUnitTest {
     }
 
 
+    @Test
+    void getImageStreamByName_shouldReturnStream_whenImageExists() {
+        // Prepare testing data
+        String fileName = "test-image.png";
+
+        // Setup mocks
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        doReturn(new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream(new byte[1024]))))
+                .when(s3Client).getObject(any(GetObjectRequest.class));
+
+        // Execute method under test
+        ResponseInputStream<GetObjectResponse> response = imageService.getImageStreamByName(ImageType.PRODUCT, fileName);
+
+        // Assert results
+        assertNotNull(response);
+        verify(s3Client, times(1)).getObject(any(GetObjectRequest.class));
+        verify(s3Client, never()).getObject(any(GetObjectRequest.class), any(ResponseTransformer.class));
+    }
+
+
+    @Test
+    void getImageStreamByName_shouldThrowImageNotFoundException_whenImageDoesNotExist() {
+        // Prepare testing data
+        String fileName = "non-existent.png";
+
+        // Setup mocks
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        doThrow(NoSuchKeyException.class).when(s3Client).getObject(any(GetObjectRequest.class));
+
+        // Execute method under test & Assert results
+        assertThrows(ImageNotFoundException.class, () -> imageService.getImageStreamByName(ImageType.PRODUCT, fileName));
+    }
+
+
     @Test
     void uploadImage_shouldReturnFileName_whenUploadSuccessful() throws IOException {
         // Prepare testing data
@@ -118,9 +215,9 @@ public class ImageServiceUnitTest {
         MultipartFile mockFile = mock(MultipartFile.class);
         when(mockFile.getOriginalFilename()).thenReturn(originalFileName);
         when(mockFile.getContentType()).thenReturn("image/png");
-        when(mockFile.getInputStream()).thenReturn(mock(InputStream.class));
+        when(mockFile.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(new byte[1024]));
         when(mockFile.getSize()).thenReturn(1024L);
-        when(s3ClientFactory.createS3Client(any(), any(), any(), any())).thenReturn(s3Client);
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
         try (MockedStatic<UUID> mockedUUIDStatic = mockStatic(UUID.class)) {
             mockedUUIDStatic.when(UUID::randomUUID).thenReturn(mockedUUID);
             when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class))).thenReturn(mockedResponse);
@@ -133,7 +230,8 @@ public class ImageServiceUnitTest {
             assert(result.equals("00000000-0000-0000-0000-000000000000-test-image.png"));
             verify(mockFile, times(2)).getOriginalFilename();
             verify(mockFile, times(1)).getContentType();
-            verify(mockFile, times(1)).getInputStream();
+            // The file is read once to capture its metadata, then once to upload it
+            verify(mockFile, times(2)).getInputStream();
             verify(mockFile, times(1)).getSize();
         }
     }
@@ -146,10 +244,10 @@ public class ImageServiceUnitTest {
 
         // Setup mocks
         MultipartFile mockFile = mock(MultipartFile.class);
-        when(mockFile.getInputStream()).thenReturn(mock(InputStream.class));
+        when(mockFile.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(new byte[1024]));
         when(mockFile.getSize()).thenReturn(1024L);
         when(mockFile.getOriginalFilename()).thenReturn(originalFileName);
-        when(s3ClientFactory.createS3Client(any(), any(), any(), any())).thenReturn(s3Client);
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
         doThrow(AwsServiceException.class).when(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
 
         // Execute method under test & Assert results
@@ -157,4 +255,283 @@ public class ImageServiceUnitTest {
         verify(mockFile, times(2)).getOriginalFilename();
     }
 
+
+    @Test
+    void storeImage_shouldCopyStoredFileToNewFileName_whenContentIsDuplicate() {
+        // Prepare testing data
+        MultipartFile file = new MockMultipartFile("image", "test-image.png", "image/png", "image-content".getBytes());
+        String digest = "d2dfc251c1a7245d4eb7d95e5f815472c6dbcf7ee6690bbd7c1912f477b6c22a";
+
+        // Setup mocks
+        when(imageDigestIndex.isEnabled()).thenReturn(true);
+        when(imageDigestIndex.reuse(ImageType.PRODUCT, digest)).thenReturn(Optional.of("stored-image.png"));
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        when(s3Client.copyObject(any(CopyObjectRequest.class))).thenReturn(CopyObjectResponse.builder().build());
+        when(imageProcessingStateService.inheritState(eq(ImageType.PRODUCT), eq("stored-image.png"), any())).thenReturn(true);
+
+        // Execute method under test
+        StoredImage first = imageService.storeImage(file, ImageType.PRODUCT);
+        StoredImage second = imageService.storeImage(file, ImageType.PRODUCT);
+
+        // Assert results
+        assertTrue(first.duplicate());
+        assertEquals("stored-image.png", first.sourceFileName());
+        assertTrue(imageService.isImmutableFileName(first.fileName()));
+        assertNotEquals(first.fileName(), second.fileName());
+        ArgumentCaptor<CopyObjectRequest> copyRequest = ArgumentCaptor.forClass(CopyObjectRequest.class);
+        verify(s3Client, times(2)).copyObject(copyRequest.capture());
+        assertEquals("stored-image.png", copyRequest.getValue().sourceKey());
+        assertEquals(second.fileName(), copyRequest.getValue().destinationKey());
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3Client, never()).deleteObject(any(DeleteObjectRequest.class));
+        verify(imageDigestIndex, never()).register(any(), any(), any());
+        verify(imageProcessingStateService).inheritState(ImageType.PRODUCT, "stored-image.png", second.fileName());
+    }
+
+
+    @Test
+    void storeImage_shouldNotFlagCopyAsDuplicate_whenSourceStateIsUnknown() {
+        // Prepare testing data
+        MultipartFile file = new MockMultipartFile("image", "test-image.png", "image/png", "image-content".getBytes());
+        String digest = "d2dfc251c1a7245d4eb7d95e5f815472c6dbcf7ee6690bbd7c1912f477b6c22a";
+
+        // Setup mocks
+        when(imageDigestIndex.isEnabled()).thenReturn(true);
+        when(imageDigestIndex.reuse(ImageType.PRODUCT, digest)).thenReturn(Optional.of("stored-image.png"));
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        when(s3Client.copyObject(any(CopyObjectRequest.class))).thenReturn(CopyObjectResponse.builder().build());
+        when(imageProcessingStateService.inheritState(eq(ImageType.PRODUCT), eq("stored-image.png"), any())).thenReturn(false);
+
+        // Execute method under test
+        StoredImage result = imageService.storeImage(file, ImageType.PRODUCT);
+
+        // Assert results
+        assertFalse(result.duplicate());
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+
+    @Test
+    void storeImage_shouldUploadAndRegisterFile_whenStoredFileIsGone() {
+        // Prepare testing data
+        MultipartFile file = new MockMultipartFile("image", "test-image.png", "image/png", "image-content".getBytes());
+        String digest = "d2dfc251c1a7245d4eb7d95e5f815472c6dbcf7ee6690bbd7c1912f477b6c22a";
+
+        // Setup mocks
+        when(imageDigestIndex.isEnabled()).thenReturn(true);
+        when(imageDigestIndex.reuse(ImageType.PRODUCT, digest)).thenReturn(Optional.of("stored-image.png"));
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        when(s3Client.copyObject(any(CopyObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class))).thenReturn(PutObjectResponse.builder().build());
+
+        // Execute method under test
+        StoredImage result = imageService.storeImage(file, ImageType.PRODUCT);
+
+        // Assert results
+        assertFalse(result.duplicate());
+        verify(imageDigestIndex).register(ImageType.PRODUCT, digest, result.fileName());
+    }
+
+
+    @Test
+    void uploadImageAsync_shouldCompleteWithFileName_whenUploadSuccessful() throws Exception {
+        // Prepare testing data
+        MultipartFile file = new MockMultipartFile("image", "test-image.png", "image/png", "image-content".getBytes());
+        String digest = "d2dfc251c1a7245d4eb7d95e5f815472c6dbcf7ee6690bbd7c1912f477b6c22a";
+
+        // Setup mocks
+        when(s3ClientRegistry.getAsyncClient()).thenReturn(s3AsyncClient);
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+        // Execute method under test
+        StoredImage result = imageService.uploadImageAsync(file, ImageType.PRODUCT).get();
+
+        // Assert results
+        assertFalse(result.duplicate());
+        assertTrue(result.fileName().endsWith("-test-image.png"));
+        assertTrue(imageService.isImmutableFileName(result.fileName()));
+        ArgumentCaptor<PutObjectRequest> putRequest = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3AsyncClient).putObject(putRequest.capture(), any(AsyncRequestBody.class));
+        assertEquals("image/png", putRequest.getValue().contentType());
+        assertEquals(digest, putRequest.getValue().metadata().get("checksum-sha256"));
+        assertNotNull(putRequest.getValue().metadata().get("uploaded-at"));
+    }
+
+
+    @Test
+    void uploadImageAsync_shouldCopyStoredFile_whenContentIsDuplicate() throws Exception {
+        // Prepare testing data
+        MultipartFile file = new MockMultipartFile("image", "test-image.png", "image/png", "image-content".getBytes());
+        String digest = "d2dfc251c1a7245d4eb7d95e5f815472c6dbcf7ee6690bbd7c1912f477b6c22a";
+
+        // Setup mocks
+        when(imageDigestIndex.isEnabled()).thenReturn(true);
+        when(imageDigestIndex.reuse(ImageType.PRODUCT, digest)).thenReturn(Optional.of("stored-image.png"));
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        when(s3Client.copyObject(any(CopyObjectRequest.class))).thenReturn(CopyObjectResponse.builder().build());
+        when(imageProcessingStateService.inheritState(eq(ImageType.PRODUCT), eq("stored-image.png"), any())).thenReturn(true);
+
+        // Execute method under test
+        StoredImage result = imageService.uploadImageAsync(file, ImageType.PRODUCT).get();
+
+        // Assert results
+        assertTrue(result.duplicate());
+        assertEquals("stored-image.png", result.sourceFileName());
+        verifyNoInteractions(s3AsyncClient);
+        verify(imageDigestIndex, never()).register(any(), any(), any());
+    }
+
+
+    @Test
+    void uploadImageAsync_shouldRegisterUploadedFile_whenDeduplicationIsEnabled() throws Exception {
+        // Prepare testing data
+        MultipartFile file = new MockMultipartFile("image", "test-image.png", "image/png", "image-content".getBytes());
+        String digest = "d2dfc251c1a7245d4eb7d95e5f815472c6dbcf7ee6690bbd7c1912f477b6c22a";
+
+        // Setup mocks
+        when(imageDigestIndex.isEnabled()).thenReturn(true);
+        when(imageDigestIndex.reuse(ImageType.PRODUCT, digest)).thenReturn(Optional.empty());
+        when(s3ClientRegistry.getAsyncClient()).thenReturn(s3AsyncClient);
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+        // Execute method under test
+        StoredImage result = imageService.uploadImageAsync(file, ImageType.PRODUCT).get();
+
+        // Assert results
+        assertFalse(result.duplicate());
+        verify(imageDigestIndex).register(ImageType.PRODUCT, digest, result.fileName());
+    }
+
+
+    @Test
+    void uploadImageAsync_shouldFailWithStorageAccessException_whenUploadFails() throws Exception {
+        // Prepare testing data
+        MultipartFile file = new MockMultipartFile("image", "test-image.png", "image/png", "image-content".getBytes());
+
+        // Setup mocks
+        when(s3ClientRegistry.getAsyncClient()).thenReturn(s3AsyncClient);
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(AwsServiceException.builder().message("Unavailable").build()));
+
+        // Execute method under test
+        CompletableFuture<StoredImage> result = imageService.uploadImageAsync(file, ImageType.PRODUCT);
+
+        // Assert results
+        ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(StorageAccessException.class, exception.getCause());
+        assertEquals("Unavailable", exception.getCause().getCause().getMessage());
+    }
+
+
+    @Test
+    void isImageFileUploaded_shouldOnlyRetrieveMetadataOnce_whenImageExists() {
+        // Prepare testing data
+        String fileName = "test-image.png";
+        HeadObjectResponse headObjectResponse = HeadObjectResponse.builder().contentLength(1024L).contentType("image/png").eTag("\"etag\"").build();
+
+        // Setup mocks
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(headObjectResponse);
+
+        // Execute method under test
+        boolean firstCheck = imageService.isImageFileUploaded(fileName, ImageType.PRODUCT);
+        boolean secondCheck = imageService.isImageFileUploaded(fileName, ImageType.PRODUCT);
+
+        // Assert results
+        assertTrue(firstCheck);
+        assertTrue(secondCheck);
+        verify(s3Client, times(1)).headObject(any(HeadObjectRequest.class));
+        verify(s3Client, never()).getObject(any(GetObjectRequest.class), any(ResponseTransformer.class));
+    }
+
+
+    @Test
+    void getImageMetadata_shouldNotReachObjectStorage_whenImageIsReferenced() {
+        // Prepare testing data
+        String fileName = "test-image.png";
+        StoredImageMetadata storedMetadata = mock(StoredImageMetadata.class);
+        when(storedMetadata.getBucketName()).thenReturn(ImageType.PRODUCT.getBucketName());
+        when(storedMetadata.getContentLength()).thenReturn(1024L);
+        when(storedMetadata.getContentType()).thenReturn("image/png");
+        when(storedMetadata.getWidth()).thenReturn(640);
+        when(storedMetadata.getHeight()).thenReturn(480);
+        when(storedMetadata.getChecksum()).thenReturn("checksum");
+
+        // Setup mocks
+        when(imageRepository.findMetadataByFileName(fileName)).thenReturn(Optional.of(storedMetadata));
+
+        // Execute method under test
+        ImageMetadata result = imageService.getImageMetadata(ImageType.PRODUCT, fileName);
+
+        // Assert results
+        assertEquals(1024L, result.getContentLength());
+        assertEquals("image/png", result.getContentType());
+        assertEquals(640, result.getWidth());
+        assertEquals("\"checksum\"", result.getETag());
+        verifyNoInteractions(s3ClientRegistry);
+    }
+
+
+    @Test
+    void getImageMetadata_shouldDeriveETagFromChecksum_whenImageIsNotReferenced() {
+        // Prepare testing data
+        String fileName = "test-image.png";
+        HeadObjectResponse headObjectResponse = HeadObjectResponse.builder()
+                .contentLength(1024L)
+                .contentType("image/png")
+                .eTag("\"md5\"")
+                .metadata(Map.of("checksum-sha256", "checksum"))
+                .build();
+
+        // Setup mocks
+        when(imageRepository.findMetadataByFileName(fileName)).thenReturn(Optional.empty());
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(headObjectResponse);
+
+        // Execute method under test
+        ImageMetadata result = imageService.getImageMetadata(ImageType.PRODUCT, fileName);
+
+        // Assert results
+        assertEquals("\"checksum\"", result.getETag());
+        assertEquals("checksum", result.getChecksum());
+    }
+
+
+    @Test
+    void isImageFileUploaded_shouldReturnFalse_whenImageDoesNotExist() {
+        // Prepare testing data
+        String fileName = "non-existent.png";
+
+        // Setup mocks
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        doThrow(NoSuchKeyException.class).when(s3Client).headObject(any(HeadObjectRequest.class));
+
+        // Execute method under test & Assert results
+        assertFalse(imageService.isImageFileUploaded(fileName, ImageType.PRODUCT));
+    }
+
+
+    @Test
+    void isImageFileUploaded_shouldThrowStorageAccessException_whenS3ErrorOccurs() {
+        // Prepare testing data
+        String fileName = "test-image.png";
+
+        // Setup mocks
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+        doThrow(AwsServiceException.class).when(s3Client).headObject(any(HeadObjectRequest.class));
+
+        // Execute method under test & Assert results
+        assertThrows(StorageAccessException.class, () -> imageService.isImageFileUploaded(fileName, ImageType.PRODUCT));
+    }
+
+
+    @Test
+    void isImmutableFileName_shouldOnlyMatchGeneratedFileNames() {
+        // Execute method under test & Assert results
+        assertTrue(imageService.isImmutableFileName("123e4567-e89b-12d3-a456-426614174000-test-image.png"));
+        assertFalse(imageService.isImmutableFileName("test-image.png"));
+    }
+
 }
@@ -0,0 +1,88 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.image.controller.ImageUploadAdmissionFilter;
+import com.mattordre.summitstore.image.exception.ProcessingBacklogException;
+import com.mattordre.summitstore.image.service.ImageUploadAdmission;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ImageUploadAdmissionFilterUnitTest {
+
+    private ImageUploadAdmissionFilter imageUploadAdmissionFilter;
+
+    @Mock
+    private ImageUploadAdmission imageUploadAdmission;
+
+    @Mock
+    private HandlerExceptionResolver handlerExceptionResolver;
+
+    @Mock
+    private FilterChain filterChain;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        imageUploadAdmissionFilter = new ImageUploadAdmissionFilter(imageUploadAdmission, handlerExceptionResolver);
+    }
+
+
+    @Test
+    void doFilter_shouldRejectWithoutReadingBody_whenUploadIsNotAdmitted() throws Exception {
+        // Prepare testing data
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/image/batch");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ProcessingBacklogException exception = new ProcessingBacklogException("Backlog", Duration.ofSeconds(30));
+
+        // Setup mocks
+        doThrow(exception).when(imageUploadAdmission).admit(true);
+
+        // Execute method under test
+        imageUploadAdmissionFilter.doFilter(request, response, filterChain);
+
+        // Assert results
+        verify(handlerExceptionResolver).resolveException(request, response, null, exception);
+        verifyNoInteractions(filterChain);
+    }
+
+
+    @Test
+    void doFilter_shouldContinueChain_whenUploadIsAdmitted() throws Exception {
+        // Prepare testing data
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/image");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Execute method under test
+        imageUploadAdmissionFilter.doFilter(request, response, filterChain);
+
+        // Assert results
+        verify(imageUploadAdmission).admit(false);
+        verify(filterChain).doFilter(request, response);
+    }
+
+
+    @Test
+    void doFilter_shouldSkipAdmission_whenRequestIsNotAnUpload() throws Exception {
+        // Prepare testing data
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/image/commit");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Execute method under test
+        imageUploadAdmissionFilter.doFilter(request, response, filterChain);
+
+        // Assert results
+        verifyNoInteractions(imageUploadAdmission);
+        verify(filterChain).doFilter(request, response);
+    }
+
+}
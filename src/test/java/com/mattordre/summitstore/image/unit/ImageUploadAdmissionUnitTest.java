@@ -0,0 +1,123 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingRouter;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQConfig;
+import com.mattordre.summitstore.image.exception.ProcessingBacklogException;
+import com.mattordre.summitstore.image.repository.OutboxMessageRepository;
+import com.mattordre.summitstore.image.service.ImageUploadAdmission;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class ImageUploadAdmissionUnitTest {
+
+    private ImageUploadAdmission imageUploadAdmission;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private AmqpAdmin amqpAdmin;
+
+    @Mock
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        imageUploadAdmission = new ImageUploadAdmission(amqpAdmin, outboxMessageRepository,
+                new ImageProcessingRouter(1, false, 5, 0, 0, List.of(RabbitMQConfig.PROCESSING_QUEUE)), meterRegistry,
+                500, 200, Duration.ofSeconds(30));
+    }
+
+
+    @Test
+    void admit_shouldRejectBulkUploadOnly_whenBacklogExceedsBulkThreshold() {
+        // Setup mocks
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.PROCESSING_QUEUE)).thenReturn(new QueueInformation(RabbitMQConfig.PROCESSING_QUEUE, 600, 2));
+
+        // Execute method under test
+        imageUploadAdmission.sample();
+
+        // Assert results
+        ProcessingBacklogException exception = assertThrows(ProcessingBacklogException.class, () -> imageUploadAdmission.admit(true));
+        assertEquals(Duration.ofSeconds(30), exception.getRetryAfter());
+        assertDoesNotThrow(() -> imageUploadAdmission.admit(false));
+        assertEquals(1.0, meterRegistry.get("image.processing.admission.rejected").tag("kind", "bulk").counter().count());
+    }
+
+
+    @Test
+    void admit_shouldRejectUpload_whenUnpublishedRequestsPileUpInOutbox() {
+        // Setup mocks
+        when(outboxMessageRepository.count()).thenReturn(900L);
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.PROCESSING_QUEUE)).thenReturn(new QueueInformation(RabbitMQConfig.PROCESSING_QUEUE, 100, 2));
+
+        // Execute method under test
+        imageUploadAdmission.sample();
+
+        // Assert results
+        assertThrows(ProcessingBacklogException.class, () -> imageUploadAdmission.admit(false));
+        assertEquals(500.0, meterRegistry.get("image.processing.admission.backlog").gauge().value());
+    }
+
+
+    @Test
+    void admit_shouldCountOutbox_whenQueuesCannotBeSampled() {
+        // Setup mocks
+        when(outboxMessageRepository.count()).thenReturn(300L);
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.PROCESSING_QUEUE)).thenThrow(new AmqpConnectException(new ConnectException()));
+
+        // Execute method under test
+        imageUploadAdmission.sample();
+
+        // Assert results
+        // Requests are not published while the broker is unreachable, they pile up in the outbox
+        assertThrows(ProcessingBacklogException.class, () -> imageUploadAdmission.admit(true));
+        assertDoesNotThrow(() -> imageUploadAdmission.admit(false));
+    }
+
+
+    @Test
+    void admit_shouldKeepPreviousOutboxSample_whenOutboxCannotBeSampled() {
+        // Setup mocks
+        when(outboxMessageRepository.count())
+                .thenReturn(600L)
+                .thenThrow(new DataAccessResourceFailureException("Database unavailable"));
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.PROCESSING_QUEUE)).thenReturn(new QueueInformation(RabbitMQConfig.PROCESSING_QUEUE, 0, 1));
+
+        // Execute method under test
+        imageUploadAdmission.sample();
+        imageUploadAdmission.sample();
+
+        // Assert results
+        assertThrows(ProcessingBacklogException.class, () -> imageUploadAdmission.admit(false));
+    }
+
+
+    @Test
+    void admit_shouldRejectUpload_whenQueueHasNoConsumer() {
+        // Setup mocks
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.PROCESSING_QUEUE)).thenReturn(new QueueInformation(RabbitMQConfig.PROCESSING_QUEUE, 600, 0));
+
+        // Execute method under test
+        imageUploadAdmission.sample();
+
+        // Assert results
+        assertThrows(ProcessingBacklogException.class, () -> imageUploadAdmission.admit(false));
+    }
+
+}
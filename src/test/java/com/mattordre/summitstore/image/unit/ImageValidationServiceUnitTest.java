@@ -0,0 +1,131 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.StorageGuard;
+import com.mattordre.summitstore.image.dto.ImageMetadata;
+import com.mattordre.summitstore.image.exception.ImageNotFoundException;
+import com.mattordre.summitstore.image.exception.StorageAccessException;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.service.ImageService;
+import com.mattordre.summitstore.image.service.ImageValidationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ImageValidationServiceUnitTest {
+
+    private ImageValidationService imageValidationService;
+
+    @Mock
+    private ImageService imageService;
+
+    @Mock
+    private StorageGuard storageGuard;
+
+    private ExecutorService executorService;
+
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executorService = Executors.newVirtualThreadPerTaskExecutor();
+        imageValidationService = new ImageValidationService(imageService, executorService, storageGuard);
+        when(storageGuard.getConcurrencyLimit()).thenReturn(20);
+        ReflectionTestUtils.setField(imageValidationService, "maxConcurrency", 4);
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+
+    @Test
+    void getImagesMetadata_shouldReturnMetadataOfEachImage_whenAllImagesAreUploaded() {
+        // Prepare testing data
+        List<String> fileNames = List.of("image-1.png", "image-2.png", "image-3.png", "image-1.png");
+        ImageMetadata metadata = ImageMetadata.builder().contentType("image/png").contentLength(1024L).build();
+
+        // Setup mocks
+        when(imageService.getImageMetadata(eq(ImageType.PRODUCT), anyString())).thenReturn(metadata);
+
+        // Execute method under test
+        Map<String, ImageMetadata> imagesMetadata = imageValidationService.getImagesMetadata(fileNames, ImageType.PRODUCT);
+
+        // Assert results
+        assertEquals(Map.of("image-1.png", metadata, "image-2.png", metadata, "image-3.png", metadata), imagesMetadata);
+        verify(imageService, times(3)).getImageMetadata(eq(ImageType.PRODUCT), anyString());
+    }
+
+
+    @Test
+    void getImagesMetadata_shouldThrowImageNotFoundException_whenAnImageIsNotUploaded() {
+        // Prepare testing data
+        List<String> fileNames = List.of("image-1.png", "missing.png", "image-3.png");
+
+        // Setup mocks
+        when(imageService.getImageMetadata(eq(ImageType.PRODUCT), anyString())).thenReturn(ImageMetadata.builder().build());
+        when(imageService.getImageMetadata(ImageType.PRODUCT, "missing.png")).thenThrow(new ImageNotFoundException("Image not found"));
+
+        // Execute method under test
+        ImageNotFoundException exception = assertThrows(ImageNotFoundException.class,
+                () -> imageValidationService.getImagesMetadata(fileNames, ImageType.PRODUCT));
+
+        // Assert results
+        assertEquals("Image not found: missing.png", exception.getMessage());
+    }
+
+
+    @Test
+    void getImagesMetadata_shouldThrowStorageAccessException_whenALookupFails() {
+        // Prepare testing data
+        List<String> fileNames = List.of("image-1.png", "image-2.png");
+
+        // Setup mocks
+        when(imageService.getImageMetadata(eq(ImageType.PRODUCT), anyString())).thenThrow(new StorageAccessException("Storage unavailable"));
+
+        // Execute method under test & Assert results
+        assertThrows(StorageAccessException.class, () -> imageValidationService.getImagesMetadata(fileNames, ImageType.PRODUCT));
+    }
+
+
+    @Test
+    void getImagesMetadata_shouldBoundLookupsByStorageGuardLimit_whenLimitIsLow() {
+        // Prepare testing data
+        List<String> fileNames = List.of("image-1.png", "image-2.png", "image-3.png", "image-4.png");
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        // Setup mocks
+        when(storageGuard.getConcurrencyLimit()).thenReturn(4);
+        when(imageService.getImageMetadata(eq(ImageType.PRODUCT), anyString())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            return ImageMetadata.builder().build();
+        });
+
+        // Execute method under test
+        Map<String, ImageMetadata> imagesMetadata = imageValidationService.getImagesMetadata(fileNames, ImageType.PRODUCT);
+
+        // Assert results
+        assertEquals(4, imagesMetadata.size());
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+}
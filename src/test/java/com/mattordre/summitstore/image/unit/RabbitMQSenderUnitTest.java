@@ -0,0 +1,112 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingMessage;
+import com.mattordre.summitstore.config.rabbitMQ.ImageProcessingRouter;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQConfig;
+import com.mattordre.summitstore.config.rabbitMQ.RabbitMQSender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RabbitMQSenderUnitTest {
+
+    private static final String QUEUE_NAME = RabbitMQConfig.PROCESSING_QUEUE;
+
+    private RabbitMQSender rabbitMQSender;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private RabbitOperations rabbitOperations;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        rabbitMQSender = new RabbitMQSender(rabbitTemplate, new ImageProcessingRouter(1, false, 5, 0, 0, List.of(RabbitMQConfig.PROCESSING_QUEUE)), new SimpleMeterRegistry(), 2, Duration.ofMillis(50),
+                Duration.ofSeconds(5), 3, Duration.ofMillis(1), Duration.ofMillis(10));
+        when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class)))
+                .thenAnswer(invocation -> invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(rabbitOperations));
+    }
+
+    @AfterEach
+    void tearDown() {
+        rabbitMQSender.close();
+    }
+
+
+    @Test
+    void send_shouldCompleteFuture_whenBrokerConfirmsMessage() throws Exception {
+        // Setup mocks
+        doAnswer(invocation -> confirm(invocation.getArgument(4), true))
+                .when(rabbitOperations).convertAndSend(eq(""), eq(QUEUE_NAME), any(Object.class), any(MessagePostProcessor.class), any(CorrelationData.class));
+
+        // Execute method under test
+        CompletableFuture<Void> confirmed = rabbitMQSender.send(QUEUE_NAME, message());
+
+        // Assert results
+        confirmed.get(5, TimeUnit.SECONDS);
+    }
+
+
+    @Test
+    void send_shouldRetryMessage_whenBrokerNacksIt() throws Exception {
+        // Prepare testing data
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Setup mocks
+        doAnswer(invocation -> confirm(invocation.getArgument(4), attempts.incrementAndGet() > 1))
+                .when(rabbitOperations).convertAndSend(eq(""), eq(QUEUE_NAME), any(Object.class), any(MessagePostProcessor.class), any(CorrelationData.class));
+        doAnswer(invocation -> confirm(invocation.getArgument(4), attempts.incrementAndGet() > 1))
+                .when(rabbitTemplate).convertAndSend(eq(""), eq(QUEUE_NAME), any(Object.class), any(MessagePostProcessor.class), any(CorrelationData.class));
+
+        // Execute method under test
+        CompletableFuture<Void> confirmed = rabbitMQSender.send(QUEUE_NAME, message());
+
+        // Assert results
+        confirmed.get(5, TimeUnit.SECONDS);
+        verify(rabbitTemplate, times(1)).convertAndSend(eq(""), eq(QUEUE_NAME), any(Object.class), any(MessagePostProcessor.class), any(CorrelationData.class));
+    }
+
+
+    @Test
+    void sendAll_shouldThrowAmqpException_whenConfirmWindowIsFull() {
+        // Execute method under test & Assert results
+        rabbitMQSender.sendAll(QUEUE_NAME, List.of(message(), message()));
+        assertThrows(AmqpException.class, () -> rabbitMQSender.send(QUEUE_NAME, message()));
+    }
+
+
+    private Object confirm(CorrelationData correlationData, boolean ack) {
+        correlationData.getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "Queue full"));
+        return null;
+    }
+
+
+    private ImageProcessingMessage message() {
+        return ImageProcessingMessage.builder()
+                .fileName("image.png")
+                .bucketName("product-images")
+                .build();
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.S3ClientFactory;
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+public class S3ClientRegistryUnitTest {
+
+    @InjectMocks
+    private S3ClientRegistry s3ClientRegistry;
+
+    @Mock
+    private S3ClientFactory s3ClientFactory;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(s3ClientRegistry, "endpoint", "http://primary:9000");
+        ReflectionTestUtils.setField(s3ClientRegistry, "accessKey", "access");
+        ReflectionTestUtils.setField(s3ClientRegistry, "secretKey", "secret");
+        ReflectionTestUtils.setField(s3ClientRegistry, "region", "us-east-1");
+    }
+
+
+    @Test
+    void getClient_shouldBuildSingleClientPerEndpoint_whenCalledRepeatedly() {
+        // Prepare testing data
+        S3Client primaryClient = mock(S3Client.class);
+        S3Client replicaClient = mock(S3Client.class);
+
+        // Setup mocks
+        when(s3ClientFactory.createS3Client("http://primary:9000", "access", "secret", "us-east-1")).thenReturn(primaryClient);
+        when(s3ClientFactory.createS3Client("http://replica:9000", "access", "secret", "us-east-1")).thenReturn(replicaClient);
+
+        // Execute method under test & Assert results
+        assertSame(primaryClient, s3ClientRegistry.getClient());
+        assertSame(primaryClient, s3ClientRegistry.getClient("http://primary:9000"));
+        assertSame(replicaClient, s3ClientRegistry.getClient("http://replica:9000"));
+        verify(s3ClientFactory, times(1)).createS3Client("http://primary:9000", "access", "secret", "us-east-1");
+    }
+
+
+    @Test
+    void close_shouldCloseSharedClients_whenRegistryIsClosed() {
+        // Prepare testing data
+        S3Client client = mock(S3Client.class);
+        S3AsyncClient asyncClient = mock(S3AsyncClient.class);
+
+        // Setup mocks
+        when(s3ClientFactory.createS3Client(any(), any(), any(), any())).thenReturn(client);
+        when(s3ClientFactory.createS3AsyncClient(any(), any(), any(), any())).thenReturn(asyncClient);
+
+        // Execute method under test
+        s3ClientRegistry.getClient();
+        s3ClientRegistry.getAsyncClient();
+        s3ClientRegistry.close();
+
+        // Assert results
+        verify(client).close();
+        verify(asyncClient).close();
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.image.exception.ImageNotFoundException;
+import com.mattordre.summitstore.image.service.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+public class SingleFlightUnitTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+
+    @Test
+    void execute_shouldShareResult_whenCallsAreConcurrent() throws InterruptedException {
+        // Prepare testing data
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        Supplier<String> call = () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "image-content";
+        };
+
+        // Execute method under test
+        Thread leader = startThread(() -> results.add(singleFlight.execute("image.png", call)));
+        waitUntil(() -> singleFlight.inFlightCount() == 1);
+        List<Thread> followers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            followers.add(startThread(() -> results.add(singleFlight.execute("image.png", call))));
+        }
+        waitUntil(() -> followers.stream().allMatch(follower -> follower.getState() == Thread.State.WAITING));
+        release.countDown();
+        leader.join();
+        for (Thread follower : followers) {
+            follower.join();
+        }
+
+        // Assert results
+        assertEquals(1, calls.get());
+        assertEquals(5, results.size());
+        results.forEach(result -> assertEquals("image-content", result));
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+
+    @Test
+    void execute_shouldRethrowException_whenSharedCallFails() throws InterruptedException {
+        // Prepare testing data
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Throwable> followerException = new AtomicReference<>();
+        Supplier<String> call = () -> {
+            await(release);
+            throw new ImageNotFoundException("Image not found");
+        };
+
+        // Execute method under test
+        Thread leader = startThread(() -> {
+            try {
+                singleFlight.execute("image.png", call);
+            } catch (ImageNotFoundException ignored) {
+                // Expected, the follower exception is asserted
+            }
+        });
+        waitUntil(() -> singleFlight.inFlightCount() == 1);
+        Thread follower = startThread(() -> {
+            try {
+                singleFlight.execute("image.png", () -> "unexpected");
+            } catch (RuntimeException e) {
+                followerException.set(e);
+            }
+        });
+        waitUntil(() -> follower.getState() == Thread.State.WAITING);
+        release.countDown();
+        leader.join();
+        follower.join();
+
+        // Assert results
+        assertInstanceOf(ImageNotFoundException.class, followerException.get());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+
+    @Test
+    void execute_shouldCallAgain_whenPreviousCallCompleted() {
+        // Prepare testing data
+        AtomicInteger calls = new AtomicInteger();
+
+        // Execute method under test
+        singleFlight.execute("image.png", () -> "v" + calls.incrementAndGet());
+        String result = singleFlight.execute("image.png", () -> "v" + calls.incrementAndGet());
+
+        // Assert results
+        assertEquals("v2", result);
+    }
+
+
+    private Thread startThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        return thread;
+    }
+
+    private void waitUntil(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
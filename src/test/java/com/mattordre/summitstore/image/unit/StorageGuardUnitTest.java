@@ -0,0 +1,182 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.CircuitBreaker;
+import com.mattordre.summitstore.config.StorageGuard;
+import com.mattordre.summitstore.config.StorageOperation;
+import com.mattordre.summitstore.image.exception.StorageUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StorageGuardUnitTest {
+
+    @Test
+    void execute_shouldRejectCallsWithoutMakingThem_whenCircuitIsOpen() {
+        // Prepare testing data
+        StorageGuard storageGuard = newStorageGuard(1);
+        AtomicInteger calls = new AtomicInteger();
+        Runnable failingCall = () -> {
+            calls.incrementAndGet();
+            throw SdkClientException.create("Connection refused");
+        };
+
+        // Execute method under test
+        assertThrows(SdkClientException.class, () -> storageGuard.run(StorageOperation.GET, failingCall));
+        assertThrows(SdkClientException.class, () -> storageGuard.run(StorageOperation.GET, failingCall));
+        assertThrows(StorageUnavailableException.class, () -> storageGuard.run(StorageOperation.GET, failingCall));
+
+        // Assert results
+        assertEquals(2, calls.get());
+        assertEquals(CircuitBreaker.State.OPEN, storageGuard.getCircuitState());
+    }
+
+
+    @Test
+    void execute_shouldKeepCircuitClosed_whenObjectIsNotFound() {
+        // Prepare testing data
+        StorageGuard storageGuard = newStorageGuard(1);
+        Runnable missingObjectCall = () -> {
+            throw NoSuchKeyException.builder().statusCode(404).message("Not found").build();
+        };
+
+        // Execute method under test
+        for (int i = 0; i < 4; i++) {
+            assertThrows(NoSuchKeyException.class, () -> storageGuard.run(StorageOperation.HEAD, missingObjectCall));
+        }
+
+        // Assert results
+        assertEquals(CircuitBreaker.State.CLOSED, storageGuard.getCircuitState());
+        assertEquals("stored", storageGuard.execute(StorageOperation.HEAD, () -> "stored"));
+    }
+
+
+    @Test
+    void execute_shouldKeepConcurrencyLimit_whenPutsAndDownloadsAreSlow() {
+        // Prepare testing data
+        StorageGuard storageGuard = newStorageGuard(8);
+
+        // Execute method under test
+        for (int i = 0; i < 10; i++) {
+            storageGuard.run(StorageOperation.PUT, () -> sleep(Duration.ofMillis(5)));
+            storageGuard.run(StorageOperation.DOWNLOAD, () -> sleep(Duration.ofMillis(5)));
+        }
+
+        // Assert results
+        assertEquals(8, storageGuard.getConcurrencyLimit());
+    }
+
+
+    @Test
+    void execute_shouldLowerConcurrencyLimit_whenHeadsAreSlow() {
+        // Prepare testing data
+        StorageGuard storageGuard = newStorageGuard(8);
+
+        // Execute method under test
+        for (int i = 0; i < 10; i++) {
+            storageGuard.run(StorageOperation.HEAD, () -> sleep(Duration.ofMillis(5)));
+        }
+
+        // Assert results
+        assertTrue(storageGuard.getConcurrencyLimit() < 8);
+    }
+
+
+    @Test
+    void openStream_shouldHoldSlotUntilStreamIsClosed() throws IOException {
+        // Prepare testing data
+        StorageGuard storageGuard = newStorageGuard(1);
+
+        // Execute method under test
+        ResponseInputStream<GetObjectResponse> stream = storageGuard.openStream(StorageOperation.GET, () -> imageStream("image-content"));
+
+        // Assert results
+        assertThrows(StorageUnavailableException.class, () -> storageGuard.execute(StorageOperation.HEAD, () -> "rejected"));
+        assertEquals("image-content", new String(stream.readAllBytes()));
+        stream.close();
+        stream.close();
+        assertEquals("accepted", storageGuard.execute(StorageOperation.HEAD, () -> "accepted"));
+        assertEquals(1, storageGuard.getConcurrencyLimit());
+    }
+
+
+    @Test
+    void openStream_shouldReleaseSlot_whenStreamIsAborted() {
+        // Prepare testing data
+        StorageGuard storageGuard = newStorageGuard(1);
+
+        // Execute method under test
+        storageGuard.openStream(StorageOperation.GET, () -> imageStream("image-content")).abort();
+
+        // Assert results
+        assertEquals("accepted", storageGuard.execute(StorageOperation.HEAD, () -> "accepted"));
+    }
+
+
+    @Test
+    void executeAsync_shouldHoldSlotUntilFutureCompletes() throws Exception {
+        // Prepare testing data
+        StorageGuard storageGuard = newStorageGuard(1);
+        CompletableFuture<String> upload = new CompletableFuture<>();
+
+        // Execute method under test
+        CompletableFuture<String> result = storageGuard.executeAsync(StorageOperation.PUT, () -> upload);
+
+        // Assert results
+        assertThrows(StorageUnavailableException.class, () -> storageGuard.execute(StorageOperation.HEAD, () -> "rejected"));
+        upload.complete("uploaded");
+        assertEquals("uploaded", result.get());
+        assertEquals("accepted", storageGuard.execute(StorageOperation.HEAD, () -> "accepted"));
+    }
+
+
+    @Test
+    void executeAsync_shouldKeepCircuitClosed_whenCallsAreCancelled() {
+        // Prepare testing data
+        StorageGuard storageGuard = newStorageGuard(1);
+
+        // Execute method under test
+        for (int i = 0; i < 4; i++) {
+            storageGuard.executeAsync(StorageOperation.GET, CompletableFuture::new).cancel(true);
+        }
+
+        // Assert results
+        assertEquals(CircuitBreaker.State.CLOSED, storageGuard.getCircuitState());
+        assertEquals("accepted", storageGuard.execute(StorageOperation.HEAD, () -> "accepted"));
+    }
+
+
+    private StorageGuard newStorageGuard(int limit) {
+        return new StorageGuard(new SimpleMeterRegistry(), Duration.ofSeconds(2), Duration.ofSeconds(10),
+                Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofSeconds(5), 4, 2, 0.5, Duration.ofMinutes(1), 1,
+                limit, 1, limit, Duration.ofMillis(1), Duration.ofMillis(1), Duration.ZERO, Duration.ZERO, Duration.ofMillis(1));
+    }
+
+
+    private ResponseInputStream<GetObjectResponse> imageStream(String content) {
+        return new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream(content.getBytes())));
+    }
+
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
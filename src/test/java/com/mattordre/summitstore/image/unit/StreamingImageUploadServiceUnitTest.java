@@ -0,0 +1,173 @@
+package com.mattordre.summitstore.image.unit;
+
+import com.mattordre.summitstore.config.S3ClientRegistry;
+import com.mattordre.summitstore.config.StorageGuard;
+import com.mattordre.summitstore.exception.InvalidArgumentException;
+import com.mattordre.summitstore.image.exception.ImageTooLargeException;
+import com.mattordre.summitstore.image.model.ImageType;
+import com.mattordre.summitstore.image.service.StreamingImageUploadService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class StreamingImageUploadServiceUnitTest {
+
+    private static final int MB = 1024 * 1024;
+
+    private StreamingImageUploadService streamingImageUploadService;
+
+    @Mock
+    private S3ClientRegistry s3ClientRegistry;
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final StorageGuard storageGuard = new StorageGuard(new SimpleMeterRegistry(), Duration.ofSeconds(2), Duration.ofSeconds(10),
+            Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofSeconds(5), 50, 20, 0.5, Duration.ofSeconds(10), 3, 20, 4, 50,
+            Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ZERO, Duration.ZERO, Duration.ofSeconds(1));
+
+    private ExecutorService executorService;
+
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executorService = Executors.newVirtualThreadPerTaskExecutor();
+        streamingImageUploadService = new StreamingImageUploadService(s3ClientRegistry, storageGuard, executorService, eventPublisher);
+        ReflectionTestUtils.setField(streamingImageUploadService, "partSize", DataSize.ofMegabytes(5));
+        ReflectionTestUtils.setField(streamingImageUploadService, "maxConcurrentParts", 2);
+        ReflectionTestUtils.setField(streamingImageUploadService, "maxSize", DataSize.ofMegabytes(12));
+        when(s3ClientRegistry.getClient()).thenReturn(s3Client);
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+
+    @Test
+    void uploadImage_shouldPutObject_whenImageFitsInOnePart() {
+        // Prepare testing data
+        byte[] content = png(1024);
+
+        // Execute method under test
+        String fileName = streamingImageUploadService.uploadImage(new ByteArrayInputStream(content), content.length, "test-image.png", ImageType.PRODUCT);
+
+        // Assert results
+        assertTrue(fileName.endsWith("-test-image.png"));
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3Client).putObject(request.capture(), any(RequestBody.class));
+        assertEquals("image/png", request.getValue().contentType());
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+
+    @Test
+    void uploadImage_shouldUploadParts_whenImageIsLargerThanOnePart() {
+        // Prepare testing data
+        byte[] content = png(11 * MB);
+
+        // Setup mocks
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-id").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> UploadPartResponse.builder().eTag("etag-" + invocation.<UploadPartRequest>getArgument(0).partNumber()).build());
+
+        // Execute method under test
+        streamingImageUploadService.uploadImage(new ByteArrayInputStream(content), -1, "test-image.png", ImageType.PRODUCT);
+
+        // Assert results
+        ArgumentCaptor<CompleteMultipartUploadRequest> request = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(s3Client).completeMultipartUpload(request.capture());
+        assertEquals(3, request.getValue().multipartUpload().parts().size());
+        assertEquals("etag-3", request.getValue().multipartUpload().parts().get(2).eTag());
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+
+    @Test
+    void uploadImage_shouldUploadWholeParts_whenImageIsLongerThanDeclared() {
+        // Prepare testing data
+        byte[] content = png(6 * MB);
+
+        // Setup mocks
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-id").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+
+        // Execute method under test
+        streamingImageUploadService.uploadImage(new ByteArrayInputStream(content), 1024, "test-image.png", ImageType.PRODUCT);
+
+        // Assert results
+        ArgumentCaptor<UploadPartRequest> request = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3Client, times(2)).uploadPart(request.capture(), any(RequestBody.class));
+        assertEquals(5L * MB, request.getAllValues().stream().filter(part -> part.partNumber() == 1).findFirst().orElseThrow().contentLength());
+        assertEquals(1L * MB, request.getAllValues().stream().filter(part -> part.partNumber() == 2).findFirst().orElseThrow().contentLength());
+    }
+
+
+    @Test
+    void uploadImage_shouldAbortUpload_whenImageExceedsMaxSize() {
+        // Prepare testing data
+        byte[] content = png(13 * MB);
+
+        // Setup mocks
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-id").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+
+        // Execute method under test & Assert results
+        assertThrows(ImageTooLargeException.class, () ->
+                streamingImageUploadService.uploadImage(new ByteArrayInputStream(content), -1, "test-image.png", ImageType.PRODUCT));
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+
+    @Test
+    void uploadImage_shouldThrowInvalidArgumentException_whenContentIsNotAnImage() {
+        // Prepare testing data
+        byte[] content = "not an image".getBytes();
+
+        // Execute method under test & Assert results
+        assertThrows(InvalidArgumentException.class, () ->
+                streamingImageUploadService.uploadImage(new ByteArrayInputStream(content), content.length, "test-image.png", ImageType.PRODUCT));
+        verifyNoInteractions(s3Client);
+    }
+
+
+    private byte[] png(int length) {
+        byte[] content = new byte[length];
+        System.arraycopy(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}, 0, content, 0, 8);
+        return content;
+    }
+
+}